@@ -0,0 +1,59 @@
+package com.App.Lfarma.DTO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ImportacionProductosDTO {
+    private boolean simulacion;
+    private boolean reemplazarStock;
+    private int filasLeidas;
+    private int nuevos;
+    private int actualizados;
+    private int conError;
+    private long duracionMs;
+    private long filasPorSegundo;
+    private List<String> columnasIgnoradas = new ArrayList<>();
+    private List<ErrorFila> errores = new ArrayList<>();
+    // Errores que no entraron en la lista por el límite configurado
+    private int erroresOmitidos;
+
+    public ImportacionProductosDTO() {}
+
+    public boolean isSimulacion() { return simulacion; }
+    public void setSimulacion(boolean simulacion) { this.simulacion = simulacion; }
+
+    // false: la cantidad del archivo solo se usa como stock inicial de los productos nuevos
+    public boolean isReemplazarStock() { return reemplazarStock; }
+    public void setReemplazarStock(boolean reemplazarStock) { this.reemplazarStock = reemplazarStock; }
+
+    public int getFilasLeidas() { return filasLeidas; }
+    public void setFilasLeidas(int filasLeidas) { this.filasLeidas = filasLeidas; }
+
+    // En simulación: los que se crearían / actualizarían
+    public int getNuevos() { return nuevos; }
+    public void setNuevos(int nuevos) { this.nuevos = nuevos; }
+
+    public int getActualizados() { return actualizados; }
+    public void setActualizados(int actualizados) { this.actualizados = actualizados; }
+
+    public int getConError() { return conError; }
+    public void setConError(int conError) { this.conError = conError; }
+
+    public long getDuracionMs() { return duracionMs; }
+    public void setDuracionMs(long duracionMs) { this.duracionMs = duracionMs; }
+
+    public long getFilasPorSegundo() { return filasPorSegundo; }
+    public void setFilasPorSegundo(long filasPorSegundo) { this.filasPorSegundo = filasPorSegundo; }
+
+    public List<String> getColumnasIgnoradas() { return columnasIgnoradas; }
+    public void setColumnasIgnoradas(List<String> columnasIgnoradas) { this.columnasIgnoradas = columnasIgnoradas; }
+
+    public List<ErrorFila> getErrores() { return errores; }
+    public void setErrores(List<ErrorFila> errores) { this.errores = errores; }
+
+    public int getErroresOmitidos() { return erroresOmitidos; }
+    public void setErroresOmitidos(int erroresOmitidos) { this.erroresOmitidos = erroresOmitidos; }
+
+    // fila: número de línea (CSV) o de fila (XLSX), contando la cabecera como 1
+    public record ErrorFila(int fila, String codigo, String error) {}
+}
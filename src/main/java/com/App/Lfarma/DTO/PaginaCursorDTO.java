@@ -0,0 +1,37 @@
+package com.App.Lfarma.DTO;
+
+import java.util.List;
+
+public class PaginaCursorDTO<T> {
+    private List<T> contenido;
+    private String siguiente;
+    private boolean hayMas;
+    private Long total;
+    private int tamano;
+
+    public PaginaCursorDTO() {}
+
+    public PaginaCursorDTO(List<T> contenido, String siguiente, boolean hayMas, Long total, int tamano) {
+        this.contenido = contenido;
+        this.siguiente = siguiente;
+        this.hayMas = hayMas;
+        this.total = total;
+        this.tamano = tamano;
+    }
+
+    public List<T> getContenido() { return contenido; }
+    public void setContenido(List<T> contenido) { this.contenido = contenido; }
+
+    public String getSiguiente() { return siguiente; }
+    public void setSiguiente(String siguiente) { this.siguiente = siguiente; }
+
+    public boolean isHayMas() { return hayMas; }
+    public void setHayMas(boolean hayMas) { this.hayMas = hayMas; }
+
+    // Nulo cuando se pidió la página sin conteo
+    public Long getTotal() { return total; }
+    public void setTotal(Long total) { this.total = total; }
+
+    public int getTamano() { return tamano; }
+    public void setTamano(int tamano) { this.tamano = tamano; }
+}
@@ -0,0 +1,29 @@
+package com.App.Lfarma.DTO;
+
+public class ReporteAgrupadoDTO {
+    private String clave;
+    private long cantidad;
+    private double totalVenta;
+    private double ganancia;
+
+    public ReporteAgrupadoDTO() {}
+
+    public ReporteAgrupadoDTO(String clave, long cantidad, double totalVenta, double ganancia) {
+        this.clave = clave;
+        this.cantidad = cantidad;
+        this.totalVenta = totalVenta;
+        this.ganancia = ganancia;
+    }
+
+    public String getClave() { return clave; }
+    public void setClave(String clave) { this.clave = clave; }
+
+    public long getCantidad() { return cantidad; }
+    public void setCantidad(long cantidad) { this.cantidad = cantidad; }
+
+    public double getTotalVenta() { return totalVenta; }
+    public void setTotalVenta(double totalVenta) { this.totalVenta = totalVenta; }
+
+    public double getGanancia() { return ganancia; }
+    public void setGanancia(double ganancia) { this.ganancia = ganancia; }
+}
@@ -0,0 +1,40 @@
+package com.App.Lfarma.DTO;
+
+public class SugerenciaProductoDTO {
+    private String id;
+    private String codigo;
+    private String nombre;
+    private String principiosActivos;
+    private String categoria;
+    private double precio;
+
+    public SugerenciaProductoDTO() {}
+
+    public SugerenciaProductoDTO(String id, String codigo, String nombre, String principiosActivos,
+                                 String categoria, double precio) {
+        this.id = id;
+        this.codigo = codigo;
+        this.nombre = nombre;
+        this.principiosActivos = principiosActivos;
+        this.categoria = categoria;
+        this.precio = precio;
+    }
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getCodigo() { return codigo; }
+    public void setCodigo(String codigo) { this.codigo = codigo; }
+
+    public String getNombre() { return nombre; }
+    public void setNombre(String nombre) { this.nombre = nombre; }
+
+    public String getPrincipiosActivos() { return principiosActivos; }
+    public void setPrincipiosActivos(String principiosActivos) { this.principiosActivos = principiosActivos; }
+
+    public String getCategoria() { return categoria; }
+    public void setCategoria(String categoria) { this.categoria = categoria; }
+
+    public double getPrecio() { return precio; }
+    public void setPrecio(double precio) { this.precio = precio; }
+}
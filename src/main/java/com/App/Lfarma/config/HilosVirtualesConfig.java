@@ -0,0 +1,127 @@
+package com.App.Lfarma.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Modo de hilos virtuales (spring.threads.virtual.enabled): con Java 21 Spring Boot atiende las
+ * peticiones de Tomcat, los @Async y las tareas programadas en hilos virtuales. Con Java 17
+ * la propiedad no tiene efecto y se sigue con hilos de plataforma.
+ *
+ * Con el modo activo se escucha el evento JFR jdk.VirtualThreadPinned: un hilo virtual que se
+ * bloquea dentro de un synchronized (o en código nativo) más del umbral deja fijado su hilo
+ * portador. Cada ubicación se registra una vez en el log y todas suman a la métrica
+ * lfarma.hilos.virtuales.fijados.
+ */
+@Configuration
+public class HilosVirtualesConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(HilosVirtualesConfig.class);
+
+    private static final String EVENTO_FIJADO = "jdk.VirtualThreadPinned";
+    private static final int MARCOS_EN_LOG = 8;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean habilitados;
+
+    @Value("${lfarma.hilos-virtuales.diagnostico:true}")
+    private boolean diagnostico;
+
+    @Value("${lfarma.hilos-virtuales.umbral-fijado-ms:20}")
+    private long umbralFijadoMs;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private RecordingStream eventos;
+
+    // Ubicaciones ya reportadas; las repeticiones solo cuentan en la métrica
+    private final Set<String> reportados = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void iniciar() {
+        int java = Runtime.version().feature();
+        if (!habilitados) {
+            log.info("ℹ️ Peticiones, @Async y tareas programadas en hilos de plataforma");
+            return;
+        }
+        if (java < 21) {
+            log.warn("⚠️ spring.threads.virtual.enabled=true requiere Java 21 (actual: {}); se usan hilos de plataforma", java);
+            return;
+        }
+        log.info("✅ Peticiones, @Async y tareas programadas en hilos virtuales (Java {})", java);
+
+        if (diagnostico) {
+            iniciarDiagnostico();
+        }
+    }
+
+    private void iniciarDiagnostico() {
+        Counter fijados = meterRegistry.stream()
+                .map(registry -> Counter.builder("lfarma.hilos.virtuales.fijados")
+                        .description("Hilos virtuales que fijaron su hilo portador más del umbral")
+                        .register(registry))
+                .findFirst().orElse(null);
+        try {
+            eventos = new RecordingStream();
+            eventos.enable(EVENTO_FIJADO).withThreshold(Duration.ofMillis(umbralFijadoMs)).withStackTrace();
+            eventos.onEvent(EVENTO_FIJADO, evento -> {
+                if (fijados != null) {
+                    fijados.increment();
+                }
+                reportar(evento);
+            });
+            eventos.startAsync();
+            log.info("🔎 Diagnóstico de hilos virtuales fijados activo (umbral {} ms)", umbralFijadoMs);
+        } catch (Exception e) {
+            log.warn("⚠️ No se pudo iniciar el diagnóstico de hilos fijados: {}", e.getMessage());
+        }
+    }
+
+    private void reportar(RecordedEvent evento) {
+        List<RecordedFrame> marcos = evento.getStackTrace() != null ? evento.getStackTrace().getFrames() : List.of();
+        // La ubicación es el primer marco de la aplicación (o el primero si no hay)
+        RecordedFrame origen = marcos.stream()
+                .filter(marco -> marco.isJavaFrame() && marco.getMethod().getType().getName().startsWith("com.App.Lfarma"))
+                .findFirst()
+                .orElse(marcos.isEmpty() ? null : marcos.get(0));
+        String ubicacion = origen == null ? "desconocida"
+                : origen.getMethod().getType().getName() + "." + origen.getMethod().getName() + ":" + origen.getLineNumber();
+
+        if (!reportados.add(ubicacion)) {
+            log.debug("📌 Hilo virtual fijado {} ms en {}", evento.getDuration().toMillis(), ubicacion);
+            return;
+        }
+        StringBuilder pila = new StringBuilder();
+        for (int i = 0; i < Math.min(MARCOS_EN_LOG, marcos.size()); i++) {
+            RecordedFrame marco = marcos.get(i);
+            pila.append("\n    at ").append(marco.getMethod().getType().getName())
+                    .append('.').append(marco.getMethod().getName()).append(':').append(marco.getLineNumber());
+        }
+        log.warn("📌 Hilo virtual fijado {} ms en {} (se reporta una vez por ubicación){}",
+                evento.getDuration().toMillis(), ubicacion, pila);
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (eventos != null) {
+            eventos.close();
+        }
+    }
+}
@@ -20,11 +20,12 @@ public class ModeloPrediccionConfig {
     public CommandLineRunner inicializarModelo() {
         return args -> {
             long startTime = System.currentTimeMillis();
-            String taskName = "inicialización del modelo de predicción";
+            String taskName = "carga del modelo de predicción";
 
             try {
                 log.info("🚀 Iniciando {}...", taskName);
-                prediccionDemandaService.entrenarModeloSimple();
+                // Carga desde el registro; solo se entrena (en segundo plano) si el dataset cambió
+                prediccionDemandaService.inicializarModelo();
 
                 long endTime = System.currentTimeMillis();
                 long duration = endTime - startTime;
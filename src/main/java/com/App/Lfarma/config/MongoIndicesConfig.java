@@ -0,0 +1,87 @@
+package com.App.Lfarma.config;
+
+import com.App.Lfarma.entity.Factura;
+import com.App.Lfarma.entity.ModeloPrediccion;
+import com.App.Lfarma.entity.PrediccionDemanda;
+import com.App.Lfarma.entity.Producto;
+import com.App.Lfarma.entity.Suministro;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.TextIndexDefinition;
+
+// Índices que usan las consultas del servidor. Se crean explícitamente porque
+// spring.data.mongodb.auto-index-creation está desactivado por defecto.
+@Configuration
+public class MongoIndicesConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(MongoIndicesConfig.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void crearIndices() {
+        IndexOperations facturas = mongoTemplate.indexOps(Factura.class);
+        crear(facturas, new Index().on("terminosBusqueda", Sort.Direction.ASC).named("factura_terminos_busqueda"));
+        crear(facturas, new Index().on("fecha", Sort.Direction.DESC).named("factura_fecha"));
+        crear(facturas, new Index().on("vendedor", Sort.Direction.ASC).on("fecha", Sort.Direction.DESC)
+                .named("factura_vendedor_fecha"));
+        // Paginación por cursor: (fecha, _id) ordena sin empates y sin ordenar en memoria
+        crear(facturas, new Index().on("fecha", Sort.Direction.DESC).on("_id", Sort.Direction.DESC)
+                .named("factura_fecha_id"));
+        crear(facturas, new Index().on("vendedor", Sort.Direction.ASC).on("fecha", Sort.Direction.DESC)
+                .on("_id", Sort.Direction.DESC).named("factura_vendedor_fecha_id"));
+
+        IndexOperations suministros = mongoTemplate.indexOps(Suministro.class);
+        crear(suministros, new Index().on("fechaSuministro", Sort.Direction.DESC).on("_id", Sort.Direction.DESC)
+                .named("suministro_fecha_id"));
+
+        IndexOperations productos = mongoTemplate.indexOps(Producto.class);
+        crear(productos, new Index().on("cantidad", Sort.Direction.ASC).named("producto_cantidad"));
+        crear(productos, new Index().on("terminosBusqueda", Sort.Direction.ASC).named("producto_terminos_busqueda"));
+        crear(productos, new Index().on("categoria", Sort.Direction.ASC).on("nombre", Sort.Direction.ASC)
+                .named("producto_categoria_nombre"));
+        crear(productos, new Index().on("categoria", Sort.Direction.ASC).on("_id", Sort.Direction.ASC)
+                .named("producto_categoria_id"));
+        crear(productos, new Index().on("fechaActualizacion", Sort.Direction.DESC)
+                .named("producto_fecha_actualizacion"));
+        // Solo puede existir un índice de texto por colección; los pesos ordenan la relevancia
+        crear(productos, TextIndexDefinition.builder()
+                .named("producto_texto")
+                .onField("nombre", 10F)
+                .onField("codigo", 8F)
+                .onField("principiosActivos", 5F)
+                .onField("descripcion", 1F)
+                .withDefaultLanguage("spanish")
+                .build());
+
+        // Upsert por producto y limpieza de predicciones obsoletas del lote
+        IndexOperations predicciones = mongoTemplate.indexOps(PrediccionDemanda.class);
+        crear(predicciones, new Index().on("productoId", Sort.Direction.ASC).named("prediccion_producto"));
+        crear(predicciones, new Index().on("fechaPrediccion", Sort.Direction.DESC).named("prediccion_fecha"));
+
+        IndexOperations modelos = mongoTemplate.indexOps(ModeloPrediccion.class);
+        crear(modelos, new Index().on("version", Sort.Direction.DESC).named("modelo_version"));
+        crear(modelos, new Index().on("hashDatos", Sort.Direction.ASC).on("version", Sort.Direction.DESC)
+                .named("modelo_hash_version"));
+    }
+
+    private void crear(IndexOperations operaciones, IndexDefinition indice) {
+        try {
+            String nombre = operaciones.createIndex(indice);
+            log.info("✅ Índice Mongo verificado: {}", nombre);
+        } catch (Exception e) {
+            // Un índice fallido no debe impedir que la aplicación arranque
+            log.error("⚠️ No se pudo crear el índice {}: {}", indice.getIndexKeys(), e.getMessage());
+        }
+    }
+}
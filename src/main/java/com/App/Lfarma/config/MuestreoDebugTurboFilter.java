@@ -0,0 +1,44 @@
+package com.App.Lfarma.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Muestreo de logs DEBUG en producción (se declara en logback-spring.xml). Con los loggers de la
+ * aplicación en INFO, deja pasar una de cada {@code tasa} llamadas a log.debug(...) bajo
+ * {@code prefijo}; el resto se descarta antes de formatear el mensaje, así que no cuesta más
+ * que un log deshabilitado.
+ *
+ * Los loggers con DEBUG activado explícitamente (logging.level.*) se registran completos. Las
+ * consultas isDebugEnabled() no se muestrean: los bloques protegidos así solo se ejecutan con
+ * el nivel activo.
+ */
+public class MuestreoDebugTurboFilter extends TurboFilter {
+
+    private String prefijo = "com.App.Lfarma";
+    private int tasa = 100;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (level != Level.DEBUG || format == null || tasa <= 0 || !logger.getName().startsWith(prefijo)) {
+            return FilterReply.NEUTRAL;
+        }
+        if (logger.getEffectiveLevel().levelInt <= Level.DEBUG_INT) {
+            return FilterReply.NEUTRAL;
+        }
+        return ThreadLocalRandom.current().nextInt(tasa) == 0 ? FilterReply.ACCEPT : FilterReply.NEUTRAL;
+    }
+
+    public void setPrefijo(String prefijo) {
+        this.prefijo = prefijo;
+    }
+
+    public void setTasa(int tasa) {
+        this.tasa = tasa;
+    }
+}
@@ -5,61 +5,115 @@ import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.data.redis.cache.BatchStrategies;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
-import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
-import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.annotation.CachingConfigurer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.interceptor.CacheErrorHandler;
 
-import com.App.Lfarma.entity.Usuario;
+import com.App.Lfarma.entity.Cliente;
+import com.App.Lfarma.entity.Proveedor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
 
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @Configuration
-public class RedisConfig {
+@EnableCaching
+public class RedisConfig implements CachingConfigurer {
 
     private static final Logger log = LoggerFactory.getLogger(RedisConfig.class);
 
+    public static final String CACHE_CLIENTES_POR_CODIGO = "clientesPorCodigo";
+    public static final String CACHE_PROVEEDORES = "proveedores";
+    public static final String CACHE_DASHBOARD = "dashboard";
+
+    // Cada cache tiene su TTL y un serializador del tipo que guarda; las que no estén
+    // declaradas aquí no se crean (un @Cacheable con otro nombre falla en la primera llamada)
     @Bean
-    public RedisTemplate<String, Usuario> redisTemplate(RedisConnectionFactory connectionFactory) {
-        RedisTemplate<String, Usuario> template = new RedisTemplate<>();
-        template.setConnectionFactory(connectionFactory);
-        template.setKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(new Jackson2JsonRedisSerializer<>(Usuario.class));
+    public RedisCacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                          @Value("${lfarma.cache.clientes.ttl-segundos:1800}") long ttlClientes,
+                                          @Value("${lfarma.cache.proveedores.ttl-segundos:3600}") long ttlProveedores,
+                                          @Value("${lfarma.cache.dashboard.ttl-segundos:60}") long ttlDashboard) {
+        ObjectMapper mapper = JsonMapper.builder()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
 
-        // Configurar TTL para operaciones específicas si es necesario
-        template.setEnableTransactionSupport(true);
+        Map<String, RedisCacheConfiguration> caches = new HashMap<>();
+        caches.put(CACHE_CLIENTES_POR_CODIGO, configuracion(ttlClientes,
+                new Jackson2JsonRedisSerializer<>(mapper, Cliente.class)));
+        caches.put(CACHE_PROVEEDORES, configuracion(ttlProveedores,
+                new Jackson2JsonRedisSerializer<>(mapper,
+                        mapper.getTypeFactory().constructCollectionType(List.class, Proveedor.class))));
+        caches.put(CACHE_DASHBOARD, configuracion(ttlDashboard,
+                new Jackson2JsonRedisSerializer<>(mapper, Long.class)));
 
-        log.info("✅ Redis Template configurado para entidad Usuario con serializadores JSON");
-        return template;
+        log.info("✅ Redis Cache Manager configurado: {} (TTL {} s), {} (TTL {} s), {} (TTL {} s)",
+                CACHE_CLIENTES_POR_CODIGO, ttlClientes, CACHE_PROVEEDORES, ttlProveedores, CACHE_DASHBOARD, ttlDashboard);
+
+        // SCAN en lugar de KEYS al vaciar una cache completa
+        return RedisCacheManager.builder(RedisCacheWriter.nonLockingRedisCacheWriter(
+                        connectionFactory, BatchStrategies.scan(1000)))
+                .withInitialCacheConfigurations(caches)
+                .disableCreateOnMissingCache()
+                .enableStatistics()
+                .transactionAware()
+                .build();
     }
 
-    @Bean
-    public RedisCacheManager cacheManager(RedisConnectionFactory connectionFactory) {
-        // Configuración de cache con TTL de 30 minutos
-        RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofMinutes(30)) // TTL de 30 minutos para cache
-                .disableCachingNullValues()
-                .serializeKeysWith(org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
-                .serializeValuesWith(org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair.fromSerializer(new Jackson2JsonRedisSerializer<>(Object.class)));
+    // Si Redis no responde, los métodos cacheados leen directo de la base en lugar de fallar
+    @Override
+    public CacheErrorHandler errorHandler() {
+        return new CacheErrorHandler() {
+            @Override
+            public void handleCacheGetError(RuntimeException e, Cache cache, Object key) {
+                log.warn("⚠️ Cache {} no disponible al leer '{}': {}", cache.getName(), key, e.getMessage());
+            }
 
-        log.info("✅ Redis Cache Manager configurado con TTL de 30 minutos");
+            @Override
+            public void handleCachePutError(RuntimeException e, Cache cache, Object key, Object value) {
+                log.warn("⚠️ Cache {} no disponible al guardar '{}': {}", cache.getName(), key, e.getMessage());
+            }
 
-        return RedisCacheManager.builder(connectionFactory)
-                .cacheDefaults(config)
-                .transactionAware()
-                .build();
+            @Override
+            public void handleCacheEvictError(RuntimeException e, Cache cache, Object key) {
+                log.warn("⚠️ Cache {} no disponible al invalidar '{}': {}", cache.getName(), key, e.getMessage());
+            }
+
+            @Override
+            public void handleCacheClearError(RuntimeException e, Cache cache) {
+                log.warn("⚠️ Cache {} no disponible al vaciarla: {}", cache.getName(), e.getMessage());
+            }
+        };
     }
 
-    // Configuración de cache por defecto con TTL
-    @Bean
-    public RedisCacheConfiguration cacheConfiguration() {
+    private static RedisCacheConfiguration configuracion(long ttlSegundos, RedisSerializer<?> valores) {
         return RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofMinutes(30))
+                .entryTtl(Duration.ofSeconds(ttlSegundos))
                 .disableCachingNullValues()
-                .serializeKeysWith(org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
-                .serializeValuesWith(org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair.fromSerializer(new Jackson2JsonRedisSerializer<>(Object.class)));
+                .prefixCacheNameWith("lfarma:cache:")
+                .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(valores));
+    }
+
+    // Suscripciones pub/sub (invalidación de la cache local de productos entre nodos)
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
     }
-}
\ No newline at end of file
+}
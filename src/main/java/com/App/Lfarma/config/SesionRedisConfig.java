@@ -0,0 +1,86 @@
+package com.App.Lfarma.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanClassLoaderAware;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sesiones HTTP en Redis (Spring Session) para poder correr varios nodos sin afinidad.
+ * Los atributos se guardan con serialización Java: además del contexto de seguridad, la sesión
+ * lleva los FlashMap de los redirect con mensajes, que el JSON de Spring Security no sabe leer.
+ * Las sesiones inactivas expiran por TTL en Redis (server.servlet.session.timeout).
+ */
+@Configuration
+public class SesionRedisConfig implements BeanClassLoaderAware {
+
+    private static final Logger log = LoggerFactory.getLogger(SesionRedisConfig.class);
+
+    @Value("${spring.session.redis.namespace:spring:session}")
+    private String namespace;
+
+    @Autowired
+    private ObjectProvider<StringRedisTemplate> redisTemplate;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private ClassLoader classLoader;
+
+    // Último conteo; lo actualiza la tarea programada para no recorrer Redis en cada scrape
+    private final AtomicLong sesionesActivas = new AtomicLong();
+
+    @Override
+    public void setBeanClassLoader(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    // Spring Session toma el serializador por el nombre del bean
+    @Bean
+    public RedisSerializer<Object> springSessionDefaultRedisSerializer() {
+        return new JdkSerializationRedisSerializer(classLoader);
+    }
+
+    @PostConstruct
+    public void registrarMetrica() {
+        meterRegistry.ifAvailable(registry -> Gauge.builder("lfarma.sesiones.activas", sesionesActivas, AtomicLong::get)
+                .description("Sesiones HTTP vigentes en Redis (todas las instancias)")
+                .register(registry));
+    }
+
+    @Scheduled(initialDelayString = "${lfarma.sesiones.conteo-ms:60000}",
+            fixedDelayString = "${lfarma.sesiones.conteo-ms:60000}")
+    public void contarSesiones() {
+        StringRedisTemplate redis = redisTemplate.getIfAvailable();
+        if (redis == null) {
+            return;
+        }
+        long total = 0;
+        try (Cursor<String> claves = redis.scan(ScanOptions.scanOptions()
+                .match(namespace + ":sessions:*").count(1000).build())) {
+            while (claves.hasNext()) {
+                claves.next();
+                total++;
+            }
+            sesionesActivas.set(total);
+            log.debug("👥 Sesiones activas en Redis: {}", total);
+        } catch (Exception e) {
+            log.warn("⚠️ No se pudieron contar las sesiones en Redis: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.App.Lfarma.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Dos gestores de transacciones: el de JPA (MySQL) sigue siendo el de @Transactional y el de
+ * Mongo se usa de forma explícita donde varias escrituras deben confirmarse juntas (factura y
+ * ventas_diarias). Al declarar el de Mongo, Spring Boot deja de crear el de JPA, por eso se
+ * declaran los dos aquí.
+ */
+@Configuration
+public class TransaccionesConfig {
+
+    @Bean
+    @Primary
+    public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+        return new JpaTransactionManager(entityManagerFactory);
+    }
+
+    // Requiere un replica set (o mongos); FacturaService lo comprueba antes de usarlo
+    @Bean
+    public MongoTransactionManager mongoTransactionManager(MongoDatabaseFactory mongoDatabaseFactory) {
+        return new MongoTransactionManager(mongoDatabaseFactory);
+    }
+}
@@ -0,0 +1,78 @@
+package com.App.Lfarma.controller;
+
+import com.App.Lfarma.security.JwtService;
+import com.App.Lfarma.service.UserDetailsServiceImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Tokens JWT para la app móvil: el BCrypt se verifica solo aquí, no en cada petición
+@RestController
+@RequestMapping("/api/auth")
+@CrossOrigin("*")
+public class AuthApiController {
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private JwtService jwtService;
+
+    // Body: { "username": "...", "password": "..." }
+    @PostMapping("/token")
+    public ResponseEntity<Map<String, Object>> token(@RequestBody Map<String, String> credenciales) {
+        String username = credenciales.get("username");
+        String password = credenciales.get("password");
+        if (username == null || username.isBlank() || password == null) {
+            return error(HttpStatus.BAD_REQUEST, "Usuario y contraseña son obligatorios");
+        }
+
+        UserDetails usuario;
+        try {
+            usuario = userDetailsService.loadUserByUsername(username.trim());
+        } catch (UsernameNotFoundException e) {
+            return error(HttpStatus.UNAUTHORIZED, "Credenciales inválidas");
+        }
+        if (usuario.getPassword() == null || !passwordEncoder.matches(password, usuario.getPassword())) {
+            return error(HttpStatus.UNAUTHORIZED, "Credenciales inválidas");
+        }
+
+        Map<String, Object> response = new HashMap<>(jwtService.emitirTokens(usuario));
+        response.put("success", true);
+        return ResponseEntity.ok(response);
+    }
+
+    // Body: { "refreshToken": "..." }; se vuelve a leer el usuario para tomar su rol actual
+    @PostMapping("/refresh")
+    public ResponseEntity<Map<String, Object>> refresh(@RequestBody Map<String, String> body) {
+        UserDetails usuario;
+        try {
+            usuario = userDetailsService.loadUserByUsername(jwtService.validarRefresco(body.get("refreshToken")));
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.UNAUTHORIZED, e.getMessage());
+        } catch (UsernameNotFoundException e) {
+            return error(HttpStatus.UNAUTHORIZED, "Usuario no existe");
+        }
+
+        Map<String, Object> response = new HashMap<>(jwtService.emitirTokens(usuario));
+        response.put("success", true);
+        return ResponseEntity.ok(response);
+    }
+
+    private static ResponseEntity<Map<String, Object>> error(HttpStatus status, String mensaje) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", mensaje);
+        return ResponseEntity.status(status).body(response);
+    }
+}
@@ -0,0 +1,56 @@
+package com.App.Lfarma.controller;
+
+import com.App.Lfarma.service.CacheLocalProductoService;
+import com.App.Lfarma.service.CacheUsuarioService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Aciertos y fallos de las caches (Redis y las caches locales de productos y usuarios); solo ADMIN
+@RestController
+@RequestMapping("/admin/cache")
+public class CacheController {
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private CacheLocalProductoService cacheLocalProductos;
+
+    @Autowired
+    private CacheUsuarioService cacheUsuarios;
+
+    @GetMapping("/estadisticas")
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> caches = new LinkedHashMap<>();
+        for (String nombre : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(nombre);
+            if (cache instanceof RedisCache redisCache) {
+                CacheStatistics stats = redisCache.getStatistics();
+                Map<String, Object> resumen = new LinkedHashMap<>();
+                resumen.put("lecturas", stats.getGets());
+                resumen.put("aciertos", stats.getHits());
+                resumen.put("fallos", stats.getMisses());
+                resumen.put("ratioAciertos", stats.getGets() > 0 ? (double) stats.getHits() / stats.getGets() : 0.0);
+                resumen.put("escrituras", stats.getPuts());
+                resumen.put("invalidaciones", stats.getDeletes());
+                caches.put(nombre, resumen);
+            }
+        }
+        caches.put("productosLocal", cacheLocalProductos.estadisticas());
+        caches.put("usuariosLocal", cacheUsuarios.estadisticas());
+
+        Map<String, Object> respuesta = new LinkedHashMap<>();
+        respuesta.put("success", true);
+        respuesta.put("caches", caches);
+        return respuesta;
+    }
+}
@@ -16,6 +16,7 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import com.App.Lfarma.DTO.DireccionDTO;
+import com.App.Lfarma.DTO.PaginaCursorDTO;
 import com.App.Lfarma.entity.Cliente;
 import com.App.Lfarma.service.ClienteService;
 
@@ -341,12 +342,15 @@ public class ClienteController {
     }
 
     // ✅ CORREGIDO: API para listar clientes con paginación
+    // Con "after" (vacío para la primera página) pagina por cursor; el total solo se cuenta con conTotal=true
     @GetMapping("/api")
     @ResponseBody
     public ResponseEntity<Map<String, Object>> listarClientesApi(
             @RequestParam(defaultValue = "0") @PositiveOrZero int page,
             @RequestParam(defaultValue = "20") @Positive int size,
-            @RequestParam(required = false) String search) {
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "false") boolean conTotal) {
 
         String user = getCurrentUser();
         log.info("👤 Usuario {} solicitando listado de clientes API - Página: {}, Tamaño: {}, Búsqueda: '{}'",
@@ -357,6 +361,22 @@ public class ClienteController {
             if (size <= 0) size = 20;
             if (size > 100) size = 100;
 
+            if (after != null) {
+                PaginaCursorDTO<Cliente> pagina = clienteService.listarClientesCursor(search, after, size, conTotal);
+                Map<String, Object> data = new HashMap<>();
+                data.put("clientes", pagina.getContenido());
+                data.put("siguiente", pagina.getSiguiente());
+                data.put("hayMas", pagina.isHayMas());
+                data.put("totalItems", pagina.getTotal());
+                data.put("pageSize", size);
+                data.put("search", search != null ? search : "");
+
+                Map<String, Object> response = buildSuccessResponse("Clientes obtenidos exitosamente");
+                response.put("data", data);
+                log.info("✅ Usuario {} obtuvo {} clientes por cursor", user, pagina.getContenido().size());
+                return ResponseEntity.ok(response);
+            }
+
             Pageable pageable = PageRequest.of(page, size);
             Page<Cliente> clientesPage;
 
@@ -379,6 +399,9 @@ public class ClienteController {
             log.info("✅ Usuario {} obtuvo {} clientes exitosamente", user, clientesPage.getNumberOfElements());
             return ResponseEntity.ok(response);
 
+        } catch (IllegalArgumentException e) {
+            log.warn("⚠️ Parámetros inválidos en /clientes/api para usuario {}: {}", user, e.getMessage());
+            return buildErrorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             log.error("❌ Error en /clientes/api para usuario {}: {}", user, e.getMessage(), e);
             return buildErrorResponse("Error al cargar clientes: " + e.getMessage(),
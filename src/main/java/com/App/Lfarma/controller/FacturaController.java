@@ -1,5 +1,6 @@
 package com.App.Lfarma.controller;
 
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,11 +17,13 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import com.App.Lfarma.DTO.PaginaCursorDTO;
 import com.App.Lfarma.entity.Usuario;
 import com.App.Lfarma.entity.Cliente;
 import com.App.Lfarma.entity.DetalleFactura;
 import com.App.Lfarma.entity.Factura;
 import com.App.Lfarma.entity.Producto;
+import com.App.Lfarma.entity.ProductoFacturado;
 import com.App.Lfarma.repository.UsuarioRepository;
 import com.App.Lfarma.service.ClienteService;
 import com.App.Lfarma.service.FacturaService;
@@ -168,11 +171,11 @@ public class FacturaController {
                     log.warn("⚠️ Producto sin costo de compra: {}, usando costo calculado: {}",
                             producto.getNombre(), costoCalculado);
                     producto.setCostoCompra(costoCalculado);
-                    productoService.guardarProducto(producto);
+                    productoService.actualizarCostoCompra(producto.getId(), costoCalculado);
                 }
 
                 DetalleFactura detalle = new DetalleFactura();
-                detalle.setProducto(producto);
+                detalle.setProducto(ProductoFacturado.de(producto));
                 detalle.setCantidad(cantidad);
                 detalle.setPrecioUnitario(producto.getPrecio());
                 detalles.add(detalle);
@@ -258,11 +261,11 @@ public class FacturaController {
                     double costoCalculado = producto.getPrecio() * 0.6;
                     log.warn("⚠️ Producto sin costo de compra: {}", producto.getNombre());
                     producto.setCostoCompra(costoCalculado);
-                    productoService.guardarProducto(producto);
+                    productoService.actualizarCostoCompra(producto.getId(), costoCalculado);
                 }
 
                 DetalleFactura detalle = new DetalleFactura();
-                detalle.setProducto(producto);
+                detalle.setProducto(ProductoFacturado.de(producto));
                 detalle.setCantidad(cantidad);
                 detalle.setPrecioUnitario(producto.getPrecio());
                 detalles.add(detalle);
@@ -306,11 +309,14 @@ public class FacturaController {
     }
 
     // ✅ CORREGIDO: Implementar paginación completa con mejor manejo de errores
+    // Con "after" la página se lee por cursor (sin skip); "total" evita volver a contar al avanzar
     @GetMapping("")
     public String listarFacturas(
             @RequestParam(required = false) String search,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Long total,
             Model model) {
 
         String user = getCurrentUser();
@@ -322,36 +328,56 @@ public class FacturaController {
             if (size <= 0) size = 10;
             if (size > 100) size = 100;
 
-            Pageable pageable = PageRequest.of(page, size);
-            Page<Factura> facturasPage;
-
-            if (search != null && !search.trim().isEmpty()) {
-                String terminoBusqueda = search.trim();
-                // Buscar entre todas las facturas y luego paginar la lista resultante
-                facturasPage = facturaService.buscarFacturasPaginadas(terminoBusqueda, pageable);
+            String terminoBusqueda = search != null && !search.trim().isEmpty() ? search.trim() : null;
+            // Si no es admin y no está buscando, solo ve las facturas creadas por el usuario actual
+            String vendedor = terminoBusqueda == null && !esAdmin() ? getCurrentUser() : null;
+            if (terminoBusqueda != null) {
                 model.addAttribute("search", terminoBusqueda);
-                log.debug("🔍 Búsqueda de facturas: '{}' - Encontradas: {}", terminoBusqueda, facturasPage.getTotalElements());
+            }
+
+            List<Factura> facturas;
+            long totalItems;
+            String siguiente;
+
+            if (after != null && !after.isBlank()) {
+                PaginaCursorDTO<Factura> pagina = facturaService.listarFacturasCursor(
+                        terminoBusqueda, vendedor, after, size, total == null);
+                facturas = pagina.getContenido();
+                totalItems = total != null ? total : pagina.getTotal();
+                siguiente = pagina.getSiguiente();
+                log.debug("📋 Facturas por cursor - {} en página, hayMas={}", facturas.size(), pagina.isHayMas());
             } else {
-                if (esAdmin()) {
+                Pageable pageable = PageRequest.of(page, size, FacturaService.ORDEN_LISTADO.sort());
+                Page<Factura> facturasPage;
+
+                if (terminoBusqueda != null) {
+                    // Buscar entre todas las facturas y luego paginar la lista resultante
+                    facturasPage = facturaService.buscarFacturasPaginadas(terminoBusqueda, pageable);
+                    log.debug("🔍 Búsqueda de facturas: '{}' - Encontradas: {}", terminoBusqueda, facturasPage.getTotalElements());
+                } else if (vendedor == null) {
                     facturasPage = facturaService.listarFacturasPaginadas(pageable);
                     log.debug("📋 Listado normal de facturas (admin) - Total: {}", facturasPage.getTotalElements());
                 } else {
-                    // Si no es admin, mostrar solo las facturas creadas por el usuario actual
-                    String usuario = getCurrentUser();
-                    facturasPage = facturaService.listarFacturasPaginadasPorVendedor(usuario, pageable);
-                    log.debug("📋 Listado facturas para vendedor {} - Total: {}", usuario, facturasPage.getTotalElements());
+                    facturasPage = facturaService.listarFacturasPaginadasPorVendedor(vendedor, pageable);
+                    log.debug("📋 Listado facturas para vendedor {} - Total: {}", vendedor, facturasPage.getTotalElements());
                 }
+
+                facturas = facturasPage.getContent();
+                totalItems = facturasPage.getTotalElements();
+                siguiente = facturasPage.hasNext() ? facturaService.cursorDespuesDe(facturas.get(facturas.size() - 1)) : null;
             }
 
-            model.addAttribute("facturas", facturasPage.getContent());
+            int totalPages = (int) ((totalItems + size - 1) / size);
+            model.addAttribute("facturas", facturas);
             model.addAttribute("currentPage", page);
-            model.addAttribute("totalPages", facturasPage.getTotalPages());
-            model.addAttribute("totalItems", facturasPage.getTotalElements());
+            model.addAttribute("totalPages", totalPages);
+            model.addAttribute("totalItems", totalItems);
             model.addAttribute("pageSize", size);
+            model.addAttribute("siguiente", siguiente);
             model.addAttribute("esAdmin", esAdmin());
 
             log.info("✅ Usuario {} cargó {} facturas exitosamente (página {} de {})",
-                    user, facturasPage.getNumberOfElements(), page + 1, facturasPage.getTotalPages());
+                    user, facturas.size(), page + 1, totalPages);
 
         } catch (Exception e) {
             log.error("❌ Error en listarFacturas para usuario {}: {}", user, e.getMessage(), e);
@@ -419,6 +445,7 @@ public class FacturaController {
     @PostMapping("/api/guardar")
     @ResponseBody
     @SuppressWarnings("unchecked")
+    @Timed(value = "lfarma.checkout", extraTags = {"operacion", "desdeCarrito"})
     public ResponseEntity<Map<String, Object>> guardarFacturaDesdeCarrito(@RequestBody Map<String, Object> datos) {
         String user = getCurrentUser();
         long startTime = System.currentTimeMillis();
@@ -546,7 +573,7 @@ public class FacturaController {
                     log.warn("⚠️ Producto sin costo de compra: {}, usando costo calculado: {}",
                             producto.getNombre(), costoCalculado);
                     producto.setCostoCompra(costoCalculado);
-                    productoService.guardarProducto(producto);
+                    productoService.actualizarCostoCompra(producto.getId(), costoCalculado);
                 }
             }
 
@@ -559,7 +586,7 @@ public class FacturaController {
                         .orElseThrow(() -> new RuntimeException("Producto no encontrado después de validación: " + productoId));
 
                 DetalleFactura detalle = new DetalleFactura();
-                detalle.setProducto(producto);
+                detalle.setProducto(ProductoFacturado.de(producto));
                 detalle.setCantidad(cantidad);
                 detalle.setPrecioUnitario(producto.getPrecio());
                 detalles.add(detalle);
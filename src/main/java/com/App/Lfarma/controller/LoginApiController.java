@@ -1,10 +1,13 @@
 package com.App.Lfarma.controller;
 
 import com.App.Lfarma.entity.Usuario;
-import com.App.Lfarma.repository.UsuarioRepository;
+import com.App.Lfarma.security.JwtService;
+import com.App.Lfarma.service.UserDetailsServiceImpl;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -16,19 +19,24 @@ import java.util.Map;
 public class LoginApiController {
 
     @Autowired
-    private UsuarioRepository usuarioRepository;
+    private UserDetailsServiceImpl userDetailsService;
 
-    private BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private JwtService jwtService;
 
     @PostMapping("/login")
     public ResponseEntity<Map<String, Object>> login(@RequestBody Usuario user) {
         Map<String, Object> response = new HashMap<>();
 
         try {
-            // Buscar usuario por username
-            Usuario u = usuarioRepository.findByUsername(user.getUsername()).orElse(null);
-
-            if (u == null) {
+            // Buscar usuario por username (cacheado)
+            UserDetails u;
+            try {
+                u = userDetailsService.loadUserByUsername(user.getUsername());
+            } catch (UsernameNotFoundException e) {
                 response.put("success", false);
                 response.put("message", "Usuario no existe");
                 return ResponseEntity.ok(response);
@@ -42,9 +50,10 @@ public class LoginApiController {
 
             // Comparar contraseña encriptada
             if (passwordEncoder.matches(user.getPassword(), u.getPassword())) {
+                // Tokens para las siguientes peticiones (Authorization: Bearer ...)
+                response.putAll(jwtService.emitirTokens(u));
                 response.put("success", true);
                 response.put("message", "Login exitoso");
-                response.put("username", u.getUsername()); // opcional
                 return ResponseEntity.ok(response);
             } else {
                 response.put("success", false);
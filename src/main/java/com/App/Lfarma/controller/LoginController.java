@@ -4,6 +4,7 @@ import com.App.Lfarma.entity.Usuario;
 import com.App.Lfarma.service.UsuarioService;
 import com.App.Lfarma.service.DashboardService;
 import com.App.Lfarma.service.FacturaService;
+import com.App.Lfarma.service.VentaDiariaService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
@@ -26,6 +27,9 @@ public class LoginController {
     @Autowired
     private FacturaService facturaService;
 
+    @Autowired
+    private VentaDiariaService ventaDiariaService;
+
     // === LOGIN ===
     @GetMapping("/login")
     public String loginForm(
@@ -157,6 +161,22 @@ public class LoginController {
         return "dashboard_admin";
     }
 
+    // Recalcula ventas_diarias desde todas las facturas (tras migraciones o inconsistencias)
+    @PostMapping("/dashboard_admin/ventas-diarias/reconstruir")
+    @ResponseBody
+    public Map<String, Object> reconstruirVentasDiarias() {
+        Map<String, Object> respuesta = new HashMap<>();
+        try {
+            long dias = ventaDiariaService.reconstruir();
+            respuesta.put("success", true);
+            respuesta.put("dias", dias);
+        } catch (Exception e) {
+            respuesta.put("success", false);
+            respuesta.put("message", "Error reconstruyendo ventas diarias: " + e.getMessage());
+        }
+        return respuesta;
+    }
+
     @GetMapping("/dashboard_empleado")
     public String dashboardEmpleado(Model model) {
         try {
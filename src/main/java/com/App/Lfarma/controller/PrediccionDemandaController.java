@@ -2,6 +2,9 @@ package com.App.Lfarma.controller;
 
 import com.App.Lfarma.DTO.PrediccionDemandaDTO;
 import com.App.Lfarma.service.PrediccionDemandaService;
+import com.App.Lfarma.service.PrediccionLoteService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -18,39 +21,45 @@ import java.util.Map;
 @RequestMapping("/predicciones")
 public class PrediccionDemandaController {
 
+    private static final Logger log = LoggerFactory.getLogger(PrediccionDemandaController.class);
+
     @Autowired
     private PrediccionDemandaService prediccionDemandaService;
 
+    @Autowired
+    private PrediccionLoteService prediccionLoteService;
+
     // Constructor para debug
     public PrediccionDemandaController() {
-        System.out.println("✅ PrediccionDemandaController INICIALIZADO");
+        log.debug("✅ PrediccionDemandaController INICIALIZADO");
     }
 
     // Vista principal de predicciones
     @GetMapping
     public String mostrarPredicciones(Model model) {
-        System.out.println("🎯 ACCEDIENDO A /predicciones");
+        log.debug("🎯 ACCEDIENDO A /predicciones");
 
         try {
-            List<PrediccionDemandaDTO> predicciones = prediccionDemandaService.predecirDemandaTodosProductos();
-            List<PrediccionDemandaDTO> alertas = prediccionDemandaService.obtenerProductosDemandaAlta();
+            // Última foto calculada por el lote programado
+            List<PrediccionDemandaDTO> predicciones = prediccionLoteService.obtenerPredicciones();
+            List<PrediccionDemandaDTO> alertas = prediccionLoteService.obtenerProductosDemandaAlta();
 
             // Obtener estadísticas del servicio
-            Map<String, Object> stats = prediccionDemandaService.obtenerEstadisticas();
+            Map<String, Object> stats = prediccionLoteService.obtenerEstadisticas();
 
             model.addAttribute("predicciones", predicciones);
             model.addAttribute("alertas", alertas);
+            model.addAttribute("fechaGeneracion", stats.get("fechaGeneracion"));
             model.addAttribute("totalProductos", stats.get("totalProductos"));
             model.addAttribute("totalAlertas", stats.get("totalAlertas"));
             model.addAttribute("demandaAlta", stats.get("demandaAlta"));
             model.addAttribute("demandaMedia", stats.get("demandaMedia"));
             model.addAttribute("demandaBaja", stats.get("demandaBaja"));
 
-            System.out.println("✅ Predicciones cargadas: " + predicciones.size());
+            log.info("✅ Predicciones cargadas: {}", predicciones.size());
 
         } catch (Exception e) {
-            System.err.println("❌ ERROR en mostrarPredicciones: " + e.getMessage());
-            e.printStackTrace();
+            log.error("❌ ERROR en mostrarPredicciones: {}", e.getMessage(), e);
 
             model.addAttribute("error", "Error cargando predicciones: " + e.getMessage());
             // Valores por defecto en caso de error
@@ -69,32 +78,32 @@ public class PrediccionDemandaController {
     // Dashboard de predicciones - ✅ CORREGIDO
     @GetMapping("/dashboard")
     public String dashboardPredicciones(Model model) {
-        System.out.println("🎯 ACCEDIENDO A /predicciones/dashboard");
+        log.debug("🎯 ACCEDIENDO A /predicciones/dashboard");
 
         try {
-            List<PrediccionDemandaDTO> predicciones = prediccionDemandaService.predecirDemandaTodosProductos();
-            List<PrediccionDemandaDTO> alertas = prediccionDemandaService.obtenerProductosDemandaAlta();
-            List<PrediccionDemandaDTO> recientes = prediccionDemandaService.obtenerPrediccionesRecientes();
+            List<PrediccionDemandaDTO> predicciones = prediccionLoteService.obtenerPredicciones();
+            List<PrediccionDemandaDTO> alertas = prediccionLoteService.obtenerProductosDemandaAlta();
+            List<PrediccionDemandaDTO> recientes = prediccionLoteService.obtenerRecientes(10);
 
             // Obtener estadísticas
-            Map<String, Object> stats = prediccionDemandaService.obtenerEstadisticas();
+            Map<String, Object> stats = prediccionLoteService.obtenerEstadisticas();
 
             model.addAttribute("predicciones", predicciones);
             model.addAttribute("alertas", alertas);
             model.addAttribute("recientes", recientes);
+            model.addAttribute("fechaGeneracion", stats.get("fechaGeneracion"));
             model.addAttribute("demandaAlta", stats.get("demandaAlta"));
             model.addAttribute("demandaMedia", stats.get("demandaMedia"));
             model.addAttribute("demandaBaja", stats.get("demandaBaja"));
             model.addAttribute("totalProductos", stats.get("totalProductos"));
             model.addAttribute("totalAlertas", stats.get("totalAlertas"));
 
-            System.out.println("✅ Dashboard cargado - Predicciones: " + predicciones.size());
-            System.out.println("✅ Alertas: " + alertas.size());
-            System.out.println("✅ Recientes: " + recientes.size());
+            log.info("✅ Dashboard cargado - Predicciones: {}", predicciones.size());
+            log.debug("✅ Alertas: {}", alertas.size());
+            log.debug("✅ Recientes: {}", recientes.size());
 
         } catch (Exception e) {
-            System.err.println("❌ ERROR en dashboardPredicciones: " + e.getMessage());
-            e.printStackTrace();
+            log.error("❌ ERROR en dashboardPredicciones: {}", e.getMessage(), e);
 
             model.addAttribute("error", "Error cargando dashboard: " + e.getMessage());
 
@@ -117,22 +126,25 @@ public class PrediccionDemandaController {
     @ResponseBody
     @CrossOrigin(origins = "*")
     public ResponseEntity<?> reentrenarModelo() {
-        System.out.println("🔄 SOLICITUD DE RE-ENTRENAMIENTO DEL MODELO");
+        log.debug("🔄 SOLICITUD DE RE-ENTRENAMIENTO DEL MODELO");
 
         try {
             boolean exito = prediccionDemandaService.reentrenarModelo();
+            if (exito) {
+                // Las predicciones publicadas se recalculan con el nuevo modelo
+                prediccionLoteService.recalcularEnSegundoPlano();
+            }
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", exito);
             response.put("message", exito ? "Modelo re-entrenado exitosamente" : "Error re-entrenando el modelo");
 
-            System.out.println("✅ Re-entrenamiento: " + (exito ? "EXITOSO" : "FALLIDO"));
+            log.info("✅ Re-entrenamiento: {}", exito ? "EXITOSO" : "FALLIDO");
 
             return ResponseEntity.ok(response);
 
         } catch (Exception e) {
-            System.err.println("❌ ERROR en reentrenarModelo: " + e.getMessage());
-            e.printStackTrace();
+            log.error("❌ ERROR en reentrenarModelo: {}", e.getMessage(), e);
 
             return ResponseEntity.badRequest()
                     .body(Map.of("success", false, "error", e.getMessage()));
@@ -144,17 +156,16 @@ public class PrediccionDemandaController {
     @ResponseBody
     @CrossOrigin(origins = "*")
     public ResponseEntity<?> obtenerEstadoModelo() {
-        System.out.println("📊 SOLICITUD DE ESTADO DEL MODELO");
+        log.debug("📊 SOLICITUD DE ESTADO DEL MODELO");
 
         try {
             Map<String, Object> estado = prediccionDemandaService.obtenerEstadoModelo();
 
-            System.out.println("✅ Estado del modelo obtenido: " + estado);
+            log.debug("✅ Estado del modelo obtenido: {}", estado);
 
             return ResponseEntity.ok(estado);
         } catch (Exception e) {
-            System.err.println("❌ ERROR en obtenerEstadoModelo: " + e.getMessage());
-            e.printStackTrace();
+            log.error("❌ ERROR en obtenerEstadoModelo: {}", e.getMessage(), e);
 
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Error obteniendo estado del modelo: " + e.getMessage()));
@@ -166,7 +177,7 @@ public class PrediccionDemandaController {
     @ResponseBody
     @CrossOrigin(origins = "*")
     public ResponseEntity<?> limpiarDataset(@RequestParam(defaultValue = "completa") String tipo) {
-        System.out.println("🧹 SOLICITUD DE LIMPIEZA DEL DATASET ARFF - Tipo: " + tipo);
+        log.debug("🧹 SOLICITUD DE LIMPIEZA DEL DATASET ARFF - Tipo: {}", tipo);
 
         try {
             Map<String, Object> resultado;
@@ -177,14 +188,12 @@ public class PrediccionDemandaController {
                 resultado = prediccionDemandaService.limpiarDatasetManual();
             }
 
-            System.out.println("✅ Limpieza del dataset: " +
-                    (Boolean.TRUE.equals(resultado.get("success")) ? "EXITOSA" : "FALLIDA"));
+            log.info("✅ Limpieza del dataset: {}", (Boolean.TRUE.equals(resultado.get("success")) ? "EXITOSA" : "FALLIDA"));
 
             return ResponseEntity.ok(resultado);
 
         } catch (Exception e) {
-            System.err.println("❌ ERROR en limpiarDataset: " + e.getMessage());
-            e.printStackTrace();
+            log.error("❌ ERROR en limpiarDataset: {}", e.getMessage(), e);
 
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of(
@@ -199,19 +208,17 @@ public class PrediccionDemandaController {
     @ResponseBody
     @CrossOrigin(origins = "*")
     public ResponseEntity<?> limpiarDatasetSeguro() {
-        System.out.println("🛡️ SOLICITUD DE LIMPIEZA SEGURA DEL DATASET");
+        log.debug("🛡️ SOLICITUD DE LIMPIEZA SEGURA DEL DATASET");
 
         try {
             Map<String, Object> resultado = prediccionDemandaService.limpiarDatasetSeguro();
 
-            System.out.println("✅ Limpieza segura del dataset: " +
-                    (Boolean.TRUE.equals(resultado.get("success")) ? "EXITOSA" : "FALLIDA"));
+            log.info("✅ Limpieza segura del dataset: {}", (Boolean.TRUE.equals(resultado.get("success")) ? "EXITOSA" : "FALLIDA"));
 
             return ResponseEntity.ok(resultado);
 
         } catch (Exception e) {
-            System.err.println("❌ ERROR en limpiarDatasetSeguro: " + e.getMessage());
-            e.printStackTrace();
+            log.error("❌ ERROR en limpiarDatasetSeguro: {}", e.getMessage(), e);
 
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of(
@@ -226,7 +233,7 @@ public class PrediccionDemandaController {
     @ResponseBody
     @CrossOrigin(origins = "*")
     public ResponseEntity<?> obtenerEstadoFiltro() {
-        System.out.println("🔍 SOLICITUD DE ESTADO DEL FILTRO");
+        log.debug("🔍 SOLICITUD DE ESTADO DEL FILTRO");
 
         try {
             // Obtener todos los productos
@@ -269,14 +276,12 @@ public class PrediccionDemandaController {
             estado.put("productosRealesLista", listaReales);
             estado.put("timestamp", java.time.LocalDateTime.now().toString());
 
-            System.out.println("📊 Estado del filtro - Reales: " + productosReales +
-                    ", Dataset: " + productosDataset + ", Total: " + totalProductos);
+            log.debug("📊 Estado del filtro - Reales: {}, Dataset: {}, Total: {}", productosReales, productosDataset, totalProductos);
 
             return ResponseEntity.ok(estado);
 
         } catch (Exception e) {
-            System.err.println("❌ ERROR en obtenerEstadoFiltro: " + e.getMessage());
-            e.printStackTrace();
+            log.error("❌ ERROR en obtenerEstadoFiltro: {}", e.getMessage(), e);
 
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of(
@@ -290,7 +295,7 @@ public class PrediccionDemandaController {
     @GetMapping("/test")
     @ResponseBody
     public Map<String, String> test() {
-        System.out.println("🧪 TEST ENDPOINT ACCEDIDO");
+        log.debug("🧪 TEST ENDPOINT ACCEDIDO");
 
         Map<String, String> response = new HashMap<>();
         response.put("status", "success");
@@ -306,7 +311,7 @@ public class PrediccionDemandaController {
     @CrossOrigin(origins = "*")
     public ResponseEntity<?> obtenerEstadisticas() {
         try {
-            Map<String, Object> stats = prediccionDemandaService.obtenerEstadisticas();
+            Map<String, Object> stats = prediccionLoteService.obtenerEstadisticas();
             return ResponseEntity.ok(stats);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -314,12 +319,24 @@ public class PrediccionDemandaController {
         }
     }
 
+    // Lanza el lote de predicciones sin esperar a la siguiente ejecución programada
+    @PostMapping("/api/recalcular")
+    @ResponseBody
+    public ResponseEntity<?> recalcularPredicciones() {
+        prediccionLoteService.recalcularEnSegundoPlano();
+        return ResponseEntity.accepted().body(Map.of(
+                "success", true,
+                "message", "Recálculo de predicciones iniciado",
+                "timestamp", java.time.LocalDateTime.now().toString()
+        ));
+    }
+
     // ✅ NUEVO: Endpoint para obtener productos del dataset
     @GetMapping("/api/productos-dataset")
     @ResponseBody
     @CrossOrigin(origins = "*")
     public ResponseEntity<?> obtenerProductosDataset() {
-        System.out.println("📋 SOLICITUD DE LISTA DE PRODUCTOS DEL DATASET");
+        log.debug("📋 SOLICITUD DE LISTA DE PRODUCTOS DEL DATASET");
 
         try {
             List<com.App.Lfarma.entity.Producto> todosProductos =
@@ -355,7 +372,7 @@ public class PrediccionDemandaController {
             return ResponseEntity.ok(resultado);
 
         } catch (Exception e) {
-            System.err.println("❌ ERROR en obtenerProductosDataset: " + e.getMessage());
+            log.error("❌ ERROR en obtenerProductosDataset: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("success", false, "error", e.getMessage()));
         }
@@ -366,7 +383,7 @@ public class PrediccionDemandaController {
     @ResponseBody
     @CrossOrigin(origins = "*")
     public ResponseEntity<?> limpiarPredicciones() {
-        System.out.println("🗑️ SOLICITUD DE LIMPIEZA DE PREDICCIONES");
+        log.debug("🗑️ SOLICITUD DE LIMPIEZA DE PREDICCIONES");
 
         try {
             prediccionDemandaService.limpiarPrediccionesNoReales();
@@ -378,7 +395,7 @@ public class PrediccionDemandaController {
             ));
 
         } catch (Exception e) {
-            System.err.println("❌ ERROR en limpiarPredicciones: " + e.getMessage());
+            log.error("❌ ERROR en limpiarPredicciones: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("success", false, "error", e.getMessage()));
         }
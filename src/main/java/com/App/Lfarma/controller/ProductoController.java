@@ -7,6 +7,8 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.MediaType;
 import org.springframework.security.core.Authentication;
@@ -15,18 +17,31 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import com.App.Lfarma.DTO.PaginaCursorDTO;
 import com.App.Lfarma.entity.Producto;
+import com.App.Lfarma.service.BusquedaProductoService;
+import com.App.Lfarma.service.ImagenProductoService;
+import com.App.Lfarma.service.ImportacionProductoService;
 import com.App.Lfarma.service.ProductoService;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.*;
+import java.time.Duration;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,6 +54,12 @@ public class ProductoController {
     @Autowired
     private ProductoService productoService;
 
+    @Autowired
+    private ImagenProductoService imagenProductoService;
+
+    @Autowired
+    private ImportacionProductoService importacionProductoService;
+
     private List<String> obtenerCategorias() {
         return Arrays.asList("Medicamento", "Higiene", "Cosmético", "Suplemento", "Otros");
     }
@@ -63,7 +84,7 @@ public class ProductoController {
             @RequestParam(required = false) String categoria,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "5") int size,
-            @RequestParam(defaultValue = "nombre") String sortBy,
+            @RequestParam(required = false) String sortBy,
             @RequestParam(defaultValue = "asc") String sortDir,
             Model model) {
 
@@ -78,18 +99,30 @@ public class ProductoController {
             if (size <= 0) size = 12;
             if (size > 50) size = 50;
 
+            // Al buscar sin orden explícito (o con sortBy=relevancia) se ordena por relevancia
+            boolean buscando = searchTerm != null && !searchTerm.trim().isEmpty();
+            boolean porRelevancia = buscando && (sortBy == null || sortBy.isBlank() || sortBy.equals("relevancia"));
+            if (sortBy == null || sortBy.isBlank() || sortBy.equals("relevancia")) {
+                sortBy = "nombre";
+            }
+
             Sort sort = Sort.by(sortBy);
             sort = sortDir.equalsIgnoreCase("asc") ? sort.ascending() : sort.descending();
-            Pageable pageable = PageRequest.of(page, size, sort);
+            Pageable pageable = porRelevancia ? PageRequest.of(page, size) : PageRequest.of(page, size, sort);
 
             Page<Producto> pageProductos;
 
             // ✅✅✅ CORRECCIÓN CRÍTICA: Usar los métodos CORRECTOS del servicio
-            if (searchTerm != null && !searchTerm.trim().isEmpty()) {
+            if (buscando) {
                 String terminoBusqueda = searchTerm.trim();
                 log.info("🔍 Búsqueda activada: '{}'", terminoBusqueda);
-                pageProductos = productoService.buscarProductos(terminoBusqueda, categoria, pageable);
+                BusquedaProductoService.Resultado resultado =
+                        productoService.buscarProductosConFacetas(terminoBusqueda, categoria, pageable);
+                pageProductos = resultado.pagina();
+                porRelevancia = resultado.porRelevancia();
                 model.addAttribute("searchTerm", terminoBusqueda);
+                model.addAttribute("categoria", categoria);
+                model.addAttribute("facetas", resultado.facetas());
             } else if (categoria != null && !categoria.isEmpty()) {
                 log.info("📂 Filtrando por categoría: '{}'", categoria);
                 pageProductos = productoService.listarProductosPaginadas(categoria, pageable);
@@ -125,7 +158,7 @@ public class ProductoController {
             model.addAttribute("totalPages", pageProductos.getTotalPages());
             model.addAttribute("totalItems", pageProductos.getTotalElements());
             model.addAttribute("pageSize", size);
-            model.addAttribute("sortField", sortBy);
+            model.addAttribute("sortField", porRelevancia ? "relevancia" : sortBy);
             model.addAttribute("sortDir", sortDir);
             model.addAttribute("reverseSortDir", sortDir.equals("asc") ? "desc" : "asc");
 
@@ -426,27 +459,14 @@ public class ProductoController {
                 return "redirect:/productos";
             }
 
-            // Crear carpeta si no existe
-            Path directorio = Paths.get("src/main/resources/static/images");
-            if (!Files.exists(directorio)) {
-                Files.createDirectories(directorio);
-            }
-
-            // Guardar archivo con nombre seguro
-            String nombreOriginal = file.getOriginalFilename();
-            String extension = "";
-            if (nombreOriginal != null && nombreOriginal.contains(".")) {
-                extension = nombreOriginal.substring(nombreOriginal.lastIndexOf("."));
-            }
+            Producto producto = productoService.buscarPorId(id)
+                    .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado"));
 
-            String nombreArchivo = "producto_" + id + "_" + System.currentTimeMillis() + extension;
-            Path ruta = directorio.resolve(nombreArchivo);
-            Files.copy(file.getInputStream(), ruta, StandardCopyOption.REPLACE_EXISTING);
+            // Guardar en el almacén de imágenes (las miniaturas se generan en segundo plano)
+            String nombreArchivo = imagenProductoService.guardar(id, file);
 
             // Actualizar producto en Mongo
-            Producto producto = productoService.buscarPorId(id)
-                    .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado"));
-            producto.setImagen("/images/" + nombreArchivo);
+            producto.setImagen("/productos/images/" + nombreArchivo);
             productoService.guardarProducto(producto);
 
             redirectAttributes.addFlashAttribute("success", "Imagen subida correctamente.");
@@ -463,57 +483,185 @@ public class ProductoController {
         return "redirect:/productos";
     }
 
-    // ✅ CORREGIDO: Endpoint para servir imágenes con mejor manejo de errores
-    @GetMapping("/images/{imageName:.+}")
-    public ResponseEntity<Resource> getImage(@PathVariable String imageName) {
+    // ✅ Importación masiva del catálogo (CSV o XLSX) con upsert por código.
+    // simulacion=true valida el archivo y cuenta nuevos/actualizados sin escribir.
+    // reemplazarStock=true pisa la cantidad de los existentes; por defecto solo la de los nuevos.
+    @PostMapping("/importar")
+    @ResponseBody
+    public ResponseEntity<?> importarProductos(@RequestParam("file") MultipartFile file,
+                                               @RequestParam(defaultValue = "false") boolean simulacion,
+                                               @RequestParam(defaultValue = "false") boolean reemplazarStock) {
+        if (!esAdmin()) {
+            return ResponseEntity.status(403).body(Map.of(
+                    "success", false,
+                    "error", "Sin permisos"
+            ));
+        }
         try {
-            log.debug("🔍 Buscando imagen: {}", imageName);
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "importacion", importacionProductoService.importar(file, simulacion, reemplazarStock)
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "error", e.getMessage()
+            ));
+        } catch (IOException e) {
+            log.error("❌ Error de IO al importar productos: {}", e.getMessage());
+            return ResponseEntity.internalServerError().body(Map.of(
+                    "success", false,
+                    "error", "Error al leer el archivo: " + e.getMessage()
+            ));
+        }
+    }
 
-            // Buscar en static/images/
-            Resource resource = new ClassPathResource("static/images/" + imageName);
+    // Imágenes del almacén en disco; con ?ancho= se sirve la miniatura más cercana.
+    // Las subidas nunca cambian de contenido: ETag fuerte y cache de un año en el navegador
+    // (salvo mientras la miniatura pedida se genera y se responde con el original).
+    // Las imágenes antiguas empaquetadas en static/images se siguen sirviendo desde el classpath.
+    @GetMapping("/images/{imageName:.+}")
+    public ResponseEntity<?> getImage(@PathVariable String imageName,
+                                      @RequestParam(required = false) Integer ancho,
+                                      HttpServletRequest request,
+                                      HttpServletResponse response) {
+        try {
+            log.debug("🔍 Buscando imagen: {} (ancho {})", imageName, ancho);
 
-            if (resource.exists() && resource.isReadable()) {
-                log.debug("✅ Imagen encontrada: {}", imageName);
-
-                // Determinar el tipo de contenido basado en la extensión del archivo
-                MediaType mediaType = MediaType.IMAGE_JPEG;
-                if (imageName.toLowerCase().endsWith(".png")) {
-                    mediaType = MediaType.IMAGE_PNG;
-                } else if (imageName.toLowerCase().endsWith(".gif")) {
-                    mediaType = MediaType.IMAGE_GIF;
-                } else if (imageName.toLowerCase().endsWith(".webp")) {
-                    mediaType = MediaType.parseMediaType("image/webp");
-                }
+            Optional<ImagenProductoService.ImagenResuelta> imagen = imagenProductoService.resolver(imageName, ancho);
+            if (imagen.isPresent()) {
+                enviarArchivo(imagen.get().archivo(), imagen.get().definitiva(), request, response);
+                return null;
+            }
 
+            Resource resource = new ClassPathResource("static/images/" + imageName);
+            if (!imageName.contains("..") && resource.exists() && resource.isReadable()) {
                 return ResponseEntity.ok()
-                        .contentType(mediaType)
+                        .contentType(tipoImagen(imageName))
+                        .cacheControl(CacheControl.maxAge(Duration.ofDays(1)).cachePublic())
                         .body(resource);
-            } else {
-                log.warn("❌ Imagen NO encontrada o no legible: static/images/{}", imageName);
-                return ResponseEntity.notFound().build();
             }
+
+            log.warn("❌ Imagen NO encontrada: {}", imageName);
+            return ResponseEntity.notFound().build();
         } catch (Exception e) {
             log.error("❌ Error cargando imagen {}: {}", imageName, e.getMessage());
             return ResponseEntity.notFound().build();
         }
     }
 
+    private void enviarArchivo(Path archivo, boolean definitiva, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+        long tamano = Files.size(archivo);
+        long modificado = Files.getLastModifiedTime(archivo).toMillis();
+        String etag = "\"" + Long.toHexString(modificado) + "-" + Long.toHexString(tamano) + "\"";
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        // El original servido en lugar de una miniatura pendiente se revalida (ETag) hasta que exista
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                definitiva ? "public, max-age=31536000, immutable" : "public, no-cache");
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentType(tipoImagen(archivo.getFileName().toString()).toString());
+        response.setContentLengthLong(tamano);
+
+        // Tomcat envía el archivo con sendfile (el kernel copia directo al socket)
+        if (Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))) {
+            request.setAttribute("org.apache.tomcat.sendfile.filename", archivo.toString());
+            request.setAttribute("org.apache.tomcat.sendfile.start", 0L);
+            request.setAttribute("org.apache.tomcat.sendfile.end", tamano);
+            return;
+        }
+
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            WritableByteChannel salida = Channels.newChannel(response.getOutputStream());
+            long enviados = 0;
+            while (enviados < tamano) {
+                enviados += canal.transferTo(enviados, tamano - enviados, salida);
+            }
+        }
+    }
+
+    private static MediaType tipoImagen(String nombre) {
+        String minusculas = nombre.toLowerCase();
+        if (minusculas.endsWith(".png")) {
+            return MediaType.IMAGE_PNG;
+        } else if (minusculas.endsWith(".gif")) {
+            return MediaType.IMAGE_GIF;
+        } else if (minusculas.endsWith(".webp")) {
+            return MediaType.parseMediaType("image/webp");
+        }
+        return MediaType.IMAGE_JPEG;
+    }
+
+    // Respuestas condicionales del catálogo: el ETag y Last-Modified salen de la versión del
+    // catálogo (última escritura de productos en cualquier nodo). Si el cliente ya tiene esa
+    // versión se responde 304 sin consultar Mongo ni serializar. La versión se lee antes de la
+    // consulta: una escritura concurrente deja un ETag viejo, nunca datos viejos con ETag nuevo.
+    private boolean sinCambios(WebRequest webRequest) {
+        long version = productoService.versionCatalogo();
+        HttpServletResponse response = ((NativeWebRequest) webRequest).getNativeResponse(HttpServletResponse.class);
+        if (response != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+        }
+        // Débil: el cuerpo puede viajar comprimido
+        return webRequest.checkNotModified("W/\"" + Long.toHexString(version) + "\"", version);
+    }
+
     // ✅ CORREGIDO: Endpoint API con métodos que SÍ EXISTEN
+    // Con "after" (vacío para la primera página) pagina por cursor; el total solo se cuenta con conTotal=true.
+    // Las búsquedas (q) se ordenan por relevancia y siguen paginando por número.
     @GetMapping("/api")
     @ResponseBody
     @CrossOrigin(origins = "*")
     public ResponseEntity<?> listarProductosApi(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String categoria,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "false") boolean conTotal,
+            WebRequest webRequest) {
+        if (sinCambios(webRequest)) {
+            return null;
+        }
         try {
             // Validar parámetros
             if (page < 0) page = 0;
             if (size <= 0) size = 20;
             if (size > 100) size = 100;
 
+            if (after != null) {
+                if (q != null && !q.trim().isEmpty()) {
+                    throw new IllegalArgumentException("La paginación por cursor no está disponible para búsquedas");
+                }
+                PaginaCursorDTO<Producto> pagina = productoService.listarProductosCursor(categoria, after, size, conTotal);
+                Map<String, Object> respuesta = new HashMap<>();
+                respuesta.put("success", true);
+                respuesta.put("productos", pagina.getContenido());
+                respuesta.put("siguiente", pagina.getSiguiente());
+                respuesta.put("hayMas", pagina.isHayMas());
+                respuesta.put("totalItems", pagina.getTotal());
+                respuesta.put("pageSize", size);
+
+                log.info("✅ API Productos por cursor - Tamaño: {}, Elementos: {}", size, pagina.getContenido().size());
+                return ResponseEntity.ok(respuesta);
+            }
+
             Pageable pageable = PageRequest.of(page, size);
-            // ✅ MÉTODO QUE SÍ EXISTE
-            Page<Producto> productosPage = productoService.listarProductosPaginadas(pageable);
+            BusquedaProductoService.Resultado resultado;
+            if (q != null && !q.trim().isEmpty()) {
+                resultado = productoService.buscarProductosConFacetas(q.trim(), categoria, pageable);
+            } else {
+                // ✅ MÉTODO QUE SÍ EXISTE
+                resultado = new BusquedaProductoService.Resultado(
+                        productoService.listarProductosPaginadas(categoria, pageable), Map.of(), false);
+            }
+            Page<Producto> productosPage = resultado.pagina();
 
             log.info("✅ API Productos - Página: {}, Tamaño: {}, Total: {}",
                     page, size, productosPage.getTotalElements());
@@ -524,7 +672,14 @@ public class ProductoController {
                     "currentPage", page,
                     "totalPages", productosPage.getTotalPages(),
                     "totalItems", productosPage.getTotalElements(),
-                    "pageSize", size
+                    "pageSize", size,
+                    "facetas", resultado.facetas(),
+                    "ordenRelevancia", resultado.porRelevancia()
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "error", e.getMessage()
             ));
         } catch (Exception e) {
             log.error("❌ Error en /productos/api: {}", e.getMessage(), e);
@@ -541,7 +696,11 @@ public class ProductoController {
     @CrossOrigin(origins = "*")
     public ResponseEntity<?> obtenerProductosDestacados(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "6") int size) {
+            @RequestParam(defaultValue = "6") int size,
+            WebRequest webRequest) {
+        if (sinCambios(webRequest)) {
+            return null;
+        }
         try {
             Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "precio"));
             // ✅ MÉTODO QUE SÍ EXISTE
@@ -569,11 +728,49 @@ public class ProductoController {
         }
     }
 
+    // ✅ Autocompletado por nombre, código o principio activo (índice en memoria)
+    @GetMapping("/api/autocompletar")
+    @ResponseBody
+    public ResponseEntity<?> autocompletarProductos(
+            @RequestParam(name = "q", defaultValue = "") String termino,
+            @RequestParam(defaultValue = "10") int limite) {
+        try {
+            return ResponseEntity.ok(Map.of(
+                    "success", true,
+                    "sugerencias", productoService.autocompletar(termino, limite)
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "success", false,
+                    "error", e.getMessage()
+            ));
+        }
+    }
+
+    // ✅ Estadísticas de la cache local de productos (aciertos, fallos, expulsiones)
+    @GetMapping("/api/cache")
+    @ResponseBody
+    public ResponseEntity<?> estadisticasCache() {
+        if (!esAdmin()) {
+            return ResponseEntity.status(403).body(Map.of(
+                    "success", false,
+                    "error", "Sin permisos"
+            ));
+        }
+        return ResponseEntity.ok(Map.of(
+                "success", true,
+                "cache", productoService.estadisticasCache()
+        ));
+    }
+
     // ✅ CORREGIDO: Endpoint para producto por ID
     @GetMapping("/api/{id}")
     @ResponseBody
     @CrossOrigin(origins = "*")
-    public ResponseEntity<?> obtenerProductoPorId(@PathVariable String id) {
+    public ResponseEntity<?> obtenerProductoPorId(@PathVariable String id, WebRequest webRequest) {
+        if (sinCambios(webRequest)) {
+            return null;
+        }
         try {
             if (id == null || id.trim().isEmpty()) {
                 return ResponseEntity.badRequest().body(Map.of(
@@ -605,7 +802,11 @@ public class ProductoController {
     public ResponseEntity<?> obtenerProductosPorCategoria(
             @PathVariable String categoria,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "12") int size) {
+            @RequestParam(defaultValue = "12") int size,
+            WebRequest webRequest) {
+        if (sinCambios(webRequest)) {
+            return null;
+        }
         try {
             Pageable pageable = PageRequest.of(page, size);
             // ✅ MÉTODO QUE SÍ EXISTE
@@ -1,19 +1,34 @@
 package com.App.Lfarma.controller;
 
+import com.App.Lfarma.DTO.ReporteAgrupadoDTO;
 import com.App.Lfarma.DTO.ReporteDTO;
 import com.App.Lfarma.DTO.ResumenReporteDTO;
 import com.App.Lfarma.service.ReporteService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api")
 public class ReporteController {
 
+    private static final Logger log = LoggerFactory.getLogger(ReporteController.class);
+
     @Autowired
     private ReporteService reporteService;
 
@@ -27,16 +42,61 @@ public class ReporteController {
         return reporteService.generarReporte(desde, hasta);
     }
 
+    // 🔹 Exportación en streaming: formato=csv|ndjson, gzip=true para descargar comprimido
+    @GetMapping("/reportes/exportar")
+    public void exportarReporte(
+            @RequestParam("desde") @DateTimeFormat(pattern = "yyyy-MM-dd") Date desde,
+            @RequestParam("hasta") @DateTimeFormat(pattern = "yyyy-MM-dd") Date hasta,
+            @RequestParam(value = "formato", defaultValue = "csv") String formato,
+            @RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+            HttpServletResponse response) throws IOException {
+        ReporteService.FormatoExportacion formatoExportacion;
+        try {
+            formatoExportacion = ReporteService.FormatoExportacion.valueOf(formato.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Formato no válido: " + formato);
+        }
+
+        boolean csv = formatoExportacion == ReporteService.FormatoExportacion.CSV;
+        String archivo = "reporte." + (csv ? "csv" : "ndjson") + (gzip ? ".gz" : "");
+        response.setContentType(gzip ? "application/gzip" : (csv ? "text/csv" : "application/x-ndjson"));
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + archivo + "\"");
+
+        OutputStream salida = response.getOutputStream();
+        if (gzip) {
+            // syncFlush para que cada flush del writer llegue al cliente
+            salida = new GZIPOutputStream(salida, 8192, true);
+        }
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8))) {
+            reporteService.exportarReporte(desde, hasta, formatoExportacion, writer);
+        }
+    }
+
     // Endpoint resumen (KPIs)
     @GetMapping("/reportes/summary")
     public ResumenReporteDTO obtenerResumen(
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date desde,
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date hasta) {
         ResumenReporteDTO resumen = reporteService.generarResumen(desde, hasta);
-        System.out.println("API Response - Total Ventas: " + resumen.getTotalVentas() +
-                         ", Total Ganancia: " + resumen.getTotalGanancia() +
-                         ", Productos Vendidos: " + resumen.getProductosVendidos() +
-                         ", Facturas Emitidas: " + resumen.getFacturasEmitidas());
+        log.debug("📊 Resumen - Total Ventas: {}, Total Ganancia: {}, Productos Vendidos: {}, Facturas Emitidas: {}",
+                resumen.getTotalVentas(), resumen.getTotalGanancia(),
+                resumen.getProductosVendidos(), resumen.getFacturasEmitidas());
         return resumen;
     }
+
+    // Totales agrupados en el servidor: por=dia|producto|categoria|vendedor
+    @GetMapping("/reportes/agrupado")
+    public List<ReporteAgrupadoDTO> obtenerReporteAgrupado(
+            @RequestParam("desde") @DateTimeFormat(pattern = "yyyy-MM-dd") Date desde,
+            @RequestParam("hasta") @DateTimeFormat(pattern = "yyyy-MM-dd") Date hasta,
+            @RequestParam(value = "por", defaultValue = "dia") String por) {
+        ReporteService.Agrupacion agrupacion;
+        try {
+            agrupacion = ReporteService.Agrupacion.valueOf(por.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Agrupación no válida: " + por);
+        }
+        return reporteService.generarReporteAgrupado(desde, hasta, agrupacion);
+    }
 }
@@ -6,6 +6,7 @@ import com.App.Lfarma.entity.Cliente;
 import com.App.Lfarma.entity.DetalleFactura;
 import com.App.Lfarma.entity.Factura;
 import com.App.Lfarma.entity.ItemCarrito;
+import com.App.Lfarma.entity.ProductoFacturado;
 import com.App.Lfarma.entity.ShoppingCart;
 import com.App.Lfarma.service.ClienteService;
 import com.App.Lfarma.service.FacturaService;
@@ -104,7 +105,7 @@ public class ShoppingCartController {
             if (cart.getItems() != null) {
                 for (ItemCarrito it : cart.getItems()) {
                     DetalleFactura d = new DetalleFactura();
-                    d.setProducto(it.getProducto());
+                    d.setProducto(ProductoFacturado.de(it.getProducto()));
                     d.setCantidad(it.getCantidad());
                     d.setPrecioUnitario(it.getPrecioUnitario());
                     detalles.add(d);
@@ -1,5 +1,6 @@
 package com.App.Lfarma.controller;
 
+import com.App.Lfarma.DTO.PaginaCursorDTO;
 import com.App.Lfarma.entity.*;
 import com.App.Lfarma.service.ProveedorService;
 import com.App.Lfarma.service.SuministroService;
@@ -44,17 +45,36 @@ public class SuministroController {
     public String listarSuministros(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Long total,
             Model model) {
 
         try {
-            Pageable pageable = PageRequest.of(page, size);
-            Page<Suministro> suministrosPage = suministroService.listarSuministrosPaginados(pageable);
+            List<Suministro> suministros;
+            long totalItems;
+            String siguiente;
+
+            // Con "after" la página se lee por cursor (sin skip); "total" evita volver a contar al avanzar
+            if (after != null && !after.isBlank()) {
+                PaginaCursorDTO<Suministro> pagina = suministroService.listarSuministrosCursor(after, size, total == null);
+                suministros = pagina.getContenido();
+                totalItems = total != null ? total : pagina.getTotal();
+                siguiente = pagina.getSiguiente();
+            } else {
+                Pageable pageable = PageRequest.of(page, size, SuministroService.ORDEN_LISTADO.sort());
+                Page<Suministro> suministrosPage = suministroService.listarSuministrosPaginados(pageable);
+                suministros = suministrosPage.getContent();
+                totalItems = suministrosPage.getTotalElements();
+                siguiente = suministrosPage.hasNext()
+                        ? suministroService.cursorDespuesDe(suministros.get(suministros.size() - 1)) : null;
+            }
 
-            model.addAttribute("suministros", suministrosPage.getContent());
+            model.addAttribute("suministros", suministros);
             model.addAttribute("currentPage", page);
-            model.addAttribute("totalPages", suministrosPage.getTotalPages());
-            model.addAttribute("totalItems", suministrosPage.getTotalElements());
+            model.addAttribute("totalPages", (int) ((totalItems + size - 1) / size));
+            model.addAttribute("totalItems", totalItems);
             model.addAttribute("pageSize", size);
+            model.addAttribute("siguiente", siguiente);
 
         } catch (Exception e) {
             model.addAttribute("error", "Error al cargar suministros: " + e.getMessage());
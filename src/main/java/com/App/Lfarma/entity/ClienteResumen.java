@@ -0,0 +1,91 @@
+package com.App.Lfarma.entity;
+
+import org.springframework.data.annotation.Id;
+
+// Datos del cliente que se muestran en la factura, embebidos al momento de la venta.
+public class ClienteResumen {
+
+    @Id
+    private String id;
+
+    private String codigo;
+    private String nombre;
+    private String identificacion;
+    private String email;
+    private String telefono;
+    private String direccion;
+
+    public ClienteResumen() {
+    }
+
+    public static ClienteResumen de(Cliente cliente) {
+        if (cliente == null) {
+            return null;
+        }
+        ClienteResumen resumen = new ClienteResumen();
+        resumen.id = cliente.getId();
+        resumen.codigo = cliente.getCodigo();
+        resumen.nombre = cliente.getNombre();
+        resumen.identificacion = cliente.getIdentificacion();
+        resumen.email = cliente.getEmail();
+        resumen.telefono = cliente.getTelefono();
+        resumen.direccion = cliente.getDireccion();
+        return resumen;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getCodigo() {
+        return codigo;
+    }
+
+    public void setCodigo(String codigo) {
+        this.codigo = codigo;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public void setNombre(String nombre) {
+        this.nombre = nombre;
+    }
+
+    public String getIdentificacion() {
+        return identificacion;
+    }
+
+    public void setIdentificacion(String identificacion) {
+        this.identificacion = identificacion;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getTelefono() {
+        return telefono;
+    }
+
+    public void setTelefono(String telefono) {
+        this.telefono = telefono;
+    }
+
+    public String getDireccion() {
+        return direccion;
+    }
+
+    public void setDireccion(String direccion) {
+        this.direccion = direccion;
+    }
+}
@@ -2,7 +2,6 @@ package com.App.Lfarma.entity;
 
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
-import org.springframework.data.mongodb.core.mapping.DBRef;
 
 @Document(collection = "detalleVentas")
 public class DetalleFactura {
@@ -10,8 +9,8 @@ public class DetalleFactura {
     @Id
     private String id;
 
-    @DBRef
-    private Producto producto;
+    // Copia del producto al momento de la venta (antes era un @DBRef a PRODUCTOS)
+    private ProductoFacturado producto;
 
     private int cantidad;
     private double precioUnitario;
@@ -28,11 +27,11 @@ public class DetalleFactura {
         this.id = id;
     }
 
-    public Producto getProducto() {
+    public ProductoFacturado getProducto() {
         return producto;
     }
 
-    public void setProducto(Producto producto) {
+    public void setProducto(ProductoFacturado producto) {
         this.producto = producto;
     }
 
@@ -1,9 +1,12 @@
 package com.App.Lfarma.entity;
 
+import com.App.Lfarma.util.TerminosBusqueda;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
-import org.springframework.data.mongodb.core.mapping.DBRef;
 
 import java.util.Date;
 import java.util.List;
@@ -12,6 +15,8 @@ import java.util.List;
 @Document(collection = "FACTURA")
 public class Factura {
 
+    private static final Logger log = LoggerFactory.getLogger(Factura.class);
+
     @Id
     private String id;
 
@@ -22,14 +27,18 @@ public class Factura {
     private double totalVenta;
     private double gananciaNeta;
 
-    @DBRef
-    private Cliente cliente;
+    // Resumen del cliente embebido (antes era un @DBRef a clientes)
+    private ClienteResumen cliente;
 
     // Usuario/vendedor que creó la factura (username)
     private String vendedor;
 
     private List<DetalleFactura> detalles;
 
+    // Palabras clave normalizadas (id y datos del cliente) para la búsqueda indexada
+    @JsonIgnore
+    private List<String> terminosBusqueda;
+
     public String getId() {
         return id;
     }
@@ -78,11 +87,11 @@ public class Factura {
         this.gananciaNeta = gananciaNeta;
     }
 
-    public Cliente getCliente() {
+    public ClienteResumen getCliente() {
         return cliente;
     }
 
-    public void setCliente(Cliente cliente) {
+    public void setCliente(ClienteResumen cliente) {
         this.cliente = cliente;
     }
 
@@ -94,6 +103,23 @@ public class Factura {
         this.detalles = detalles;
     }
 
+    public List<String> getTerminosBusqueda() {
+        return terminosBusqueda;
+    }
+
+    public void setTerminosBusqueda(List<String> terminosBusqueda) {
+        this.terminosBusqueda = terminosBusqueda;
+    }
+
+    public void actualizarTerminosBusqueda() {
+        if (cliente == null) {
+            this.terminosBusqueda = TerminosBusqueda.generar(id);
+        } else {
+            this.terminosBusqueda = TerminosBusqueda.generar(id, cliente.getCodigo(),
+                    cliente.getIdentificacion(), cliente.getNombre());
+        }
+    }
+
     public String getVendedor() {
         return vendedor;
     }
@@ -122,7 +148,7 @@ public class Factura {
 
             // Verificar que el producto no sea null
             if (detalle.getProducto() == null) {
-                System.out.println("⚠️ Advertencia: Detalle sin producto asociado");
+                log.warn("⚠️ Advertencia: Detalle sin producto asociado");
                 continue;
             }
 
@@ -137,13 +163,11 @@ public class Factura {
             sumaVentas += totalProducto;
             gananciaTotal += gananciaProducto;
 
-            // Debug - imprimir los valores para verificación
-            System.out.println("Producto: " + detalle.getProducto().getNombre());
-            System.out.println("Cantidad: " + cantidad);
-            System.out.println("Precio Venta: " + precioVenta);
-            System.out.println("Costo Compra: " + costoCompra);
-            System.out.println("Ganancia por unidad: " + (precioVenta - costoCompra));
-            System.out.println("Ganancia total del producto: " + gananciaProducto);
+            // Por línea solo en TRACE: se ejecuta en cada checkout
+            if (log.isTraceEnabled()) {
+                log.trace("Producto: {}, Cantidad: {}, Precio Venta: {}, Costo Compra: {}, Ganancia: {}",
+                        detalle.getProducto().getNombre(), cantidad, precioVenta, costoCompra, gananciaProducto);
+            }
         }
 
         // SIN IVA: Total = Subtotal (IVA eliminado)
@@ -153,10 +177,6 @@ public class Factura {
         this.total = this.totalVenta; // Total sin IVA agregado
         this.gananciaNeta = Math.round(gananciaTotal * 100.0) / 100.0;
 
-        // Debug - imprimir totales finales
-        System.out.println("Subtotal (sin IVA): " + this.totalVenta);
-        System.out.println("IVA: " + this.iva);
-        System.out.println("Total Venta Final (sin IVA): " + this.total);
-        System.out.println("Ganancia Total Final: " + this.gananciaNeta);
+        log.debug("Total Venta (sin IVA): {}, Ganancia Total: {}", this.total, this.gananciaNeta);
     }
 }
\ No newline at end of file
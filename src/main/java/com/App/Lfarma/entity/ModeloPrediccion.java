@@ -0,0 +1,48 @@
+package com.App.Lfarma.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+// Clasificador entrenado y serializado junto con la estructura del dataset
+@Document(collection = "modelos_prediccion")
+public class ModeloPrediccion {
+
+    @Id
+    private String id;
+
+    private int version;
+    private String hashDatos;
+    private String algoritmo;
+    private int instancias;
+    private Date fechaEntrenamiento;
+    private long duracionEntrenamientoMs;
+    private byte[] modelo;
+
+    public ModeloPrediccion() {}
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public int getVersion() { return version; }
+    public void setVersion(int version) { this.version = version; }
+
+    public String getHashDatos() { return hashDatos; }
+    public void setHashDatos(String hashDatos) { this.hashDatos = hashDatos; }
+
+    public String getAlgoritmo() { return algoritmo; }
+    public void setAlgoritmo(String algoritmo) { this.algoritmo = algoritmo; }
+
+    public int getInstancias() { return instancias; }
+    public void setInstancias(int instancias) { this.instancias = instancias; }
+
+    public Date getFechaEntrenamiento() { return fechaEntrenamiento; }
+    public void setFechaEntrenamiento(Date fechaEntrenamiento) { this.fechaEntrenamiento = fechaEntrenamiento; }
+
+    public long getDuracionEntrenamientoMs() { return duracionEntrenamientoMs; }
+    public void setDuracionEntrenamientoMs(long duracionEntrenamientoMs) { this.duracionEntrenamientoMs = duracionEntrenamientoMs; }
+
+    public byte[] getModelo() { return modelo; }
+    public void setModelo(byte[] modelo) { this.modelo = modelo; }
+}
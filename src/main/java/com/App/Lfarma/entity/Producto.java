@@ -1,13 +1,17 @@
 package com.App.Lfarma.entity;
 
+import com.App.Lfarma.util.TerminosBusqueda;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import org.springframework.format.annotation.DateTimeFormat;
 
 import java.util.Date;
+import java.util.List;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 @Document(collection = "PRODUCTOS")
@@ -46,6 +50,26 @@ public class Producto {
 
     private String imagen;
 
+    // Última escritura (guardado o cambio de stock); base del Last-Modified del catálogo
+    private Date fechaActualizacion;
+
+    // Palabras clave normalizadas (código, nombre, principios activos y descripción) para la búsqueda indexada
+    @JsonIgnore
+    private List<String> terminosBusqueda;
+
+    // Veredicto del filtro de productos del dataset; no se persiste y se invalida al cambiar nombre o código
+    @Transient
+    private transient Boolean veredictoFiltro;
+
+    // No siguen la convención get/set para que Jackson y las vistas no los expongan
+    public Boolean veredictoFiltro() {
+        return veredictoFiltro;
+    }
+
+    public void guardarVeredictoFiltro(boolean esReal) {
+        this.veredictoFiltro = esReal;
+    }
+
     // Getters y Setters
     public String getId() {
         return id;
@@ -61,6 +85,7 @@ public class Producto {
 
     public void setCodigo(String codigo) {
         this.codigo = codigo;
+        this.veredictoFiltro = null;
     }
 
     public String getNombre() {
@@ -69,6 +94,7 @@ public class Producto {
 
     public void setNombre(String nombre) {
         this.nombre = nombre;
+        this.veredictoFiltro = null;
     }
 
     public double getPrecio() {
@@ -152,6 +178,14 @@ public class Producto {
         this.fechaVencimiento = fechaVencimiento;
     }
 
+    public Date getFechaActualizacion() {
+        return fechaActualizacion;
+    }
+
+    public void setFechaActualizacion(Date fechaActualizacion) {
+        this.fechaActualizacion = fechaActualizacion;
+    }
+
     public String getProveedorId() {
         return proveedorId;
     }
@@ -177,6 +211,18 @@ public class Producto {
         this.imagen = imagen;
     }
 
+    public List<String> getTerminosBusqueda() {
+        return terminosBusqueda;
+    }
+
+    public void setTerminosBusqueda(List<String> terminosBusqueda) {
+        this.terminosBusqueda = terminosBusqueda;
+    }
+
+    public void actualizarTerminosBusqueda() {
+        this.terminosBusqueda = TerminosBusqueda.generar(codigo, nombre, principiosActivos, descripcion);
+    }
+
     @Override
     public String toString() {
         return "Producto [id=" + id +
@@ -0,0 +1,92 @@
+package com.App.Lfarma.entity;
+
+import org.springframework.data.annotation.Id;
+
+// Copia inmutable del producto tal como estaba al momento de la venta.
+// Se embebe en cada DetalleFactura para no resolver DBRefs al leer facturas.
+public class ProductoFacturado {
+
+    @Id
+    private String id;
+
+    private String codigo;
+    private String nombre;
+    private String categoria;
+    private String imagen;
+    private double precio;
+    private double costoCompra;
+
+    public ProductoFacturado() {
+    }
+
+    public static ProductoFacturado de(Producto producto) {
+        if (producto == null) {
+            return null;
+        }
+        ProductoFacturado snapshot = new ProductoFacturado();
+        snapshot.id = producto.getId();
+        snapshot.codigo = producto.getCodigo();
+        snapshot.nombre = producto.getNombre();
+        snapshot.categoria = producto.getCategoria();
+        snapshot.imagen = producto.getImagen();
+        snapshot.precio = producto.getPrecio();
+        snapshot.costoCompra = producto.getCostoCompra();
+        return snapshot;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getCodigo() {
+        return codigo;
+    }
+
+    public void setCodigo(String codigo) {
+        this.codigo = codigo;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public void setNombre(String nombre) {
+        this.nombre = nombre;
+    }
+
+    public String getCategoria() {
+        return categoria;
+    }
+
+    public void setCategoria(String categoria) {
+        this.categoria = categoria;
+    }
+
+    public String getImagen() {
+        return imagen;
+    }
+
+    public void setImagen(String imagen) {
+        this.imagen = imagen;
+    }
+
+    public double getPrecio() {
+        return precio;
+    }
+
+    public void setPrecio(double precio) {
+        this.precio = precio;
+    }
+
+    public double getCostoCompra() {
+        return costoCompra;
+    }
+
+    public void setCostoCompra(double costoCompra) {
+        this.costoCompra = costoCompra;
+    }
+}
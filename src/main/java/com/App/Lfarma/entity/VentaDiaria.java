@@ -0,0 +1,48 @@
+package com.App.Lfarma.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.Date;
+
+// Acumulado de ventas por día; el ID es la fecha en formato yyyy-MM-dd
+@Document(collection = "ventas_diarias")
+public class VentaDiaria {
+
+    @Id
+    private String id;
+
+    private long facturas;
+    private double ingresos;
+    private double ganancia;
+    private double costo;
+    private long unidades;
+    private Date actualizado;
+
+    public VentaDiaria() {}
+
+    public VentaDiaria(String id) {
+        this.id = id;
+    }
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public long getFacturas() { return facturas; }
+    public void setFacturas(long facturas) { this.facturas = facturas; }
+
+    public double getIngresos() { return ingresos; }
+    public void setIngresos(double ingresos) { this.ingresos = ingresos; }
+
+    public double getGanancia() { return ganancia; }
+    public void setGanancia(double ganancia) { this.ganancia = ganancia; }
+
+    public double getCosto() { return costo; }
+    public void setCosto(double costo) { this.costo = costo; }
+
+    public long getUnidades() { return unidades; }
+    public void setUnidades(long unidades) { this.unidades = unidades; }
+
+    public Date getActualizado() { return actualizado; }
+    public void setActualizado(Date actualizado) { this.actualizado = actualizado; }
+}
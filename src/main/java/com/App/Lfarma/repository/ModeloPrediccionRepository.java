@@ -0,0 +1,17 @@
+package com.App.Lfarma.repository;
+
+import com.App.Lfarma.entity.ModeloPrediccion;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ModeloPrediccionRepository extends MongoRepository<ModeloPrediccion, String> {
+
+    Optional<ModeloPrediccion> findTopByOrderByVersionDesc();
+
+    Optional<ModeloPrediccion> findTopByHashDatosOrderByVersionDesc(String hashDatos);
+
+    long deleteByVersionLessThan(int version);
+}
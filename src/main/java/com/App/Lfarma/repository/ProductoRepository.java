@@ -55,6 +55,9 @@ public interface ProductoRepository extends MongoRepository<Producto, String> {
     // ✅ Búsqueda por stock bajo
     Page<Producto> findByCantidadLessThanEqual(int cantidad, Pageable pageable);
 
+    // ✅ Conteo de productos con stock bajo (alertas del dashboard)
+    long countByCantidadLessThanEqual(int cantidad);
+
     // ✅ Búsqueda por rango de precio
     @Query("{'precio': {$gte: ?0, $lte: ?1}}")
     Page<Producto> findByPrecioBetween(double precioMin, double precioMax, Pageable pageable);
@@ -0,0 +1,9 @@
+package com.App.Lfarma.repository;
+
+import com.App.Lfarma.entity.VentaDiaria;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface VentaDiariaRepository extends MongoRepository<VentaDiaria, String> {
+}
@@ -1,6 +1,8 @@
 // CustomAuthenticationSuccessHandler.java - VERSIÓN CORREGIDA
 package com.App.Lfarma.security;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
@@ -15,6 +17,8 @@ import java.util.Collection;
 @Component
 public class CustomAuthenticationSuccessHandler implements AuthenticationSuccessHandler {
 
+    private static final Logger log = LoggerFactory.getLogger(CustomAuthenticationSuccessHandler.class);
+
     @Override
     public void onAuthenticationSuccess(HttpServletRequest request, HttpServletResponse response,
                                         Authentication authentication) throws IOException, ServletException {
@@ -24,8 +28,6 @@ public class CustomAuthenticationSuccessHandler implements AuthenticationSuccess
 
         for (GrantedAuthority authority : authorities) {
             String role = authority.getAuthority();
-            System.out.println("🔍 Rol detectado: " + role); // Debug
-
             if (role.equals("ROLE_ADMIN")) {
                 redirectUrl = "/dashboard_admin";
                 break;
@@ -38,7 +40,7 @@ public class CustomAuthenticationSuccessHandler implements AuthenticationSuccess
             }
         }
 
-        System.out.println("🎯 Redirigiendo a: " + redirectUrl);
+        log.debug("🎯 {} autenticado, redirigiendo a {}", authentication.getName(), redirectUrl);
         response.sendRedirect(redirectUrl);
     }
 }
\ No newline at end of file
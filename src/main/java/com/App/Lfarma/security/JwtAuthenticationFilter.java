@@ -0,0 +1,62 @@
+package com.App.Lfarma.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Autentica las peticiones que traen "Authorization: Bearer &lt;token&gt;" verificando solo la
+ * firma del access token. No crea sesión: el contexto vive lo que dura la petición.
+ * Sin la cabecera no hace nada (la web sigue usando el login por formulario).
+ */
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER = "Bearer ";
+
+    private final JwtService jwtService;
+
+    public JwtAuthenticationFilter(JwtService jwtService) {
+        this.jwtService = jwtService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String cabecera = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (cabecera == null || !cabecera.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        JwtService.Acceso acceso;
+        try {
+            acceso = jwtService.validarAcceso(cabecera.substring(BEARER.length()));
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            response.getWriter().write("{\"success\":false,\"message\":\"" + e.getMessage() + "\"}");
+            return;
+        }
+
+        UsernamePasswordAuthenticationToken autenticacion = new UsernamePasswordAuthenticationToken(
+                acceso.username(), null, acceso.roles().stream().map(SimpleGrantedAuthority::new).toList());
+        autenticacion.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+        SecurityContext contexto = SecurityContextHolder.createEmptyContext();
+        contexto.setAuthentication(autenticacion);
+        SecurityContextHolder.setContext(contexto);
+        filterChain.doFilter(request, response);
+    }
+}
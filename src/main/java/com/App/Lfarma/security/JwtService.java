@@ -0,0 +1,143 @@
+package com.App.Lfarma.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.SecretKey;
+import java.time.Duration;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Emite y valida los tokens JWT de la API (app móvil). El access token lleva el usuario y sus
+ * roles, así cada petición se autentica solo con la firma (sin sesión ni BCrypt). El refresh
+ * token solo sirve en /api/auth/refresh, donde se vuelve a leer el usuario: un cambio de rol o
+ * una eliminación aplican a más tardar cuando vence el access token.
+ */
+@Service
+public class JwtService {
+
+    private static final Logger log = LoggerFactory.getLogger(JwtService.class);
+
+    private static final String EMISOR = "lfarma";
+    private static final String CLAIM_TIPO = "tipo";
+    private static final String CLAIM_ROLES = "roles";
+    private static final String TIPO_ACCESO = "acceso";
+    private static final String TIPO_REFRESCO = "refresco";
+
+    // Base64, al menos 256 bits; debe ser el mismo en todos los nodos
+    @Value("${lfarma.jwt.secreto:}")
+    private String secreto;
+
+    // Solo desarrollo: sin secreto, arranca con una clave aleatoria de este nodo en vez de fallar
+    @Value("${lfarma.jwt.permitir-clave-temporal:false}")
+    private boolean permitirClaveTemporal;
+
+    @Value("${lfarma.jwt.acceso-minutos:15}")
+    private long accesoMinutos;
+
+    @Value("${lfarma.jwt.refresco-dias:7}")
+    private long refrescoDias;
+
+    private SecretKey clave;
+
+    /** Datos de un access token válido */
+    public record Acceso(String username, List<String> roles) {}
+
+    @PostConstruct
+    public void iniciar() {
+        if (secreto == null || secreto.isBlank()) {
+            if (!permitirClaveTemporal) {
+                throw new IllegalStateException("lfarma.jwt.secreto (LFARMA_JWT_SECRETO) no está configurado; "
+                        + "defina una clave Base64 de al menos 256 bits, la misma en todos los nodos");
+            }
+            // Los tokens dejan de valer al reiniciar y no sirven entre nodos
+            clave = Jwts.SIG.HS256.key().build();
+            log.warn("⚠️ lfarma.jwt.secreto no configurado: se generó una clave temporal solo para este nodo");
+        } else {
+            clave = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secreto.trim()));
+        }
+        log.info("✅ JWT configurado: acceso {} min, refresco {} días", accesoMinutos, refrescoDias);
+    }
+
+    public Map<String, Object> emitirTokens(UserDetails usuario) {
+        Date ahora = new Date();
+        List<String> roles = usuario.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+
+        String acceso = Jwts.builder()
+                .issuer(EMISOR)
+                .subject(usuario.getUsername())
+                .claim(CLAIM_TIPO, TIPO_ACCESO)
+                .claim(CLAIM_ROLES, roles)
+                .issuedAt(ahora)
+                .expiration(new Date(ahora.getTime() + Duration.ofMinutes(accesoMinutos).toMillis()))
+                .signWith(clave)
+                .compact();
+
+        String refresco = Jwts.builder()
+                .issuer(EMISOR)
+                .subject(usuario.getUsername())
+                .id(UUID.randomUUID().toString())
+                .claim(CLAIM_TIPO, TIPO_REFRESCO)
+                .issuedAt(ahora)
+                .expiration(new Date(ahora.getTime() + Duration.ofDays(refrescoDias).toMillis()))
+                .signWith(clave)
+                .compact();
+
+        Map<String, Object> tokens = new LinkedHashMap<>();
+        tokens.put("tokenType", "Bearer");
+        tokens.put("accessToken", acceso);
+        tokens.put("expiresIn", Duration.ofMinutes(accesoMinutos).toSeconds());
+        tokens.put("refreshToken", refresco);
+        tokens.put("username", usuario.getUsername());
+        tokens.put("roles", roles);
+        return tokens;
+    }
+
+    // Lanza IllegalArgumentException si el token no es un access token válido
+    public Acceso validarAcceso(String token) {
+        Claims claims = leer(token, TIPO_ACCESO);
+        List<?> roles = claims.get(CLAIM_ROLES, List.class);
+        return new Acceso(claims.getSubject(),
+                roles == null ? List.of() : roles.stream().map(String::valueOf).toList());
+    }
+
+    // Retorna el usuario del refresh token; lanza IllegalArgumentException si no es válido
+    public String validarRefresco(String token) {
+        return leer(token, TIPO_REFRESCO).getSubject();
+    }
+
+    private Claims leer(String token, String tipo) {
+        if (token == null || token.isBlank()) {
+            throw new IllegalArgumentException("Token requerido");
+        }
+        try {
+            Claims claims = Jwts.parser()
+                    .verifyWith(clave)
+                    .requireIssuer(EMISOR)
+                    .build()
+                    .parseSignedClaims(token.trim())
+                    .getPayload();
+            if (!tipo.equals(claims.get(CLAIM_TIPO, String.class)) || claims.getSubject() == null) {
+                throw new IllegalArgumentException("Token inválido");
+            }
+            return claims;
+        } catch (JwtException e) {
+            log.debug("❌ Token rechazado: {}", e.getMessage());
+            throw new IllegalArgumentException("Token inválido o expirado");
+        }
+    }
+}
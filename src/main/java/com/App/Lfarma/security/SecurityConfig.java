@@ -3,14 +3,25 @@ package com.App.Lfarma.security;
 import com.App.Lfarma.service.UserDetailsServiceImpl;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.servlet.util.matcher.PathPatternRequestMatcher;
+import org.springframework.security.web.util.matcher.AndRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 
 @Configuration
 @EnableWebSecurity
@@ -18,17 +29,57 @@ public class SecurityConfig {
 
     private final AuthenticationSuccessHandler successHandler;
     private final UserDetailsServiceImpl userDetailsService;
+    private final JwtService jwtService;
+
+    // Peticiones de la app móvil: traen el access token en la cabecera
+    private static final RequestMatcher CON_TOKEN = request -> {
+        String cabecera = request.getHeader(HttpHeaders.AUTHORIZATION);
+        return cabecera != null && cabecera.regionMatches(true, 0, "Bearer ", 0, 7);
+    };
+
+    // Emisión de tokens y peticiones /api/** con Bearer. El resto de /api/** (p. ej. /api/usuario-actual
+    // desde checkout o vistaClientes) lo llama la web con su sesión y pasa por la cadena principal.
+    private static final RequestMatcher API_MOVIL = new OrRequestMatcher(
+            PathPatternRequestMatcher.withDefaults().matcher("/api/login"),
+            PathPatternRequestMatcher.withDefaults().matcher("/api/auth/**"),
+            new AndRequestMatcher(PathPatternRequestMatcher.withDefaults().matcher("/api/**"), CON_TOKEN));
 
     public SecurityConfig(AuthenticationSuccessHandler successHandler,
-                          UserDetailsServiceImpl userDetailsService) {
+                          UserDetailsServiceImpl userDetailsService,
+                          JwtService jwtService) {
         this.successHandler = successHandler;
         this.userDetailsService = userDetailsService;
+        this.jwtService = jwtService;
+    }
+
+    // App móvil: sin sesión, autenticada por JWT
+    @Bean
+    @Order(1)
+    SecurityFilterChain apiSecurityFilterChain(HttpSecurity http) throws Exception {
+        http
+                .securityMatcher(API_MOVIL)
+                .csrf(csrf -> csrf.disable())
+                .cors(Customizer.withDefaults())
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .authorizeHttpRequests(auth -> auth
+                        .requestMatchers("/api/login", "/api/auth/token", "/api/auth/refresh").permitAll()
+                        .anyRequest().authenticated()
+                )
+                .exceptionHandling(ex -> ex.authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)))
+                .addFilterBefore(new JwtAuthenticationFilter(jwtService), UsernamePasswordAuthenticationFilter.class);
+
+        return http.build();
     }
 
     @Bean
+    @Order(2)
     SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
                 .csrf(csrf -> csrf.disable())
+                // Con Bearer, los endpoints .../api de la web también aceptan el token (sin crear sesión)
+                .addFilterBefore(new JwtAuthenticationFilter(jwtService), UsernamePasswordAuthenticationFilter.class)
+                .exceptionHandling(ex -> ex.defaultAuthenticationEntryPointFor(
+                        new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED), CON_TOKEN))
                 .authorizeHttpRequests(auth -> auth
                         // Recursos estáticos
                         .requestMatchers("/styles.css", "/css/", "/js/", "/images/",
@@ -37,10 +88,15 @@ public class SecurityConfig {
                         // Páginas públicas
                         .requestMatchers("/login", "/register", "/register-admin",
                                 "/register-empleado", "/auth/register").permitAll()
+                        // Scrape de Prometheus y health check del balanceador (sin datos de negocio)
+                        .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
 
                         // ==================== RUTAS EXCLUSIVAS PARA ADMIN ====================
                         .requestMatchers(
                                 "/dashboard_admin",
+                                "/dashboard_admin/**",
+                                "/admin/**",
                                 "/predicciones/",
                                 "/predicciones/dashboard/",
                                 "/productos/registrar-productos",
@@ -48,6 +104,7 @@ public class SecurityConfig {
                                 "/productos/actualizar",
                                 "/productos/eliminar",
                                 "/productos/{id}/imagen",
+                                "/productos/importar",
                                 "/clientes/eliminar",
                                 "/clientes/actualizar",
                                 "/clientes/editar/",
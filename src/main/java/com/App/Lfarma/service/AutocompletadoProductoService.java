@@ -0,0 +1,684 @@
+package com.App.Lfarma.service;
+
+import com.App.Lfarma.DTO.SugerenciaProductoDTO;
+import com.App.Lfarma.entity.Producto;
+import com.App.Lfarma.util.TerminosBusqueda;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Índice en memoria para el autocompletado de productos por nombre, código y principios
+ * activos. Cada producto tiene un número de documento asignado en orden de relevancia
+ * (nombre más corto y luego alfabético); los trigramas y las palabras apuntan a arreglos
+ * ordenados de documentos que se reemplazan completos al cambiar, así que las búsquedas
+ * no toman locks. Las escrituras (guardar, eliminar, reconstruir) se serializan.
+ */
+@Service
+public class AutocompletadoProductoService {
+
+    private static final Logger log = LoggerFactory.getLogger(AutocompletadoProductoService.class);
+
+    public static final int LIMITE_MAXIMO = 50;
+
+    // Niveles de coincidencia, de mejor a peor
+    private static final int CODIGO_EXACTO = 0;
+    private static final int PREFIJO_CODIGO = 1;
+    private static final int PREFIJO_NOMBRE = 2;
+    private static final int PALABRA_NOMBRE = 3;
+    private static final int PALABRA_PRINCIPIO = 4;
+    private static final int DENTRO_NOMBRE = 5;
+    private static final int OTRO_CAMPO = 6;
+
+    // Cada nivel tiene dos rangos: la frase completa y solo su primera palabra
+    private static final int RANGOS = 2 * (OTRO_CAMPO + 1);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final Object escritura = new Object();
+
+    private final AtomicBoolean reconstruyendo = new AtomicBoolean(false);
+
+    // Alguien pidió reconstruir mientras otra reconstrucción leía la base: se vuelve a leer al terminar
+    private final AtomicBoolean repetir = new AtomicBoolean(false);
+
+    private volatile Indice indice = Indice.construir(List.of());
+
+    // Cambios recibidos mientras se reconstruye (null = eliminado); se aplican al índice nuevo
+    // antes de publicarlo para no perderlos. Protegido por "escritura".
+    private Map<String, Entrada> cambiosPendientes;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarAlArrancar() {
+        reconstruirDesdeBaseDeDatos();
+    }
+
+    // Red de seguridad para cambios hechos fuera de este proceso (otra instancia, scripts)
+    // y para devolver a su lugar en el orden a los productos agregados desde la última carga
+    @Scheduled(initialDelayString = "${lfarma.productos.autocompletado.reconstruir-ms:600000}",
+            fixedDelayString = "${lfarma.productos.autocompletado.reconstruir-ms:600000}")
+    public void reconstruirDesdeBaseDeDatos() {
+        do {
+            long inicio = System.currentTimeMillis();
+            Query query = new Query();
+            query.fields().include("codigo", "nombre", "principiosActivos", "categoria", "precio");
+            try (Stream<Producto> productos = mongoTemplate.stream(query, Producto.class)) {
+                if (!reconstruir(productos::iterator)) {
+                    return;
+                }
+                log.info("🔤 Índice de autocompletado cargado: {} productos en {} ms",
+                        totalIndexados(), System.currentTimeMillis() - inicio);
+            } catch (Exception e) {
+                log.error("❌ Error reconstruyendo el índice de autocompletado: {}", e.getMessage(), e);
+                return;
+            }
+        } while (repetir.getAndSet(false));
+    }
+
+    // Construye un índice nuevo y lo publica de una vez; false si ya había otra reconstrucción
+    public boolean reconstruir(Iterable<Producto> productos) {
+        if (!reconstruyendo.compareAndSet(false, true)) {
+            repetir.set(true);
+            log.info("⏳ Reconstrucción del índice de autocompletado ya en curso, se repetirá al terminar");
+            return false;
+        }
+        try {
+            synchronized (escritura) {
+                cambiosPendientes = new LinkedHashMap<>();
+            }
+            Indice nuevo = Indice.construir(productos);
+            synchronized (escritura) {
+                cambiosPendientes.forEach((id, entrada) -> {
+                    if (entrada == null) {
+                        nuevo.quitar(id);
+                    } else {
+                        nuevo.agregar(entrada);
+                    }
+                });
+                indice = nuevo;
+            }
+            return true;
+        } finally {
+            synchronized (escritura) {
+                cambiosPendientes = null;
+            }
+            reconstruyendo.set(false);
+        }
+    }
+
+    public void indexar(Producto producto) {
+        Entrada entrada = Entrada.de(producto);
+        if (entrada == null) {
+            return;
+        }
+        synchronized (escritura) {
+            indice.agregar(entrada);
+            if (cambiosPendientes != null) {
+                cambiosPendientes.put(entrada.id, entrada);
+            }
+        }
+    }
+
+    public void eliminar(String id) {
+        if (id == null) {
+            return;
+        }
+        synchronized (escritura) {
+            indice.quitar(id);
+            if (cambiosPendientes != null) {
+                cambiosPendientes.put(id, null);
+            }
+        }
+    }
+
+    public int totalIndexados() {
+        return indice.documentos.size();
+    }
+
+    public List<SugerenciaProductoDTO> buscar(String termino, int limite) {
+        List<Entrada> entradas = buscarEntradas(termino, limite);
+        List<SugerenciaProductoDTO> sugerencias = new ArrayList<>(entradas.size());
+        for (Entrada e : entradas) {
+            sugerencias.add(new SugerenciaProductoDTO(e.id, e.codigo, e.nombre, e.principiosActivos, e.categoria, e.precio));
+        }
+        return sugerencias;
+    }
+
+    public List<String> buscarIds(String termino, int limite) {
+        List<Entrada> entradas = buscarEntradas(termino, limite);
+        List<String> ids = new ArrayList<>(entradas.size());
+        for (Entrada e : entradas) {
+            ids.add(e.id);
+        }
+        return ids;
+    }
+
+    /**
+     * Recorre los candidatos en orden de documento y guarda los primeros de cada rango.
+     * Como ese orden ya es el desempate, en cuanto hay "tope" resultados en el mejor rango
+     * que la consulta puede alcanzar ningún candidato posterior puede desplazarlos.
+     */
+    private List<Entrada> buscarEntradas(String termino, int limite) {
+        String consulta = TerminosBusqueda.normalizar(termino);
+        int tope = Math.min(limite, LIMITE_MAXIMO);
+        if (consulta.isEmpty() || tope <= 0) {
+            return List.of();
+        }
+
+        String[] terminos = consulta.split(" ");
+        Indice actual = indice;
+        PrimitiveIterator.OfInt candidatos = actual.candidatos(terminos);
+
+        int mejorRango = terminos.length == 1
+                ? 2 * actual.mejorNivelPosible(consulta)
+                : Math.min(2 * actual.mejorNivelPosibleFrase(consulta), 2 * actual.mejorNivelPosible(terminos[0]) + 1);
+
+        // Las entradas se leen después de las listas para ver los documentos recién agregados
+        Entrada[] entradas = actual.entradas;
+        Entrada[][] porRango = new Entrada[RANGOS][];
+        int[] cantidadPorRango = new int[RANGOS];
+
+        while (candidatos.hasNext()) {
+            int doc = candidatos.nextInt();
+            Entrada entrada = doc < entradas.length ? entradas[doc] : null;
+            if (entrada == null || !entrada.contieneTodos(terminos)) {
+                continue;
+            }
+            int rango = rango(entrada, consulta, terminos);
+            if (cantidadPorRango[rango] == tope) {
+                continue;
+            }
+            if (porRango[rango] == null) {
+                porRango[rango] = new Entrada[tope];
+            }
+            porRango[rango][cantidadPorRango[rango]++] = entrada;
+            if (rango <= mejorRango && cantidadPorRango[rango] == tope) {
+                break;
+            }
+        }
+
+        List<Entrada> resultados = new ArrayList<>(tope);
+        for (int rango = 0; rango < RANGOS && resultados.size() < tope; rango++) {
+            for (int i = 0; i < cantidadPorRango[rango] && resultados.size() < tope; i++) {
+                resultados.add(porRango[rango][i]);
+            }
+        }
+        return resultados;
+    }
+
+    // Con varias palabras, la frase completa solo cuenta como prefijo de código o de nombre;
+    // si no, manda la primera palabra
+    private static int rango(Entrada e, String consulta, String[] terminos) {
+        if (terminos.length == 1) {
+            return 2 * nivel(e, consulta);
+        }
+        int primera = 2 * nivel(e, terminos[0]) + 1;
+        int frase = nivel(e, consulta);
+        return frase <= PREFIJO_NOMBRE ? Math.min(2 * frase, primera) : primera;
+    }
+
+    private static int nivel(Entrada e, String termino) {
+        if (e.codigoNormalizado.equals(termino)) return CODIGO_EXACTO;
+        if (e.codigoNormalizado.startsWith(termino)) return PREFIJO_CODIGO;
+        if (e.nombreNormalizado.startsWith(termino)) return PREFIJO_NOMBRE;
+        if (empiezaPalabra(e.nombreNormalizado, termino)) return PALABRA_NOMBRE;
+        if (empiezaPalabra(e.principiosNormalizados, termino)) return PALABRA_PRINCIPIO;
+        if (e.nombreNormalizado.contains(termino)) return DENTRO_NOMBRE;
+        return OTRO_CAMPO;
+    }
+
+    private static boolean empiezaPalabra(String texto, String termino) {
+        int i = texto.indexOf(termino);
+        while (i >= 0) {
+            if (i == 0 || !Character.isLetterOrDigit(texto.charAt(i - 1))) {
+                return true;
+            }
+            i = texto.indexOf(termino, i + 1);
+        }
+        return false;
+    }
+
+    private static boolean soloLetrasYDigitos(String texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            if (!Character.isLetterOrDigit(texto.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Datos de un producto que muestra el autocompletado, ya normalizados para comparar. */
+    static final class Entrada {
+        final String id;
+        final String codigo;
+        final String nombre;
+        final String principiosActivos;
+        final String categoria;
+        final double precio;
+        final String codigoNormalizado;
+        final String nombreNormalizado;
+        final String principiosNormalizados;
+
+        private Entrada(Producto p) {
+            this.id = p.getId();
+            this.codigo = p.getCodigo();
+            this.nombre = p.getNombre();
+            this.principiosActivos = p.getPrincipiosActivos();
+            this.categoria = p.getCategoria();
+            this.precio = p.getPrecio();
+            this.codigoNormalizado = TerminosBusqueda.normalizar(p.getCodigo());
+            this.nombreNormalizado = TerminosBusqueda.normalizar(p.getNombre());
+            this.principiosNormalizados = TerminosBusqueda.normalizar(p.getPrincipiosActivos());
+        }
+
+        static Entrada de(Producto producto) {
+            if (producto == null || producto.getId() == null || producto.getNombre() == null) {
+                return null;
+            }
+            return new Entrada(producto);
+        }
+
+        boolean contieneTodos(String[] terminos) {
+            for (String termino : terminos) {
+                if (!nombreNormalizado.contains(termino)
+                        && !codigoNormalizado.contains(termino)
+                        && !principiosNormalizados.contains(termino)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Los términos de búsqueda no llevan espacios, así que esos trigramas no se guardan
+        Set<String> trigramas() {
+            Set<String> trigramas = new HashSet<>();
+            for (String texto : new String[]{nombreNormalizado, codigoNormalizado, principiosNormalizados}) {
+                for (int i = 0; i + 3 <= texto.length(); i++) {
+                    if (texto.charAt(i) != ' ' && texto.charAt(i + 1) != ' ' && texto.charAt(i + 2) != ' ') {
+                        trigramas.add(texto.substring(i, i + 3));
+                    }
+                }
+            }
+            return trigramas;
+        }
+
+        // Mismo criterio de separación que empiezaPalabra
+        Set<String> palabras() {
+            Set<String> palabras = new HashSet<>();
+            for (String texto : new String[]{nombreNormalizado, codigoNormalizado, principiosNormalizados}) {
+                int inicio = -1;
+                for (int i = 0; i <= texto.length(); i++) {
+                    boolean letra = i < texto.length() && Character.isLetterOrDigit(texto.charAt(i));
+                    if (letra && inicio < 0) {
+                        inicio = i;
+                    } else if (!letra && inicio >= 0) {
+                        palabras.add(texto.substring(inicio, i));
+                        inicio = -1;
+                    }
+                }
+            }
+            return palabras;
+        }
+    }
+
+    /**
+     * Estado del índice. Los escritores trabajan bajo el lock del servicio; los lectores solo
+     * leen los mapas concurrentes y el arreglo de entradas, que nunca se modifican en sitio
+     * salvo la posición del documento afectado.
+     */
+    private static final class Indice {
+        // Orden estático: desempate del ranking y orden de los números de documento
+        private static final Comparator<Entrada> RELEVANCIA = Comparator
+                .comparingInt((Entrada e) -> e.nombre.length())
+                .thenComparing(e -> e.nombreNormalizado);
+
+        // Se modifican solo con el lock de escritura
+        private final Map<String, Integer> documentos;
+        private int siguienteDocumento;
+
+        private volatile Entrada[] entradas;
+        private final ConcurrentHashMap<String, int[]> trigramas;
+        private final ConcurrentSkipListMap<String, int[]> palabras;
+        // Solo para saber qué nivel de coincidencia puede alcanzar una consulta
+        private final ConcurrentSkipListMap<String, int[]> codigos;
+        private final ConcurrentSkipListMap<String, int[]> nombres;
+
+        private Indice(Map<String, Integer> documentos, Entrada[] entradas, int siguienteDocumento,
+                       ConcurrentHashMap<String, int[]> trigramas, ConcurrentSkipListMap<String, int[]> palabras,
+                       ConcurrentSkipListMap<String, int[]> codigos, ConcurrentSkipListMap<String, int[]> nombres) {
+            this.documentos = documentos;
+            this.entradas = entradas;
+            this.siguienteDocumento = siguienteDocumento;
+            this.trigramas = trigramas;
+            this.palabras = palabras;
+            this.codigos = codigos;
+            this.nombres = nombres;
+        }
+
+        // Carga completa: las listas se llenan en orden de documento, sin copias intermedias
+        static Indice construir(Iterable<Producto> productos) {
+            Map<String, Entrada> porId = new HashMap<>();
+            for (Producto producto : productos) {
+                Entrada entrada = Entrada.de(producto);
+                if (entrada != null) {
+                    porId.put(entrada.id, entrada);
+                }
+            }
+            Entrada[] ordenadas = porId.values().toArray(new Entrada[0]);
+            Arrays.sort(ordenadas, RELEVANCIA);
+
+            Map<String, Integer> documentos = new ConcurrentHashMap<>(ordenadas.length * 2);
+            Map<String, ListaDocumentos> porTrigrama = new HashMap<>();
+            Map<String, ListaDocumentos> porPalabra = new HashMap<>();
+            Map<String, ListaDocumentos> porCodigo = new HashMap<>();
+            Map<String, ListaDocumentos> porNombre = new HashMap<>();
+            for (int doc = 0; doc < ordenadas.length; doc++) {
+                Entrada entrada = ordenadas[doc];
+                documentos.put(entrada.id, doc);
+                for (String trigrama : entrada.trigramas()) {
+                    porTrigrama.computeIfAbsent(trigrama, k -> new ListaDocumentos()).agregar(doc);
+                }
+                for (String palabra : entrada.palabras()) {
+                    porPalabra.computeIfAbsent(palabra, k -> new ListaDocumentos()).agregar(doc);
+                }
+                porCodigo.computeIfAbsent(entrada.codigoNormalizado, k -> new ListaDocumentos()).agregar(doc);
+                porNombre.computeIfAbsent(entrada.nombreNormalizado, k -> new ListaDocumentos()).agregar(doc);
+            }
+
+            ConcurrentHashMap<String, int[]> trigramas = new ConcurrentHashMap<>(porTrigrama.size() * 2);
+            porTrigrama.forEach((clave, lista) -> trigramas.put(clave, lista.comoArreglo()));
+            Entrada[] entradas = Arrays.copyOf(ordenadas, Math.max(16, ordenadas.length));
+            return new Indice(documentos, entradas, ordenadas.length, trigramas,
+                    ListaDocumentos.ordenar(porPalabra), ListaDocumentos.ordenar(porCodigo),
+                    ListaDocumentos.ordenar(porNombre));
+        }
+
+        // Los productos nuevos van al final hasta la próxima reconstrucción
+        void agregar(Entrada entrada) {
+            Integer doc = documentos.get(entrada.id);
+            Entrada anterior = null;
+            if (doc == null) {
+                doc = siguienteDocumento++;
+                if (doc >= entradas.length) {
+                    entradas = Arrays.copyOf(entradas, entradas.length * 2);
+                }
+            } else {
+                anterior = entradas[doc];
+            }
+            entradas[doc] = entrada;
+
+            actualizarListas(trigramas, anterior == null ? Set.of() : anterior.trigramas(), entrada.trigramas(), doc);
+            actualizarListas(palabras, anterior == null ? Set.of() : anterior.palabras(), entrada.palabras(), doc);
+            actualizarListas(codigos, anterior == null ? Set.of() : Set.of(anterior.codigoNormalizado),
+                    Set.of(entrada.codigoNormalizado), doc);
+            actualizarListas(nombres, anterior == null ? Set.of() : Set.of(anterior.nombreNormalizado),
+                    Set.of(entrada.nombreNormalizado), doc);
+            documentos.put(entrada.id, doc);
+        }
+
+        void quitar(String id) {
+            Integer doc = documentos.remove(id);
+            if (doc == null) {
+                return;
+            }
+            Entrada anterior = entradas[doc];
+            entradas[doc] = null;
+            if (anterior != null) {
+                actualizarListas(trigramas, anterior.trigramas(), Set.of(), doc);
+                actualizarListas(palabras, anterior.palabras(), Set.of(), doc);
+                actualizarListas(codigos, Set.of(anterior.codigoNormalizado), Set.of(), doc);
+                actualizarListas(nombres, Set.of(anterior.nombreNormalizado), Set.of(), doc);
+            }
+        }
+
+        // Solo se tocan las claves que cambian; cada lista se reemplaza por una copia nueva
+        private static void actualizarListas(Map<String, int[]> listas, Set<String> anteriores,
+                                             Set<String> nuevas, int doc) {
+            for (String clave : anteriores) {
+                if (!nuevas.contains(clave)) {
+                    listas.computeIfPresent(clave, (k, docs) -> {
+                        int[] resto = sinDocumento(docs, doc);
+                        return resto.length == 0 ? null : resto;
+                    });
+                }
+            }
+            for (String clave : nuevas) {
+                if (!anteriores.contains(clave)) {
+                    listas.merge(clave, new int[]{doc}, (docs, nuevo) -> conDocumento(docs, doc));
+                }
+            }
+        }
+
+        /**
+         * Candidatos en orden de documento. Los términos de 3+ letras aportan sus trigramas y
+         * se intersectan; si todos son más cortos se unen las palabras que empiezan por el
+         * término más largo. Los términos cortos se comprueban después sobre cada candidato.
+         */
+        PrimitiveIterator.OfInt candidatos(String[] terminos) {
+            List<int[]> listas = new ArrayList<>();
+            String masLargo = terminos[0];
+            for (String termino : terminos) {
+                if (termino.length() > masLargo.length()) {
+                    masLargo = termino;
+                }
+                for (int i = 0; i + 3 <= termino.length(); i++) {
+                    int[] docs = trigramas.get(termino.substring(i, i + 3));
+                    if (docs == null) {
+                        return IntStream.empty().iterator();
+                    }
+                    listas.add(docs);
+                }
+            }
+            if (listas.isEmpty()) {
+                return new Union(palabras.subMap(masLargo, true, masLargo + Character.MAX_VALUE, false).values());
+            }
+            listas.sort(Comparator.comparingInt(docs -> docs.length));
+            return new Interseccion(listas.toArray(new int[0][]));
+        }
+
+        // Cota del mejor nivel que algún producto puede dar para el término (nunca peor que el real)
+        int mejorNivelPosible(String termino) {
+            if (codigos.containsKey(termino)) return CODIGO_EXACTO;
+            if (hayClaveConPrefijo(codigos, termino)) return PREFIJO_CODIGO;
+            if (hayClaveConPrefijo(nombres, termino)) return PREFIJO_NOMBRE;
+            if (!soloLetrasYDigitos(termino) || hayClaveConPrefijo(palabras, termino)) return PALABRA_NOMBRE;
+            return DENTRO_NOMBRE;
+        }
+
+        int mejorNivelPosibleFrase(String frase) {
+            int nivel = mejorNivelPosible(frase);
+            return nivel <= PREFIJO_NOMBRE ? nivel : OTRO_CAMPO;
+        }
+
+        private static boolean hayClaveConPrefijo(ConcurrentSkipListMap<String, int[]> mapa, String prefijo) {
+            String clave = mapa.ceilingKey(prefijo);
+            return clave != null && clave.startsWith(prefijo);
+        }
+
+        private static int[] conDocumento(int[] docs, int doc) {
+            int posicion = Arrays.binarySearch(docs, doc);
+            if (posicion >= 0) {
+                return docs;
+            }
+            int insercion = -posicion - 1;
+            int[] copia = new int[docs.length + 1];
+            System.arraycopy(docs, 0, copia, 0, insercion);
+            copia[insercion] = doc;
+            System.arraycopy(docs, insercion, copia, insercion + 1, docs.length - insercion);
+            return copia;
+        }
+
+        private static int[] sinDocumento(int[] docs, int doc) {
+            int posicion = Arrays.binarySearch(docs, doc);
+            if (posicion < 0) {
+                return docs;
+            }
+            int[] copia = new int[docs.length - 1];
+            System.arraycopy(docs, 0, copia, 0, posicion);
+            System.arraycopy(docs, posicion + 1, copia, posicion, docs.length - posicion - 1);
+            return copia;
+        }
+    }
+
+    /**
+     * Intersección perezosa por saltos (leapfrog): cada lista avanza con búsqueda galopante
+     * hasta el mayor documento visto, así que los tramos que no coinciden se saltan enteros.
+     */
+    private static final class Interseccion implements PrimitiveIterator.OfInt {
+        private final int[][] listas;
+        private final int[] cursores;
+        private int siguiente;
+
+        Interseccion(int[][] listas) {
+            this.listas = listas;
+            this.cursores = new int[listas.length];
+            avanzar(0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return siguiente >= 0;
+        }
+
+        @Override
+        public int nextInt() {
+            if (siguiente < 0) {
+                throw new NoSuchElementException();
+            }
+            int actual = siguiente;
+            avanzar(actual + 1);
+            return actual;
+        }
+
+        private void avanzar(int desde) {
+            int objetivo = desde;
+            int iguales = 0;
+            for (int i = 0; iguales < listas.length; i = (i + 1) % listas.length) {
+                int[] docs = listas[i];
+                int posicion = buscarDesde(docs, cursores[i], objetivo);
+                if (posicion >= docs.length) {
+                    siguiente = -1;
+                    return;
+                }
+                cursores[i] = posicion;
+                if (docs[posicion] == objetivo) {
+                    iguales++;
+                } else {
+                    objetivo = docs[posicion];
+                    iguales = 1;
+                }
+            }
+            siguiente = objetivo;
+        }
+
+        // Primera posición >= desde con documento >= objetivo
+        private static int buscarDesde(int[] docs, int desde, int objetivo) {
+            int hasta = desde;
+            int paso = 1;
+            while (hasta < docs.length && docs[hasta] < objetivo) {
+                desde = hasta + 1;
+                hasta += paso;
+                paso <<= 1;
+            }
+            int posicion = Arrays.binarySearch(docs, desde, Math.min(hasta, docs.length), objetivo);
+            return posicion >= 0 ? posicion : -posicion - 1;
+        }
+    }
+
+    /** Unión perezosa de varias listas (mezcla con un heap), sin repetir documentos. */
+    private static final class Union implements PrimitiveIterator.OfInt {
+        // Cada cabeza es {documento actual, índice de la lista, posición}
+        private final PriorityQueue<int[]> cabezas = new PriorityQueue<>(Comparator.comparingInt((int[] c) -> c[0]));
+        private final List<int[]> listas = new ArrayList<>();
+        private int ultimo = -1;
+        private int siguiente;
+
+        Union(Iterable<int[]> fuentes) {
+            for (int[] docs : fuentes) {
+                cabezas.add(new int[]{docs[0], listas.size(), 0});
+                listas.add(docs);
+            }
+            avanzar();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return siguiente >= 0;
+        }
+
+        @Override
+        public int nextInt() {
+            if (siguiente < 0) {
+                throw new NoSuchElementException();
+            }
+            int actual = siguiente;
+            avanzar();
+            return actual;
+        }
+
+        private void avanzar() {
+            while (!cabezas.isEmpty()) {
+                int[] cabeza = cabezas.poll();
+                int doc = cabeza[0];
+                int[] docs = listas.get(cabeza[1]);
+                if (++cabeza[2] < docs.length) {
+                    cabeza[0] = docs[cabeza[2]];
+                    cabezas.add(cabeza);
+                }
+                if (doc != ultimo) {
+                    ultimo = doc;
+                    siguiente = doc;
+                    return;
+                }
+            }
+            siguiente = -1;
+        }
+    }
+
+    private static final class ListaDocumentos {
+        private int[] docs = new int[4];
+        private int tamano;
+
+        void agregar(int doc) {
+            if (tamano == docs.length) {
+                docs = Arrays.copyOf(docs, tamano * 2);
+            }
+            docs[tamano++] = doc;
+        }
+
+        int[] comoArreglo() {
+            return Arrays.copyOf(docs, tamano);
+        }
+
+        static ConcurrentSkipListMap<String, int[]> ordenar(Map<String, ListaDocumentos> listas) {
+            ConcurrentSkipListMap<String, int[]> mapa = new ConcurrentSkipListMap<>();
+            listas.forEach((clave, lista) -> mapa.put(clave, lista.comoArreglo()));
+            return mapa;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.App.Lfarma.service;
+
+import com.App.Lfarma.entity.Producto;
+import com.App.Lfarma.util.TerminosBusqueda;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * Búsqueda de productos sobre índices de Mongo en lugar de $regex sin anclar.
+ * Cada palabra del término debe ser prefijo de algún terminosBusqueda (regex anclado,
+ * recorre solo un rango del índice); eso define siempre el conjunto de resultados. El índice
+ * de texto solo ordena: va en un $or con el primer prefijo, así un producto que coincide solo
+ * por prefijo ("sal" → salbutamol) no se pierde porque otro contenga la palabra completa.
+ * Mientras se escribe (ninguna coincidencia de texto) se ordena por nombre.
+ * Las facetas cuentan los resultados por categoría sin aplicar el filtro de categoría.
+ */
+@Service
+public class BusquedaProductoService {
+
+    private static final Logger log = LoggerFactory.getLogger(BusquedaProductoService.class);
+
+    private static final int TAMANO_LOTE = 500;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    // indexada | regex (búsqueda anterior por $regex sobre el nombre)
+    @Value("${lfarma.productos.busqueda.modo:indexada}")
+    private String modo;
+
+    private final AtomicBoolean enEjecucion = new AtomicBoolean(false);
+
+    public record Resultado(Page<Producto> pagina, Map<String, Long> facetas, boolean porRelevancia) {}
+
+    public boolean usaRegex() {
+        return "regex".equalsIgnoreCase(modo);
+    }
+
+    // Sin orden en el Pageable se ordena por relevancia (o por nombre si no hubo coincidencias de texto)
+    public Resultado buscar(String searchTerm, String categoria, Pageable pageable) {
+        long inicio = System.nanoTime();
+        List<String> palabras = palabras(searchTerm);
+        String categoriaFiltro = categoria != null && !categoria.trim().isEmpty() ? categoria.trim() : null;
+
+        boolean conTexto = !palabras.isEmpty() && mongoTemplate.exists(
+                TextQuery.queryText(TextCriteria.forDefaultLanguage().matching(String.join(" ", palabras))), Producto.class);
+
+        BasicQuery paginaQuery = consulta(palabras, categoriaFiltro, conTexto);
+        paginaQuery.with(pageable);
+        boolean porRelevancia = conTexto && pageable.getSort().isUnsorted();
+        if (porRelevancia) {
+            // Los que coinciden solo por prefijo no tienen puntaje y quedan después
+            paginaQuery.setSortObject(new Document("puntaje", new Document("$meta", "textScore"))
+                    .append("nombre", 1));
+        } else if (pageable.getSort().isUnsorted()) {
+            paginaQuery.with(Sort.by("nombre"));
+        }
+
+        // El $or con $text no cambia el conjunto: el total y las facetas solo necesitan los prefijos
+        List<Producto> contenido = mongoTemplate.find(paginaQuery, Producto.class);
+        Page<Producto> pagina = PageableExecutionUtils.getPage(contenido, pageable,
+                () -> mongoTemplate.count(consulta(palabras, categoriaFiltro, false), Producto.class));
+        Map<String, Long> facetas = facetasPorCategoria(consulta(palabras, null, false));
+
+        log.info("🔍 Búsqueda indexada '{}' (categoría: {}): {} resultados, {} en {} ms",
+                searchTerm, categoriaFiltro, pagina.getTotalElements(),
+                porRelevancia ? "por relevancia" : "por prefijo", (System.nanoTime() - inicio) / 1_000_000);
+        return new Resultado(pagina, facetas, porRelevancia);
+    }
+
+    // Cada palabra debe ser prefijo de algún término indexado; el texto solo aporta el puntaje.
+    // $text no puede ir en un $and junto al filtro sin recortar los resultados, por eso va en un
+    // $or con el primer prefijo (todas las ramas usan índice): prefijos AND (texto OR prefijo) = prefijos.
+    private BasicQuery consulta(List<String> palabras, String categoria, boolean conTexto) {
+        Document filtro = new Document();
+        if (!palabras.isEmpty()) {
+            List<Document> prefijos = new ArrayList<>();
+            for (String palabra : palabras) {
+                prefijos.add(new Document("terminosBusqueda", Pattern.compile("^" + escaparRegex(palabra))));
+            }
+            filtro.append("$and", prefijos);
+            if (conTexto) {
+                filtro.append("$or", List.of(
+                        new Document("$text", new Document("$search", String.join(" ", palabras))),
+                        prefijos.get(0)));
+            }
+        }
+        if (categoria != null) {
+            filtro.append("categoria", categoria);
+        }
+        return new BasicQuery(filtro);
+    }
+
+    private Map<String, Long> facetasPorCategoria(Query filtro) {
+        List<Document> pipeline = List.of(
+                new Document("$match", filtro.getQueryObject()),
+                new Document("$group", new Document("_id", "$categoria").append("cantidad", new Document("$sum", 1))),
+                new Document("$sort", new Document("cantidad", -1).append("_id", 1)));
+
+        Map<String, Long> facetas = new LinkedHashMap<>();
+        for (Document faceta : productos().aggregate(pipeline)) {
+            String categoria = faceta.get("_id") != null ? faceta.get("_id").toString() : "Sin categoría";
+            facetas.put(categoria, ((Number) faceta.get("cantidad")).longValue());
+        }
+        return facetas;
+    }
+
+    private static List<String> palabras(String searchTerm) {
+        List<String> palabras = new ArrayList<>();
+        for (String palabra : TerminosBusqueda.normalizar(searchTerm).split(" ")) {
+            if (!palabra.isEmpty()) {
+                palabras.add(palabra);
+            }
+        }
+        return palabras;
+    }
+
+    private static String escaparRegex(String texto) {
+        return texto.replaceAll("[\\\\^$.|?*+()\\[\\]{}]", "\\\\$0");
+    }
+
+    // Los productos guardados antes de existir terminosBusqueda no aparecerían en la búsqueda
+    @EventListener(ApplicationReadyEvent.class)
+    public void completarTerminosEnSegundoPlano() {
+        Thread hilo = new Thread(() -> {
+            try {
+                completarTerminosBusqueda();
+            } catch (Exception e) {
+                log.error("❌ Error completando términos de búsqueda de productos: {}", e.getMessage(), e);
+            }
+        }, "terminos-productos");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    // Retorna la cantidad de productos actualizados
+    public int completarTerminosBusqueda() {
+        if (!enEjecucion.compareAndSet(false, true)) {
+            log.info("ℹ️ La carga de términos de búsqueda de productos ya está en ejecución");
+            return 0;
+        }
+
+        long inicio = System.currentTimeMillis();
+        int completados = 0;
+        try {
+            MongoCollection<Document> productos = productos();
+            Bson pendientes = Filters.exists("terminosBusqueda", false);
+            long total = productos.countDocuments(pendientes);
+            if (total == 0) {
+                log.info("✅ Todos los productos tienen términos de búsqueda");
+                return 0;
+            }
+            log.info("🚚 Completando términos de búsqueda de {} productos...", total);
+
+            // Cada lote actualizado deja de coincidir con el filtro, por eso siempre se lee desde el inicio
+            List<Document> lote;
+            while (!(lote = productos.find(pendientes)
+                    .projection(Projections.include("codigo", "nombre", "principiosActivos", "descripcion"))
+                    .limit(TAMANO_LOTE).into(new ArrayList<>())).isEmpty()) {
+                List<WriteModel<Document>> escrituras = new ArrayList<>(lote.size());
+                for (Document producto : lote) {
+                    List<String> terminos = TerminosBusqueda.generar(texto(producto, "codigo"),
+                            texto(producto, "nombre"), texto(producto, "principiosActivos"), texto(producto, "descripcion"));
+                    escrituras.add(new UpdateOneModel<>(Filters.eq("_id", producto.get("_id")),
+                            Updates.set("terminosBusqueda", terminos)));
+                }
+                completados += productos.bulkWrite(escrituras, new BulkWriteOptions().ordered(false)).getModifiedCount();
+            }
+
+            log.info("✅ Términos de búsqueda completados: {} productos en {} ms",
+                    completados, System.currentTimeMillis() - inicio);
+            return completados;
+        } finally {
+            enEjecucion.set(false);
+        }
+    }
+
+    private static String texto(Document documento, String campo) {
+        return Objects.toString(documento.get(campo), null);
+    }
+
+    private MongoCollection<Document> productos() {
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Producto.class));
+    }
+}
@@ -0,0 +1,338 @@
+package com.App.Lfarma.service;
+
+import com.App.Lfarma.entity.Producto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache local (por nodo) de productos por id y por código para las lecturas repetidas del
+ * flujo de facturación. Acotada por tamaño y TTL; cada escritura en ProductoService la invalida
+ * aquí y publica la invalidación por Redis para los demás nodos. El TTL limita lo que puede
+ * durar un dato viejo si se pierde un mensaje.
+ *
+ * Solo sirve lecturas: el descuento de stock sigue siendo el $inc condicional en la base de datos.
+ *
+ * También lleva la versión del catálogo (instante de la última escritura vista en cualquier nodo),
+ * que usan los ETag de /productos/api para responder 304 sin consultar Mongo. Llega con los
+ * mensajes y además se compara cada pocos segundos con la guardada en Redis, así un mensaje
+ * perdido no deja respondiendo 304 con un catálogo que ya cambió.
+ */
+@Service
+public class CacheLocalProductoService {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheLocalProductoService.class);
+
+    // Prefijos de las claves en los mensajes de invalidación
+    private static final String POR_ID = "id:";
+    private static final String POR_CODIGO = "codigo:";
+    private static final String CLAVE_VERSION = "lfarma:productos:version";
+
+    // SET solo si es mayor: dos nodos que publican casi a la vez no hacen retroceder la versión
+    private static final DefaultRedisScript<Long> GUARDAR_VERSION = new DefaultRedisScript<>(
+            "local actual = tonumber(redis.call('GET', KEYS[1]) or '0') "
+                    + "if tonumber(ARGV[1]) > actual then redis.call('SET', KEYS[1], ARGV[1]) return 1 end "
+                    + "return 0", Long.class);
+
+    @Value("${lfarma.productos.cache.maximo:10000}")
+    private long maximo;
+
+    @Value("${lfarma.productos.cache.ttl-segundos:60}")
+    private long ttlSegundos;
+
+    @Value("${lfarma.productos.cache.canal:lfarma:productos:invalidaciones}")
+    private String canal;
+
+    // Opcionales: sin Redis la cache sigue funcionando solo en este nodo
+    @Autowired
+    private ObjectProvider<StringRedisTemplate> redisTemplate;
+
+    @Autowired
+    private ObjectProvider<RedisMessageListenerContainer> listenerContainer;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final String nodo = UUID.randomUUID().toString();
+
+    // Cada invalidación lo incrementa; una carga desde la base solo se guarda si no cambió mientras leía
+    private final AtomicLong invalidaciones = new AtomicLong();
+
+    // Epoch ms de la última escritura de productos; solo avanza (se toma el máximo entre nodos)
+    private final AtomicLong versionCatalogo = new AtomicLong();
+
+    // La publicación no bloquea la venta; si Redis no responde se descartan (el TTL las cubre)
+    private final ThreadPoolExecutor publicador = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1000), runnable -> {
+                Thread hilo = new Thread(runnable, "invalidaciones-productos");
+                hilo.setDaemon(true);
+                return hilo;
+            }, (tarea, executor) -> log.warn("⚠️ Cola de invalidaciones de productos llena; se descarta una publicación"));
+
+    // Entradas por id; el código se resuelve con idPorCodigo, así invalidar por código no recorre la cache
+    private Cache<String, Producto> productos;
+    private final ConcurrentHashMap<String, String> idPorCodigo = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void iniciar() {
+        productos = Caffeine.newBuilder()
+                .maximumSize(maximo)
+                .expireAfterWrite(Duration.ofSeconds(ttlSegundos))
+                .recordStats()
+                // Síncrono: el índice por código sale junto con la entrada expulsada o vencida
+                .evictionListener((String id, Producto producto, RemovalCause causa) -> {
+                    if (id != null && producto != null && producto.getCodigo() != null) {
+                        idPorCodigo.remove(producto.getCodigo(), id);
+                    }
+                })
+                .build();
+
+        meterRegistry.ifAvailable(registry -> {
+            CaffeineCacheMetrics.monitor(registry, productos, "productos_local");
+            Gauge.builder("lfarma.productos.cache.aciertos", productos, cache -> cache.stats().hitRate())
+                    .description("Proporción de lecturas de productos servidas por la cache local")
+                    .register(registry);
+        });
+
+        listenerContainer.ifAvailable(container -> container.addMessageListener(
+                (mensaje, patron) -> recibir(new String(mensaje.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(canal)));
+
+        versionCatalogo.set(versionInicial());
+
+        log.info("✅ Cache local de productos: máximo {} entradas, TTL {} s", maximo, ttlSegundos);
+    }
+
+    @PreDestroy
+    public void detener() {
+        publicador.shutdown();
+    }
+
+    public Optional<Producto> buscarPorId(String id, Supplier<Optional<Producto>> baseDeDatos) {
+        return buscar(productos.getIfPresent(id), baseDeDatos);
+    }
+
+    public Optional<Producto> buscarPorCodigo(String codigo, Supplier<Optional<Producto>> baseDeDatos) {
+        String id = idPorCodigo.get(codigo);
+        Producto cacheado = id != null ? productos.getIfPresent(id) : null;
+        return buscar(cacheado != null && codigo.equals(cacheado.getCodigo()) ? cacheado : null, baseDeDatos);
+    }
+
+    // Se entregan copias: quien llama puede modificar el producto sin alterar la cache
+    private Optional<Producto> buscar(Producto cacheado, Supplier<Optional<Producto>> baseDeDatos) {
+        if (cacheado != null) {
+            return Optional.of(copia(cacheado));
+        }
+
+        long version = invalidaciones.get();
+        Optional<Producto> producto = baseDeDatos.get();
+        producto.ifPresent(encontrado -> {
+            Producto copia = copia(encontrado);
+            productos.put(copia.getId(), copia);
+            if (copia.getCodigo() != null) {
+                idPorCodigo.put(copia.getCodigo(), copia.getId());
+            }
+            // Se guarda primero y se verifica después: una invalidación que llegó durante la lectura
+            // o justo antes del put habría dejado en la cache la copia vieja hasta el TTL
+            if (invalidaciones.get() != version) {
+                invalidarLocal(copia.getId(), copia.getCodigo());
+            }
+        });
+        return producto;
+    }
+
+    // id o código pueden ser nulos (los cambios de stock solo conocen el código)
+    public void invalidar(String id, String codigo) {
+        invalidarLocal(id, codigo);
+        StringBuilder mensaje = new StringBuilder(nodo).append('|').append(avanzarVersion());
+        if (id != null) {
+            mensaje.append('\n').append(POR_ID).append(id);
+        }
+        if (codigo != null) {
+            mensaje.append('\n').append(POR_CODIGO).append(codigo);
+        }
+        publicar(mensaje.toString());
+    }
+
+    // Un solo mensaje para todas las líneas de una factura
+    public void invalidarCodigos(Collection<String> codigos) {
+        if (codigos.isEmpty()) {
+            return;
+        }
+        StringBuilder mensaje = new StringBuilder(nodo).append('|').append(avanzarVersion());
+        for (String codigo : codigos) {
+            invalidarLocal(null, codigo);
+            mensaje.append('\n').append(POR_CODIGO).append(codigo);
+        }
+        publicar(mensaje.toString());
+    }
+
+    private void invalidarLocal(String id, String codigo) {
+        invalidaciones.incrementAndGet();
+        if (id != null) {
+            Producto anterior = productos.asMap().remove(id);
+            if (anterior != null && anterior.getCodigo() != null) {
+                idPorCodigo.remove(anterior.getCodigo(), id);
+            }
+        }
+        if (codigo != null) {
+            String idCacheado = idPorCodigo.remove(codigo);
+            if (idCacheado != null) {
+                productos.invalidate(idCacheado);
+            }
+        }
+    }
+
+    private void publicar(String mensaje) {
+        StringRedisTemplate redis = redisTemplate.getIfAvailable();
+        if (redis == null) {
+            return;
+        }
+        long version = versionCatalogo.get();
+        publicador.execute(() -> {
+            try {
+                // Guardada para que un nodo que arranca no vuelva a una versión anterior (p. ej. tras un borrado)
+                redis.execute(GUARDAR_VERSION, List.of(CLAVE_VERSION), Long.toString(version));
+                redis.convertAndSend(canal, mensaje);
+            } catch (Exception e) {
+                log.warn("⚠️ No se pudo publicar la invalidación de productos: {}", e.getMessage());
+            }
+        });
+    }
+
+    private void recibir(String mensaje) {
+        String[] lineas = mensaje.split("\n");
+        String[] cabecera = lineas[0].split("\\|", 2);
+        if (lineas.length < 2 || nodo.equals(cabecera[0])) {
+            return;
+        }
+        if (cabecera.length == 2) {
+            try {
+                versionCatalogo.accumulateAndGet(Long.parseLong(cabecera[1]), Math::max);
+            } catch (NumberFormatException e) {
+                versionCatalogo.accumulateAndGet(System.currentTimeMillis(), Math::max);
+            }
+        }
+        for (int i = 1; i < lineas.length; i++) {
+            if (lineas[i].startsWith(POR_ID)) {
+                invalidarLocal(lineas[i].substring(POR_ID.length()), null);
+            } else if (lineas[i].startsWith(POR_CODIGO)) {
+                invalidarLocal(null, lineas[i].substring(POR_CODIGO.length()));
+            }
+        }
+        log.debug("📨 Invalidación de productos recibida de otro nodo: {} claves", lineas.length - 1);
+    }
+
+    public long versionCatalogo() {
+        return versionCatalogo.get();
+    }
+
+    private long avanzarVersion() {
+        long ahora = System.currentTimeMillis();
+        // Siempre estrictamente mayor: dos escrituras en el mismo milisegundo dan versiones distintas
+        return versionCatalogo.accumulateAndGet(ahora, (actual, nueva) -> Math.max(actual + 1, nueva));
+    }
+
+    // La mayor entre la última fechaActualizacion en Mongo y la versión guardada en Redis
+    private long versionInicial() {
+        long version = 0;
+        try {
+            Query ultima = new Query().with(Sort.by(Sort.Direction.DESC, "fechaActualizacion")).limit(1);
+            ultima.fields().include("fechaActualizacion");
+            Producto producto = mongoTemplate.findOne(ultima, Producto.class);
+            if (producto != null && producto.getFechaActualizacion() != null) {
+                version = producto.getFechaActualizacion().getTime();
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ No se pudo leer la última actualización de productos: {}", e.getMessage());
+        }
+        try {
+            version = Math.max(version, versionEnRedis());
+        } catch (Exception e) {
+            log.warn("⚠️ No se pudo leer la versión del catálogo en Redis: {}", e.getMessage());
+        }
+        // Sin datos se usa el arranque: nunca se responde 304 a un ETag de antes de reiniciar sin saber si cambió
+        return version > 0 ? version : System.currentTimeMillis();
+    }
+
+    // Cubre los mensajes de pub/sub perdidos: la versión guardada en Redis la escribe cada nodo al publicar
+    @Scheduled(initialDelayString = "${lfarma.productos.cache.version-ms:5000}",
+            fixedDelayString = "${lfarma.productos.cache.version-ms:5000}")
+    public void sincronizarVersion() {
+        try {
+            long guardada = versionEnRedis();
+            long anterior = versionCatalogo.getAndAccumulate(guardada, Math::max);
+            if (guardada > anterior) {
+                log.debug("🔄 Versión del catálogo adelantada desde Redis: {} -> {}", anterior, guardada);
+            }
+        } catch (Exception e) {
+            log.debug("⚠️ No se pudo sincronizar la versión del catálogo con Redis: {}", e.getMessage());
+        }
+    }
+
+    // 0 si no hay Redis o aún no se guardó ninguna versión
+    private long versionEnRedis() {
+        StringRedisTemplate redis = redisTemplate.getIfAvailable();
+        if (redis == null) {
+            return 0;
+        }
+        String guardada = redis.opsForValue().get(CLAVE_VERSION);
+        return guardada != null ? Long.parseLong(guardada) : 0;
+    }
+
+    public Map<String, Object> estadisticas() {
+        CacheStats stats = productos.stats();
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("entradas", productos.estimatedSize());
+        resultado.put("aciertos", stats.hitCount());
+        resultado.put("fallos", stats.missCount());
+        resultado.put("ratioAciertos", stats.hitRate());
+        resultado.put("expulsiones", stats.evictionCount());
+        return resultado;
+    }
+
+    private static Producto copia(Producto producto) {
+        Producto copia = new Producto();
+        BeanUtils.copyProperties(producto, copia);
+        return copia;
+    }
+}
@@ -0,0 +1,271 @@
+package com.App.Lfarma.service;
+
+import com.App.Lfarma.entity.Usuario;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache de dos niveles para los datos de login: L1 en memoria (TTL corto) sobre L2 en Redis
+ * (con TTL). Guarda solo lo que necesita Spring Security (usuario, hash y rol), no la entidad.
+ * UsuarioService invalida al registrar, eliminar o cambiar el rol; la invalidación llega a los
+ * demás nodos por Redis pub/sub y se repite al confirmar la transacción.
+ */
+@Service
+public class CacheUsuarioService {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheUsuarioService.class);
+
+    private static final String PREFIJO = "lfarma:usuarios:";
+    // Entradas del esquema anterior (entidad completa sin TTL)
+    private static final String PREFIJO_ANTERIOR = "usuario:";
+
+    /** Proyección que se cachea: lo mínimo para armar el UserDetails */
+    public record UsuarioCacheado(String username, String password, String rol) {
+
+        public static UsuarioCacheado de(Usuario usuario) {
+            return new UsuarioCacheado(usuario.getUsername(), usuario.getPassword(), usuario.getRol());
+        }
+    }
+
+    @Value("${lfarma.usuarios.cache.maximo:1000}")
+    private long maximo;
+
+    @Value("${lfarma.usuarios.cache.local-ttl-segundos:30}")
+    private long ttlLocalSegundos;
+
+    @Value("${lfarma.usuarios.cache.redis-ttl-segundos:900}")
+    private long ttlRedisSegundos;
+
+    @Value("${lfarma.usuarios.cache.canal:lfarma:usuarios:invalidaciones}")
+    private String canal;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Opcionales: sin Redis solo queda el nivel local
+    @Autowired
+    private ObjectProvider<StringRedisTemplate> redisTemplate;
+
+    @Autowired
+    private ObjectProvider<RedisMessageListenerContainer> listenerContainer;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private final String nodo = UUID.randomUUID().toString();
+
+    // Igual que en la cache de productos: una carga solo se guarda si nadie invalidó mientras leía
+    private final AtomicLong invalidaciones = new AtomicLong();
+
+    private final ThreadPoolExecutor publicador = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1000), runnable -> {
+                Thread hilo = new Thread(runnable, "invalidaciones-usuarios");
+                hilo.setDaemon(true);
+                return hilo;
+            }, (tarea, executor) -> log.warn("⚠️ Cola de invalidaciones de usuarios llena; se descarta una publicación"));
+
+    private Cache<String, UsuarioCacheado> usuarios;
+
+    @PostConstruct
+    public void iniciar() {
+        usuarios = Caffeine.newBuilder()
+                .maximumSize(maximo)
+                .expireAfterWrite(Duration.ofSeconds(ttlLocalSegundos))
+                .recordStats()
+                .build();
+
+        meterRegistry.ifAvailable(registry -> CaffeineCacheMetrics.monitor(registry, usuarios, "usuarios_local"));
+
+        listenerContainer.ifAvailable(container -> container.addMessageListener(
+                (mensaje, patron) -> recibir(new String(mensaje.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(canal)));
+
+        log.info("✅ Cache de usuarios: local {} entradas / TTL {} s, Redis TTL {} s",
+                maximo, ttlLocalSegundos, ttlRedisSegundos);
+    }
+
+    @PreDestroy
+    public void detener() {
+        publicador.shutdown();
+    }
+
+    public Optional<UsuarioCacheado> buscar(String username, Supplier<Optional<Usuario>> baseDeDatos) {
+        UsuarioCacheado local = usuarios.getIfPresent(username);
+        if (local != null) {
+            return Optional.of(local);
+        }
+
+        long version = invalidaciones.get();
+        UsuarioCacheado cacheado = leerRedis(username);
+        if (cacheado == null) {
+            Optional<Usuario> usuario = baseDeDatos.get();
+            if (usuario.isEmpty()) {
+                return Optional.empty();
+            }
+            cacheado = UsuarioCacheado.de(usuario.get());
+            if (invalidaciones.get() == version) {
+                escribirRedis(username, cacheado);
+            }
+            log.debug("📦 Usuario {} cargado desde la base de datos", username);
+        }
+        if (invalidaciones.get() == version) {
+            usuarios.put(username, cacheado);
+        }
+        return Optional.of(cacheado);
+    }
+
+    public void invalidar(String username) {
+        if (username == null) {
+            return;
+        }
+        invalidarLocal(username);
+        borrarRedis(username);
+        publicar(username);
+
+        // Una lectura concurrente pudo recargar el dato viejo antes del commit
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidarLocal(username);
+                    borrarRedis(username);
+                    publicar(username);
+                }
+            });
+        }
+    }
+
+    private void invalidarLocal(String username) {
+        invalidaciones.incrementAndGet();
+        usuarios.invalidate(username);
+    }
+
+    private UsuarioCacheado leerRedis(String username) {
+        StringRedisTemplate redis = redisTemplate.getIfAvailable();
+        if (redis == null) {
+            return null;
+        }
+        try {
+            String json = redis.opsForValue().get(PREFIJO + username);
+            return json != null ? objectMapper.readValue(json, UsuarioCacheado.class) : null;
+        } catch (Exception e) {
+            log.warn("⚠️ No se pudo leer el usuario {} de Redis: {}", username, e.getMessage());
+            return null;
+        }
+    }
+
+    private void escribirRedis(String username, UsuarioCacheado usuario) {
+        StringRedisTemplate redis = redisTemplate.getIfAvailable();
+        if (redis == null) {
+            return;
+        }
+        try {
+            redis.opsForValue().set(PREFIJO + username, objectMapper.writeValueAsString(usuario),
+                    Duration.ofSeconds(ttlRedisSegundos));
+        } catch (Exception e) {
+            log.warn("⚠️ No se pudo guardar el usuario {} en Redis: {}", username, e.getMessage());
+        }
+    }
+
+    private void borrarRedis(String username) {
+        StringRedisTemplate redis = redisTemplate.getIfAvailable();
+        if (redis == null) {
+            return;
+        }
+        try {
+            redis.delete(PREFIJO + username);
+        } catch (Exception e) {
+            log.warn("⚠️ No se pudo invalidar el usuario {} en Redis: {}", username, e.getMessage());
+        }
+    }
+
+    private void publicar(String username) {
+        StringRedisTemplate redis = redisTemplate.getIfAvailable();
+        if (redis == null) {
+            return;
+        }
+        publicador.execute(() -> {
+            try {
+                redis.convertAndSend(canal, nodo + "\n" + username);
+            } catch (Exception e) {
+                log.warn("⚠️ No se pudo publicar la invalidación del usuario: {}", e.getMessage());
+            }
+        });
+    }
+
+    private void recibir(String mensaje) {
+        int separador = mensaje.indexOf('\n');
+        if (separador < 0 || nodo.equals(mensaje.substring(0, separador))) {
+            return;
+        }
+        invalidarLocal(mensaje.substring(separador + 1));
+        log.debug("📨 Invalidación de usuario recibida de otro nodo");
+    }
+
+    // Las entradas "usuario:*" del esquema anterior no tenían TTL y guardaban la entidad completa
+    @EventListener(ApplicationReadyEvent.class)
+    public void limpiarEntradasAnteriores() {
+        StringRedisTemplate redis = redisTemplate.getIfAvailable();
+        if (redis == null) {
+            return;
+        }
+        publicador.execute(() -> {
+            int borradas = 0;
+            try (Cursor<String> claves = redis.scan(ScanOptions.scanOptions()
+                    .match(PREFIJO_ANTERIOR + "*").count(500).build())) {
+                while (claves.hasNext()) {
+                    redis.delete(claves.next());
+                    borradas++;
+                }
+                if (borradas > 0) {
+                    log.info("🧹 Eliminadas {} entradas de usuario del esquema anterior en Redis", borradas);
+                }
+            } catch (Exception e) {
+                log.warn("⚠️ No se pudieron limpiar las entradas de usuario anteriores: {}", e.getMessage());
+            }
+        });
+    }
+
+    public Map<String, Object> estadisticas() {
+        CacheStats stats = usuarios.stats();
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("entradas", usuarios.estimatedSize());
+        resultado.put("aciertos", stats.hitCount());
+        resultado.put("fallos", stats.missCount());
+        resultado.put("ratioAciertos", stats.hitRate());
+        return resultado;
+    }
+}
@@ -1,10 +1,18 @@
 package com.App.Lfarma.service;
 
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
+import com.App.Lfarma.DTO.PaginaCursorDTO;
+import com.App.Lfarma.config.RedisConfig;
 import com.App.Lfarma.entity.Cliente;
 import com.App.Lfarma.repository.ClienteRepository;
 
@@ -12,6 +20,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.HashMap;
+import java.util.regex.Pattern;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,6 +32,9 @@ public class ClienteService {
     @Autowired
     private ClienteRepository clienteRepository;
 
+    @Autowired
+    private PaginacionCursorService paginacionCursor;
+
     public List<Cliente> listarClientes() {
         try {
             List<Cliente> clientes = clienteRepository.findAll();
@@ -47,6 +59,23 @@ public class ClienteService {
         }
     }
 
+    // ✅ Paginación por cursor (orden de _id); la búsqueda usa los mismos campos que buscarClientes
+    @Timed(value = "lfarma.busqueda", extraTags = {"entidad", "clientes"})
+    public PaginaCursorDTO<Cliente> listarClientesCursor(String searchTerm, String after, int size, boolean conTotal) {
+        Query filtro = new Query();
+        if (searchTerm != null && !searchTerm.trim().isEmpty()) {
+            String termino = Pattern.quote(searchTerm.trim());
+            filtro.addCriteria(new Criteria().orOperator(
+                    Criteria.where("nombre").regex(termino, "i"),
+                    Criteria.where("codigo").regex(termino, "i"),
+                    Criteria.where("email").regex(termino, "i"),
+                    Criteria.where("telefono").regex(termino, "i"),
+                    Criteria.where("identificacion").regex(termino, "i")));
+        }
+        return paginacionCursor.buscar(Cliente.class, filtro,
+                PaginacionCursorService.Orden.porId(Cliente::getId), after, size, conTotal);
+    }
+
     // ✅ CORREGIDO: Búsqueda de clientes por nombre con paginación
     public Page<Cliente> buscarClientesPorNombre(String nombre, Pageable pageable) {
         try {
@@ -67,6 +96,7 @@ public class ClienteService {
     }
 
     // ✅ CORREGIDO: Búsqueda general en múltiples campos
+    @Timed(value = "lfarma.busqueda", extraTags = {"entidad", "clientes"})
     public Page<Cliente> buscarClientes(String searchTerm, Pageable pageable) {
         try {
             if (searchTerm == null || searchTerm.trim().isEmpty()) {
@@ -86,6 +116,7 @@ public class ClienteService {
     }
 
     // ✅ CORREGIDO: Búsqueda combinada (nombre o código)
+    @Timed(value = "lfarma.busqueda", extraTags = {"entidad", "clientes"})
     public Page<Cliente> buscarClientesPorNombreOCodigo(String searchTerm, Pageable pageable) {
         try {
             if (searchTerm == null || searchTerm.trim().isEmpty()) {
@@ -105,7 +136,9 @@ public class ClienteService {
         }
     }
 
-    // ✅ CORREGIDO: Obtener cliente por código
+    // ✅ CORREGIDO: Obtener cliente por código (cacheado en Redis; los no encontrados no se guardan)
+    @Cacheable(cacheNames = RedisConfig.CACHE_CLIENTES_POR_CODIGO, key = "#codigo.trim()",
+            condition = "#codigo != null && !#codigo.isBlank()", unless = "#result == null")
     public Optional<Cliente> obtenerClientePorCodigo(String codigo) {
         try {
             if (codigo == null || codigo.trim().isEmpty()) {
@@ -154,6 +187,12 @@ public class ClienteService {
     }
 
     // ✅ CORREGIDO: Guardar cliente con validaciones robustas
+    @Caching(evict = {
+            @CacheEvict(cacheNames = RedisConfig.CACHE_CLIENTES_POR_CODIGO, key = "#cliente.codigo", condition = "#cliente.codigo != null"),
+            // En una actualización el código pudo cambiar: la entrada del código anterior también queda obsoleta
+            @CacheEvict(cacheNames = RedisConfig.CACHE_CLIENTES_POR_CODIGO, allEntries = true, condition = "#cliente.id != null"),
+            @CacheEvict(cacheNames = RedisConfig.CACHE_DASHBOARD, key = "'clientes'")
+    })
     public Cliente guardarCliente(Cliente cliente) {
         try {
             log.info("💾 Guardando cliente: {}", cliente.getNombre());
@@ -217,6 +256,10 @@ public class ClienteService {
     }
 
     // ✅ CORREGIDO: Agregar cliente (alias de guardarCliente con validación adicional)
+    @Caching(evict = {
+            @CacheEvict(cacheNames = RedisConfig.CACHE_CLIENTES_POR_CODIGO, key = "#cliente.codigo", condition = "#cliente.codigo != null"),
+            @CacheEvict(cacheNames = RedisConfig.CACHE_DASHBOARD, key = "'clientes'")
+    })
     public Cliente agregarCliente(Cliente cliente) {
         try {
             log.info("➕ Agregando nuevo cliente: {}", cliente.getCodigo());
@@ -237,6 +280,10 @@ public class ClienteService {
     }
 
     // ✅ CORREGIDO: Eliminar cliente con validaciones
+    @Caching(evict = {
+            @CacheEvict(cacheNames = RedisConfig.CACHE_CLIENTES_POR_CODIGO, key = "#codigo.trim()", condition = "#codigo != null"),
+            @CacheEvict(cacheNames = RedisConfig.CACHE_DASHBOARD, key = "'clientes'")
+    })
     public void eliminarCliente(String codigo) {
         try {
             if (codigo == null || codigo.trim().isEmpty()) {
@@ -378,6 +425,7 @@ public class ClienteService {
     }
 
     // ✅ CORREGIDO: Actualizar ubicación de cliente
+    @CacheEvict(cacheNames = RedisConfig.CACHE_CLIENTES_POR_CODIGO, key = "#codigo.trim()", condition = "#codigo != null")
     public Cliente actualizarUbicacionCliente(String codigo, Double latitud, Double longitud, String direccion) {
         try {
             if (codigo == null || codigo.trim().isEmpty()) {
@@ -535,6 +583,12 @@ public class ClienteService {
     }
 
     // ✅ CORREGIDO: Validar y limpiar datos del cliente antes de guardar
+    @Caching(evict = {
+            @CacheEvict(cacheNames = RedisConfig.CACHE_CLIENTES_POR_CODIGO, key = "#cliente.codigo", condition = "#cliente.codigo != null"),
+            // En una actualización el código pudo cambiar: la entrada del código anterior también queda obsoleta
+            @CacheEvict(cacheNames = RedisConfig.CACHE_CLIENTES_POR_CODIGO, allEntries = true, condition = "#cliente.id != null"),
+            @CacheEvict(cacheNames = RedisConfig.CACHE_DASHBOARD, key = "'clientes'")
+    })
     public Cliente validarYGuardarCliente(Cliente cliente) {
         try {
             log.info("🧹 Validando y limpiando datos del cliente: {}", cliente.getCodigo());
@@ -1,18 +1,14 @@
 package com.App.Lfarma.service;
 
-import com.App.Lfarma.entity.Factura;
+import com.App.Lfarma.config.RedisConfig;
 import com.App.Lfarma.repository.ClienteRepository;
-import com.App.Lfarma.repository.FacturaRepository;
 import com.App.Lfarma.repository.ProductoRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
-import java.util.Calendar;
-import java.util.Date;
-import java.util.List;
-
 @Service
 public class DashboardService {
 
@@ -25,8 +21,10 @@ public class DashboardService {
     private ProductoRepository productoRepository;
 
     @Autowired
-    private FacturaRepository facturaRepository;
+    private VentaDiariaService ventaDiariaService;
 
+    // Los conteos se cachean unos segundos (TTL de la cache "dashboard"); altas y bajas los invalidan
+    @Cacheable(cacheNames = RedisConfig.CACHE_DASHBOARD, key = "'clientes'")
     public long countClientes() {
         try {
             return clienteRepository.count();
@@ -36,6 +34,7 @@ public class DashboardService {
         }
     }
 
+    @Cacheable(cacheNames = RedisConfig.CACHE_DASHBOARD, key = "'productos'")
     public long countProductos() {
         try {
             return productoRepository.count();
@@ -45,11 +44,10 @@ public class DashboardService {
         }
     }
 
+    // Las métricas del día salen del acumulado en ventas_diarias: una lectura por ID
     public int countVentasHoy() {
         try {
-            Date[] rango = hoyRango();
-            List<Factura> facturas = facturaRepository.findByFechaBetween(rango[0], rango[1]);
-            return facturas != null ? facturas.size() : 0;
+            return (int) ventaDiariaService.obtenerHoy().getFacturas();
         } catch (Exception e) {
             log.error("Error contando ventas hoy: {}", e.getMessage(), e);
             return 0;
@@ -58,15 +56,7 @@ public class DashboardService {
 
     public double ingresosHoy() {
         try {
-            Date[] rango = hoyRango();
-            List<Factura> facturas = facturaRepository.findByFechaBetween(rango[0], rango[1]);
-            double suma = 0.0;
-            if (facturas != null) {
-                for (Factura f : facturas) {
-                    suma += f.getTotal();
-                }
-            }
-            return Math.round(suma * 100.0) / 100.0;
+            return redondear(ventaDiariaService.obtenerHoy().getIngresos());
         } catch (Exception e) {
             log.error("Error calculando ingresos hoy: {}", e.getMessage(), e);
             return 0.0;
@@ -75,66 +65,45 @@ public class DashboardService {
 
     public double gananciaNetaHoy() {
         try {
-            Date[] rango = hoyRango();
-            List<Factura> facturas = facturaRepository.findByFechaBetween(rango[0], rango[1]);
-            double suma = 0.0;
-            if (facturas != null) {
-                for (Factura f : facturas) {
-                    suma += f.getGananciaNeta();
-                }
-            }
-            return Math.round(suma * 100.0) / 100.0;
+            return redondear(ventaDiariaService.obtenerHoy().getGanancia());
         } catch (Exception e) {
             log.error("Error calculando ganancia neta hoy: {}", e.getMessage(), e);
             return 0.0;
         }
     }
 
-    // Nuevo: costo total de compra para las ventas del día (suma de cantidad * costoCompra)
+    // Costo total de compra para las ventas del día (suma de cantidad * costoCompra)
     public double costoCompraHoy() {
         try {
-            Date[] rango = hoyRango();
-            List<Factura> facturas = facturaRepository.findByFechaBetween(rango[0], rango[1]);
-            double sumaCosto = 0.0;
-            if (facturas != null) {
-                for (Factura f : facturas) {
-                    if (f.getDetalles() != null) {
-                        for (var detalle : f.getDetalles()) {
-                            if (detalle.getProducto() != null) {
-                                sumaCosto += detalle.getCantidad() * detalle.getProducto().getCostoCompra();
-                            }
-                        }
-                    }
-                }
-            }
-            return Math.round(sumaCosto * 100.0) / 100.0;
+            return redondear(ventaDiariaService.obtenerHoy().getCosto());
         } catch (Exception e) {
             log.error("Error calculando costo de compra hoy: {}", e.getMessage(), e);
             return 0.0;
         }
     }
 
+    public long unidadesVendidasHoy() {
+        try {
+            return ventaDiariaService.obtenerHoy().getUnidades();
+        } catch (Exception e) {
+            log.error("Error calculando unidades vendidas hoy: {}", e.getMessage(), e);
+            return 0;
+        }
+    }
+
+    // Cambia con cada venta: solo el TTL la renueva
+    @Cacheable(cacheNames = RedisConfig.CACHE_DASHBOARD, key = "'alertasStock:' + #umbral")
     public long alertasStock(int umbral) {
         try {
-            // No hay método de conteo por cantidad en repo, así que contamos en memoria
-            return productoRepository.findAll().stream().filter(p -> p.getCantidad() <= umbral).count();
+            // Conteo en el servidor sobre el índice de cantidad
+            return productoRepository.countByCantidadLessThanEqual(umbral);
         } catch (Exception e) {
             log.error("Error calculando alertas de stock: {}", e.getMessage(), e);
             return 0;
         }
     }
 
-    private Date[] hoyRango() {
-        Calendar inicio = Calendar.getInstance();
-        inicio.set(Calendar.HOUR_OF_DAY, 0);
-        inicio.set(Calendar.MINUTE, 0);
-        inicio.set(Calendar.SECOND, 0);
-        inicio.set(Calendar.MILLISECOND, 0);
-
-        Calendar fin = (Calendar) inicio.clone();
-        fin.add(Calendar.DAY_OF_MONTH, 1);
-        fin.add(Calendar.MILLISECOND, -1);
-
-        return new Date[]{inicio.getTime(), fin.getTime()};
+    private double redondear(double valor) {
+        return Math.round(valor * 100.0) / 100.0;
     }
 }
@@ -1,17 +1,29 @@
 package com.App.Lfarma.service;
 
+import io.micrometer.core.annotation.Timed;
 import java.util.*;
-import java.util.stream.Collectors;
 
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.*;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.App.Lfarma.DTO.PaginaCursorDTO;
 import com.App.Lfarma.entity.Cliente;
+import com.App.Lfarma.entity.ClienteResumen;
 import com.App.Lfarma.entity.DetalleFactura;
 import com.App.Lfarma.entity.Factura;
 import com.App.Lfarma.entity.Producto;
+import com.App.Lfarma.entity.ProductoFacturado;
 import com.App.Lfarma.repository.FacturaRepository;
+import com.App.Lfarma.util.TerminosBusqueda;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,7 +40,27 @@ public class FacturaService {
     @Autowired
     private FacturaRepository facturaRepository;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private VentaDiariaService ventaDiariaService;
+
+    @Autowired
+    private MongoTransactionManager mongoTransactionManager;
+
+    // null hasta la primera factura
+    private volatile Boolean transaccionesMongo;
+
+    @Autowired
+    private PaginacionCursorService paginacionCursor;
+
+    // Más recientes primero; el mismo orden sirve para la paginación por número y por cursor
+    public static final PaginacionCursorService.Orden<Factura> ORDEN_LISTADO =
+            PaginacionCursorService.Orden.recientesPrimero("fecha", Factura::getFecha, Factura::getId);
+
     // ✅ CORREGIDO: Crear factura con IVA y productos cargados correctamente
+    @Timed(value = "lfarma.checkout", extraTags = {"operacion", "crearFactura"})
     public Factura crearFactura(Cliente cliente, List<DetalleFactura> detalles) {
         log.info("🧾 Creando factura para cliente: {}", cliente.getNombre());
 
@@ -47,7 +79,7 @@ public class FacturaService {
 
             Factura factura = new Factura();
             factura.setFecha(new Date());
-            factura.setCliente(cliente);
+            factura.setCliente(ClienteResumen.de(cliente));
             // Registrar el vendedor (usuario autenticado) si está disponible
             try {
                 String vendedor = SecurityContextHolder.getContext().getAuthentication() != null ?
@@ -58,6 +90,7 @@ public class FacturaService {
 
             // ✅✅✅ CORRECCIÓN CRÍTICA: Procesar detalles y cargar productos COMPLETOS
             List<DetalleFactura> detallesCompletos = new ArrayList<>();
+            Map<String, Integer> cantidadesPorCodigo = new LinkedHashMap<>();
 
             for (DetalleFactura detalle : detalles) {
                 // ✅ Obtener el producto COMPLETO desde la base de datos
@@ -92,15 +125,15 @@ public class FacturaService {
                     log.warn("⚠️ Producto sin costo de compra: {}, usando costo calculado: {}",
                             productoCompleto.getNombre(), costoCalculado);
                     productoCompleto.setCostoCompra(costoCalculado);
-                    productoService.guardarProducto(productoCompleto);
+                    productoService.actualizarCostoCompra(productoCompleto.getId(), costoCalculado);
                 }
 
-                // Descontar stock
-                productoService.descontarStock(productoCompleto.getCodigo(), detalle.getCantidad());
+                // El stock se descuenta al final, todas las líneas juntas
+                cantidadesPorCodigo.merge(productoCompleto.getCodigo(), detalle.getCantidad(), Integer::sum);
 
-                // ✅ Crear nuevo detalle con el producto COMPLETO
+                // ✅ Crear nuevo detalle con la copia del producto al momento de la venta
                 DetalleFactura detalleCompleto = new DetalleFactura();
-                detalleCompleto.setProducto(productoCompleto);
+                detalleCompleto.setProducto(ProductoFacturado.de(productoCompleto));
                 detalleCompleto.setCantidad(detalle.getCantidad());
                 detalleCompleto.setPrecioUnitario(productoCompleto.getPrecio());
 
@@ -130,7 +163,22 @@ public class FacturaService {
             // ✅ Llamar al método calcularTotal para consistencia
             factura.calcularTotal();
 
-            Factura facturaGuardada = facturaRepository.save(factura);
+            // El ID se asigna antes de guardar para indexarlo junto a los datos del cliente
+            factura.setId(new ObjectId().toHexString());
+            factura.actualizarTerminosBusqueda();
+
+            // ✅ Descontar stock de todas las líneas; si una falla se revierten las ya aplicadas
+            productoService.descontarStockLote(cantidadesPorCodigo);
+
+            // ✅ Factura y acumulado de ventas_diarias se confirman juntos o ninguno
+            Factura facturaGuardada;
+            try {
+                facturaGuardada = guardarConVentaDiaria(factura);
+            } catch (RuntimeException e) {
+                log.error("❌ No se pudo guardar la factura, reponiendo stock: {}", e.getMessage());
+                productoService.reponerStockLote(cantidadesPorCodigo);
+                throw e;
+            }
 
             log.info("✅ Factura creada exitosamente: {} - Subtotal: ${}, IVA: ${}, Total: ${}, Ganancia: ${}, Productos: {}",
                     facturaGuardada.getId(), facturaGuardada.getTotalVenta(), facturaGuardada.getIva(),
@@ -147,7 +195,46 @@ public class FacturaService {
         }
     }
 
-    // ✅✅✅ CORREGIDO: Obtener factura por ID con carga COMPLETA de productos
+    // Con replica set: una transacción de Mongo para el insert de la factura y el $inc del día.
+    // En un servidor standalone (sin transacciones) se compensa borrando la factura si el $inc
+    // falla, así el dashboard nunca cuenta una venta que no existe ni omite una que sí.
+    private Factura guardarConVentaDiaria(Factura factura) {
+        if (soportaTransacciones()) {
+            return new TransactionTemplate(mongoTransactionManager).execute(estado -> {
+                Factura guardada = facturaRepository.save(factura);
+                ventaDiariaService.registrarVenta(guardada);
+                return guardada;
+            });
+        }
+
+        Factura guardada = facturaRepository.save(factura);
+        try {
+            ventaDiariaService.registrarVenta(guardada);
+        } catch (RuntimeException e) {
+            log.error("❌ No se pudo actualizar ventas_diarias, se anula la factura {}: {}", guardada.getId(), e.getMessage());
+            facturaRepository.deleteById(guardada.getId());
+            throw e;
+        }
+        return guardada;
+    }
+
+    // Se consulta una vez (hello): replica set o mongos admiten transacciones multi-documento
+    private boolean soportaTransacciones() {
+        Boolean soporta = transaccionesMongo;
+        if (soporta == null) {
+            Document hello = mongoTemplate.executeCommand(new Document("hello", 1));
+            soporta = hello.containsKey("setName") || "isdbgrid".equals(hello.getString("msg"));
+            transaccionesMongo = soporta;
+            if (soporta) {
+                log.info("✅ Facturas y ventas_diarias se guardan en una transacción de Mongo");
+            } else {
+                log.warn("⚠️ Mongo sin replica set: facturas y ventas_diarias se guardan con compensación, sin transacción");
+            }
+        }
+        return soporta;
+    }
+
+    // ✅ Obtener factura por ID: cliente y productos vienen embebidos, basta una sola consulta
     public Optional<Factura> obtenerFacturaPorId(String id) {
         try {
             if (id == null || id.trim().isEmpty()) {
@@ -159,59 +246,6 @@ public class FacturaService {
             Optional<Factura> factura = facturaRepository.findById(idLimpio);
 
             if (factura.isPresent()) {
-                Factura facturaEncontrada = factura.get();
-
-                // ✅✅✅ CORRECCIÓN CRÍTICA: Cargar productos COMPLETOS en los detalles
-                if (facturaEncontrada.getDetalles() != null) {
-                    log.info("🔍 Cargando productos completos para factura {} ({} detalles)",
-                            idLimpio, facturaEncontrada.getDetalles().size());
-
-                    List<DetalleFactura> detallesCompletos = new ArrayList<>();
-
-                    for (DetalleFactura detalle : facturaEncontrada.getDetalles()) {
-                        if (detalle.getProducto() != null) {
-                            // Intentar cargar el producto completo desde la base de datos
-                            Optional<Producto> productoCompleto = Optional.empty();
-
-                            // Buscar por ID si está disponible
-                            if (detalle.getProducto().getId() != null) {
-                                productoCompleto = productoService.buscarPorId(detalle.getProducto().getId());
-                            }
-
-                            // Si no se encuentra por ID, intentar por código
-                            if (productoCompleto.isEmpty() && detalle.getProducto().getCodigo() != null) {
-                                productoCompleto = productoService.buscarPorCodigo(detalle.getProducto().getCodigo());
-                            }
-
-                            if (productoCompleto.isPresent()) {
-                                // ✅ Producto encontrado, actualizar el detalle
-                                DetalleFactura detalleCompleto = new DetalleFactura();
-                                detalleCompleto.setId(detalle.getId());
-                                detalleCompleto.setProducto(productoCompleto.get());
-                                detalleCompleto.setCantidad(detalle.getCantidad());
-                                detalleCompleto.setPrecioUnitario(detalle.getPrecioUnitario());
-                                detallesCompletos.add(detalleCompleto);
-
-                                log.debug("✅ Producto cargado: {} (ID: {})",
-                                        productoCompleto.get().getNombre(), productoCompleto.get().getId());
-                            } else {
-                                // ❌ Producto no encontrado, mantener el detalle original
-                                log.warn("⚠️ Producto no encontrado en BD para detalle: {}",
-                                        detalle.getProducto().getId() != null ?
-                                                detalle.getProducto().getId() : detalle.getProducto().getCodigo());
-                                detallesCompletos.add(detalle);
-                            }
-                        } else {
-                            // ❌ Detalle sin producto, mantener como está
-                            log.warn("⚠️ Detalle sin producto asociado en factura {}", idLimpio);
-                            detallesCompletos.add(detalle);
-                        }
-                    }
-
-                    // ✅ Actualizar la factura con los detalles completos
-                    facturaEncontrada.setDetalles(detallesCompletos);
-                }
-
                 log.debug("🔍 Factura encontrada por ID: {}", idLimpio);
             } else {
                 log.debug("🔍 Factura NO encontrada por ID: {}", idLimpio);
@@ -263,7 +297,7 @@ public class FacturaService {
         }
     }
 
-    // ✅ CORREGIDO: Búsqueda de facturas con manejo robusto
+    // ✅ Búsqueda de facturas en el servidor sobre el índice de terminosBusqueda
     public List<Factura> buscarFacturas(String searchTerm) {
         try {
             if (searchTerm == null || searchTerm.trim().isEmpty()) {
@@ -271,36 +305,13 @@ public class FacturaService {
                 return facturaRepository.findAll();
             }
 
-            String searchLower = searchTerm.trim().toLowerCase();
-
-            List<Factura> facturasFiltradas = facturaRepository.findAll().stream()
-                    .filter(factura -> {
-                        try {
-                            // ✅ VALIDACIÓN CRÍTICA: Verificar que cliente no sea null
-                            if (factura.getCliente() == null) {
-                                log.warn("⚠️ Factura sin cliente: {}", factura.getId());
-                                return false;
-                            }
-
-                            boolean matchesId = factura.getId().toLowerCase().contains(searchLower);
-                            boolean matchesNombre = factura.getCliente().getNombre() != null &&
-                                    factura.getCliente().getNombre().toLowerCase().contains(searchLower);
-                            boolean matchesIdentificacion = factura.getCliente().getIdentificacion() != null &&
-                                    factura.getCliente().getIdentificacion().toLowerCase().contains(searchLower);
-                            boolean matchesCodigo = factura.getCliente().getCodigo() != null &&
-                                    factura.getCliente().getCodigo().toLowerCase().contains(searchLower);
-
-                            return matchesId || matchesNombre || matchesIdentificacion || matchesCodigo;
-
-                        } catch (Exception e) {
-                            log.warn("⚠️ Error procesando factura {} en búsqueda: {}", factura.getId(), e.getMessage());
-                            return false;
-                        }
-                    })
-                    .collect(Collectors.toList());
-
-            log.info("🔍 Búsqueda de facturas '{}': {} resultados", searchTerm, facturasFiltradas.size());
-            return facturasFiltradas;
+            long inicio = System.nanoTime();
+            Query query = consultaBusqueda(searchTerm).with(Sort.by(Sort.Direction.DESC, "fecha"));
+            List<Factura> facturas = mongoTemplate.find(query, Factura.class);
+
+            log.info("🔍 Búsqueda de facturas '{}': {} resultados en {} ms",
+                    searchTerm, facturas.size(), (System.nanoTime() - inicio) / 1_000_000);
+            return facturas;
 
         } catch (Exception e) {
             log.error("❌ Error en buscarFacturas '{}': {}", searchTerm, e.getMessage(), e);
@@ -308,7 +319,8 @@ public class FacturaService {
         }
     }
 
-    // ✅ CORREGIDO: Búsqueda con paginación más eficiente
+    // ✅ Búsqueda paginada con skip/limit en Mongo; el conteo se omite cuando la página ya lo revela
+    @Timed(value = "lfarma.busqueda", extraTags = {"entidad", "facturas"})
     public Page<Factura> buscarFacturasPaginadas(String searchTerm, Pageable pageable) {
         try {
             if (searchTerm == null || searchTerm.trim().isEmpty()) {
@@ -316,18 +328,18 @@ public class FacturaService {
                 return facturaRepository.findAll(pageable);
             }
 
-            List<Factura> facturasFiltradas = buscarFacturas(searchTerm);
-
-            // Calcular índices para la página actual
-            int start = Math.min((int) pageable.getOffset(), facturasFiltradas.size());
-            int end = Math.min((start + pageable.getPageSize()), facturasFiltradas.size());
+            long inicio = System.nanoTime();
+            Query filtro = consultaBusqueda(searchTerm);
+            Sort orden = pageable.getSort().isSorted() ? pageable.getSort() : Sort.by(Sort.Direction.DESC, "fecha");
 
-            List<Factura> pageContent = facturasFiltradas.subList(start, end);
+            List<Factura> contenido = mongoTemplate.find(Query.of(filtro).with(pageable).with(orden), Factura.class);
+            Page<Factura> pagina = PageableExecutionUtils.getPage(contenido, pageable,
+                    () -> mongoTemplate.count(Query.of(filtro), Factura.class));
 
-            log.debug("🔍 Búsqueda paginada '{}': {} resultados (página {})",
-                    searchTerm, facturasFiltradas.size(), pageable.getPageNumber() + 1);
-
-            return new PageImpl<>(pageContent, pageable, facturasFiltradas.size());
+            log.info("🔍 Búsqueda paginada '{}': {} resultados (página {}) en {} ms",
+                    searchTerm, pagina.getTotalElements(), pageable.getPageNumber() + 1,
+                    (System.nanoTime() - inicio) / 1_000_000);
+            return pagina;
 
         } catch (Exception e) {
             log.error("❌ Error en buscarFacturasPaginadas '{}': {}", searchTerm, e.getMessage(), e);
@@ -335,6 +347,38 @@ public class FacturaService {
         }
     }
 
+    // ✅ Paginación por cursor: búsqueda opcional y, si se indica, solo las facturas del vendedor
+    @Timed(value = "lfarma.busqueda", extraTags = {"entidad", "facturas"})
+    public PaginaCursorDTO<Factura> listarFacturasCursor(String searchTerm, String vendedor,
+                                                         String after, int size, boolean conTotal) {
+        Query filtro = searchTerm != null && !searchTerm.trim().isEmpty() ? consultaBusqueda(searchTerm) : new Query();
+        if (vendedor != null) {
+            filtro.addCriteria(Criteria.where("vendedor").is(vendedor));
+        }
+        return paginacionCursor.buscar(Factura.class, filtro, ORDEN_LISTADO, after, size, conTotal);
+    }
+
+    public String cursorDespuesDe(Factura factura) {
+        return paginacionCursor.cursorDe(ORDEN_LISTADO, factura);
+    }
+
+    // Cada palabra del término debe ser prefijo de algún término indexado; el regex
+    // anclado (^) permite a Mongo recorrer solo un rango del índice
+    private Query consultaBusqueda(String searchTerm) {
+        String normalizado = TerminosBusqueda.normalizar(searchTerm);
+        List<Criteria> condiciones = new ArrayList<>();
+        for (String palabra : normalizado.split(" ")) {
+            if (!palabra.isEmpty()) {
+                condiciones.add(Criteria.where("terminosBusqueda").regex("^" + escaparRegex(palabra)));
+            }
+        }
+        return condiciones.isEmpty() ? new Query() : Query.query(new Criteria().andOperator(condiciones));
+    }
+
+    private static String escaparRegex(String texto) {
+        return texto.replaceAll("[\\\\^$.|?*+()\\[\\]{}]", "\\\\$0");
+    }
+
     // ✅ CORREGIDO: Buscar facturas por rango de fechas
     public List<Factura> buscarFacturasPorFecha(Date desde, Date hasta) {
         try {
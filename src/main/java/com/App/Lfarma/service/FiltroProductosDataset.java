@@ -0,0 +1,139 @@
+package com.App.Lfarma.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Decide si un producto es real o viene del dataset de entrenamiento (ARFF).
+ * Las palabras excluidas se buscan con un autómata Aho-Corasick (una sola pasada por
+ * texto, sin pasar a minúsculas ni crear strings) y los patrones numéricos están
+ * precompilados. Es inmutable y seguro para usar desde varios hilos.
+ */
+public final class FiltroProductosDataset {
+
+    // Palabras del dataset en nombre o código
+    private static final String[] COMUNES = {
+            "ejemplo", "test", "demo", "sample", "jggmom", "item",
+            "producto", "medicamento", "farmacia", "venta", "arff"
+    };
+
+    // Solo se buscan en el nombre
+    private static final String[] SOLO_NOMBRE = {"muestra", "dataset", "training", "entrenamiento"};
+
+    // "item 123" ya queda cubierto por la palabra "item"
+    private static final Pattern NOMBRE_MG = Pattern.compile("\\dmg", Pattern.CASE_INSENSITIVE);
+    private static final Pattern NOMBRE_DECIMAL = Pattern.compile("\\d\\.\\d");
+    private static final Pattern CODIGO_NUMERICO = Pattern.compile("\\d{5}");
+
+    private final Automata automataNombre;
+    private final Automata automataCodigo;
+
+    public FiltroProductosDataset() {
+        List<String> palabrasNombre = new ArrayList<>(Arrays.asList(COMUNES));
+        palabrasNombre.addAll(Arrays.asList(SOLO_NOMBRE));
+        this.automataNombre = new Automata(palabrasNombre);
+        this.automataCodigo = new Automata(Arrays.asList(COMUNES));
+    }
+
+    public boolean esReal(String nombre, String codigo) {
+        // Validaciones básicas de campos obligatorios
+        if (codigo == null || codigo.trim().isEmpty() || nombre == null || nombre.trim().isEmpty()) {
+            return false;
+        }
+        // Códigos muy cortos o genéricos
+        if (codigo.length() <= 3) {
+            return false;
+        }
+        return !(automataNombre.contieneAlguna(nombre)
+                || automataCodigo.contieneAlguna(codigo)
+                || NOMBRE_MG.matcher(nombre).find()
+                || NOMBRE_DECIMAL.matcher(nombre).find()
+                || CODIGO_NUMERICO.matcher(codigo).find());
+    }
+
+    /**
+     * Aho-Corasick sobre a-z con las transiciones de fallo ya resueltas en la tabla:
+     * cada carácter cuesta un acceso a arreglo. Las palabras solo tienen letras ASCII,
+     * así que cualquier otro carácter vuelve al estado inicial.
+     */
+    private static final class Automata {
+        private static final int LETRAS = 26;
+
+        private final int[][] siguiente;
+        private final boolean[] terminal;
+
+        Automata(List<String> palabras) {
+            int maxEstados = 1 + palabras.stream().mapToInt(String::length).sum();
+            int[][] tabla = new int[maxEstados][LETRAS];
+            boolean[] fin = new boolean[maxEstados];
+            for (int[] fila : tabla) {
+                Arrays.fill(fila, -1);
+            }
+
+            int estados = 1;
+            for (String palabra : palabras) {
+                int estado = 0;
+                for (int i = 0; i < palabra.length(); i++) {
+                    int letra = palabra.charAt(i) - 'a';
+                    if (tabla[estado][letra] == -1) {
+                        tabla[estado][letra] = estados++;
+                    }
+                    estado = tabla[estado][letra];
+                }
+                fin[estado] = true;
+            }
+
+            // BFS: completar transiciones con las del estado de fallo
+            int[] fallo = new int[estados];
+            Deque<Integer> cola = new ArrayDeque<>();
+            for (int letra = 0; letra < LETRAS; letra++) {
+                int hijo = tabla[0][letra];
+                if (hijo == -1) {
+                    tabla[0][letra] = 0;
+                } else {
+                    fallo[hijo] = 0;
+                    cola.add(hijo);
+                }
+            }
+            while (!cola.isEmpty()) {
+                int estado = cola.poll();
+                fin[estado] |= fin[fallo[estado]];
+                for (int letra = 0; letra < LETRAS; letra++) {
+                    int hijo = tabla[estado][letra];
+                    if (hijo == -1) {
+                        tabla[estado][letra] = tabla[fallo[estado]][letra];
+                    } else {
+                        fallo[hijo] = tabla[fallo[estado]][letra];
+                        cola.add(hijo);
+                    }
+                }
+            }
+
+            this.siguiente = Arrays.copyOf(tabla, estados);
+            this.terminal = Arrays.copyOf(fin, estados);
+        }
+
+        boolean contieneAlguna(String texto) {
+            int estado = 0;
+            for (int i = 0; i < texto.length(); i++) {
+                char c = texto.charAt(i);
+                if (c >= 'A' && c <= 'Z') {
+                    c = (char) (c + ('a' - 'A'));
+                }
+                if (c < 'a' || c > 'z') {
+                    estado = 0;
+                    continue;
+                }
+                estado = siguiente[estado][c - 'a'];
+                if (terminal[estado]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.App.Lfarma.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Almacén de imágenes de productos en disco (lfarma.media.raiz), fuera del classpath para que
+ * funcione con el jar empaquetado. Al subir una imagen se guarda el original y en segundo plano
+ * se generan variantes JPEG reducidas (una por ancho configurado) para que el catálogo no
+ * descargue la foto completa. Los nombres llevan la fecha de subida, así que nunca cambian
+ * de contenido y se pueden cachear sin expiración en el navegador.
+ */
+@Service
+public class ImagenProductoService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImagenProductoService.class);
+
+    private static final Pattern NOMBRE_VALIDO = Pattern.compile("[A-Za-z0-9._-]+");
+    private static final Set<String> EXTENSIONES = Set.of(".jpg", ".jpeg", ".png", ".gif", ".webp");
+
+    /** Archivo a servir; definitiva = false cuando reemplaza a una variante que aún no existe */
+    public record ImagenResuelta(Path archivo, boolean definitiva) {}
+
+    @Value("${lfarma.media.raiz:./media}")
+    private String raiz;
+
+    @Value("${lfarma.media.anchos:200,600}")
+    private int[] anchos;
+
+    @Value("${lfarma.media.calidad-jpeg:0.8}")
+    private float calidadJpeg;
+
+    private Path originales;
+    private Path variantes;
+
+    // Variantes en generación (evita generar dos veces la misma)
+    private final Set<Path> enProceso = ConcurrentHashMap.newKeySet();
+
+    // Fuera de la petición; si se llena, la variante se genera cuando se vuelva a pedir
+    private final ThreadPoolExecutor procesador = new ThreadPoolExecutor(1, 2, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(200), runnable -> {
+                Thread hilo = new Thread(runnable, "imagenes-productos");
+                hilo.setDaemon(true);
+                hilo.setPriority(Thread.MIN_PRIORITY);
+                return hilo;
+            }, (tarea, executor) -> log.warn("⚠️ Cola de imágenes llena; se posterga una variante"));
+
+    @PostConstruct
+    public void iniciar() throws IOException {
+        Path base = Paths.get(raiz).toAbsolutePath().normalize();
+        originales = Files.createDirectories(base.resolve("originales"));
+        variantes = Files.createDirectories(base.resolve("variantes"));
+        Arrays.sort(anchos);
+        log.info("✅ Imágenes de productos en {} (variantes de {} px)", base, Arrays.toString(anchos));
+    }
+
+    @PreDestroy
+    public void detener() {
+        procesador.shutdownNow();
+    }
+
+    // Retorna el nombre con que quedó guardada; las variantes se generan después
+    public String guardar(String productoId, MultipartFile file) throws IOException {
+        String extension = extension(file.getOriginalFilename());
+        if (!EXTENSIONES.contains(extension)) {
+            throw new IllegalArgumentException("Formato de imagen no soportado: " + extension);
+        }
+        String seguro = productoId.replaceAll("[^A-Za-z0-9_-]", "");
+        String nombre = "producto_" + seguro + "_" + System.currentTimeMillis() + extension;
+
+        // Se escribe en un temporal y se mueve: nunca se sirve un archivo a medio escribir
+        Path temporal = Files.createTempFile(originales, ".subida-", ".tmp");
+        try (InputStream entrada = file.getInputStream()) {
+            Files.copy(entrada, temporal, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temporal, originales.resolve(nombre), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+
+        for (int ancho : anchos) {
+            programarVariante(nombre, ancho);
+        }
+        return nombre;
+    }
+
+    /**
+     * Archivo a servir: la variante del menor ancho configurado que cubra el pedido, o el
+     * original si no se pidió ancho, el pedido supera todos los anchos o la variante aún no existe.
+     * Vacío si la imagen no está en el almacén.
+     */
+    public Optional<ImagenResuelta> resolver(String nombre, Integer ancho) {
+        if (nombre == null || !NOMBRE_VALIDO.matcher(nombre).matches()) {
+            return Optional.empty();
+        }
+        Path original = originales.resolve(nombre);
+        if (!Files.isRegularFile(original)) {
+            return Optional.empty();
+        }
+        if (ancho == null || ancho <= 0) {
+            return Optional.of(new ImagenResuelta(original, true));
+        }
+
+        for (int disponible : anchos) {
+            if (disponible >= ancho) {
+                Path variante = variante(nombre, disponible);
+                if (Files.isRegularFile(variante)) {
+                    return Optional.of(new ImagenResuelta(variante, true));
+                }
+                programarVariante(nombre, disponible);
+                // Provisional: al generarse la variante la misma URL debe devolver otro archivo
+                return Optional.of(new ImagenResuelta(original, false));
+            }
+        }
+        return Optional.of(new ImagenResuelta(original, true));
+    }
+
+    private Path variante(String nombre, int ancho) {
+        String base = nombre.substring(0, nombre.lastIndexOf('.'));
+        return variantes.resolve(ancho + "").resolve(base + ".jpg");
+    }
+
+    private void programarVariante(String nombre, int ancho) {
+        Path destino = variante(nombre, ancho);
+        if (Files.exists(destino) || !enProceso.add(destino)) {
+            return;
+        }
+        try {
+            procesador.execute(() -> {
+                try {
+                    generarVariante(originales.resolve(nombre), destino, ancho);
+                } catch (Exception e) {
+                    log.warn("⚠️ No se pudo generar la variante {} px de {}: {}", ancho, nombre, e.getMessage());
+                } finally {
+                    enProceso.remove(destino);
+                }
+            });
+        } catch (Exception e) {
+            enProceso.remove(destino);
+        }
+    }
+
+    private void generarVariante(Path origen, Path destino, int ancho) throws IOException {
+        long inicio = System.nanoTime();
+        BufferedImage imagen = ImageIO.read(origen.toFile());
+        if (imagen == null) {
+            // Formato sin lector en ImageIO (p. ej. WebP): se sigue sirviendo el original
+            log.debug("ℹ️ Sin lector de imagen para {}; no se generan variantes", origen.getFileName());
+            return;
+        }
+
+        int anchoFinal = Math.min(ancho, imagen.getWidth());
+        int altoFinal = Math.max(1, Math.round(imagen.getHeight() * (anchoFinal / (float) imagen.getWidth())));
+        BufferedImage reducida = new BufferedImage(anchoFinal, altoFinal, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = reducida.createGraphics();
+        try {
+            // Fondo blanco: JPEG no tiene transparencia
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, anchoFinal, altoFinal);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(imagen, 0, 0, anchoFinal, altoFinal, null);
+        } finally {
+            g.dispose();
+        }
+
+        Files.createDirectories(destino.getParent());
+        Path temporal = Files.createTempFile(destino.getParent(), ".variante-", ".tmp");
+        try {
+            escribirJpeg(reducida, temporal);
+            Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+        log.debug("🖼️ Variante {} px de {} generada en {} ms ({} bytes)", ancho, origen.getFileName(),
+                (System.nanoTime() - inicio) / 1_000_000, Files.size(destino));
+    }
+
+    private void escribirJpeg(BufferedImage imagen, Path destino) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream salida = ImageIO.createImageOutputStream(destino.toFile())) {
+            ImageWriteParam parametros = writer.getDefaultWriteParam();
+            parametros.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            parametros.setCompressionQuality(calidadJpeg);
+            writer.setOutput(salida);
+            writer.write(null, new IIOImage(imagen, null, null), parametros);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static String extension(String nombreOriginal) {
+        if (nombreOriginal == null || !nombreOriginal.contains(".")) {
+            return "";
+        }
+        return nombreOriginal.substring(nombreOriginal.lastIndexOf('.')).toLowerCase();
+    }
+}
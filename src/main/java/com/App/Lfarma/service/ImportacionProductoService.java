@@ -0,0 +1,602 @@
+package com.App.Lfarma.service;
+
+import com.App.Lfarma.DTO.ImportacionProductosDTO;
+import com.App.Lfarma.DTO.ImportacionProductosDTO.ErrorFila;
+import com.App.Lfarma.config.RedisConfig;
+import com.App.Lfarma.entity.Producto;
+import com.App.Lfarma.util.TerminosBusqueda;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.annotation.Timed;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Importación masiva del catálogo de productos desde CSV (coma o punto y coma) o XLSX. El
+ * archivo se lee por streaming: las filas se acumulan en lotes (lfarma.productos.importacion.lote),
+ * cada lote se valida en paralelo y se escribe con una sola operación bulk de Mongo que hace
+ * upsert por código. Por lote hay dos idas a la base: la lectura de los productos existentes y
+ * la escritura, en lugar de dos por producto como guardarProducto.
+ *
+ * Las columnas codigo, nombre, precio, cantidad y categoria son obligatorias; las demás solo se
+ * escriben si la celda trae valor, así que un catálogo parcial no borra datos existentes. La
+ * cantidad solo se usa como stock inicial de los productos nuevos: el de los existentes lo
+ * mueven las ventas y los suministros, y se reemplaza solo si se pide (reemplazarStock). En modo
+ * simulación se valida todo y se informa qué se crearía o actualizaría, sin escribir.
+ *
+ * El índice de autocompletado se reconstruye una vez al final en lugar de indexar producto
+ * por producto.
+ */
+@Service
+public class ImportacionProductoService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportacionProductoService.class);
+
+    private static final List<String> OBLIGATORIAS = List.of("codigo", "nombre", "precio", "cantidad", "categoria");
+
+    // Cabecera normalizada (sin tildes, espacios ni guiones) → campo de Producto
+    private static final Map<String, String> COLUMNAS = Map.ofEntries(
+            Map.entry("codigo", "codigo"),
+            Map.entry("nombre", "nombre"),
+            Map.entry("precio", "precio"),
+            Map.entry("precioventa", "precio"),
+            Map.entry("costocompra", "costoCompra"),
+            Map.entry("costo", "costoCompra"),
+            Map.entry("cantidad", "cantidad"),
+            Map.entry("stock", "cantidad"),
+            Map.entry("categoria", "categoria"),
+            Map.entry("descripcion", "descripcion"),
+            Map.entry("presentacion", "presentacion"),
+            Map.entry("concentracion", "concentracion"),
+            Map.entry("lote", "lote"),
+            Map.entry("principiosactivos", "principiosActivos"),
+            Map.entry("fechavencimiento", "fechaVencimiento"),
+            Map.entry("vencimiento", "fechaVencimiento"),
+            Map.entry("proveedorid", "proveedorId"));
+
+    private static final String[] FORMATOS_FECHA = {"yyyy-MM-dd", "dd/MM/yyyy", "M/d/yy"};
+
+    // Formatos de número aceptados (ver parsearNumero)
+    private static final Pattern ENTERO = Pattern.compile("[-+]?\\d+");
+    private static final Pattern UN_SEPARADOR = Pattern.compile("[-+]?\\d+[.,]\\d+");
+    private static final Pattern AMBIGUO = Pattern.compile("[-+]?[1-9]\\d{0,2}[.,]\\d{3}");
+    private static final Pattern MILES_CON_PUNTO = Pattern.compile("[-+]?\\d{1,3}(\\.\\d{3})+(,\\d+)?");
+    private static final Pattern MILES_CON_COMA = Pattern.compile("[-+]?\\d{1,3}(,\\d{3})+(\\.\\d+)?");
+    private static final Pattern TRES_DECIMALES = Pattern.compile("-?\\d{1,3}\\.\\d{3}");
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private AutocompletadoProductoService autocompletadoService;
+
+    @Autowired
+    private CacheLocalProductoService cacheLocal;
+
+    @Value("${lfarma.productos.importacion.lote:1000}")
+    private int tamanoLote;
+
+    @Value("${lfarma.productos.importacion.max-errores:200}")
+    private int maxErrores;
+
+    @FunctionalInterface
+    private interface LectorFilas {
+        void fila(int numero, List<String> valores);
+    }
+
+    @Timed(value = "lfarma.importacion", extraTags = {"entidad", "productos"})
+    @CacheEvict(cacheNames = RedisConfig.CACHE_DASHBOARD, key = "'productos'", condition = "!#simulacion")
+    public ImportacionProductosDTO importar(MultipartFile archivo, boolean simulacion, boolean reemplazarStock)
+            throws IOException {
+        if (archivo == null || archivo.isEmpty()) {
+            throw new IllegalArgumentException("El archivo está vacío");
+        }
+        String nombre = archivo.getOriginalFilename() == null ? "" : archivo.getOriginalFilename().toLowerCase(Locale.ROOT);
+        long inicio = System.nanoTime();
+
+        Importacion importacion = new Importacion(simulacion, reemplazarStock);
+        if (nombre.endsWith(".xlsx")) {
+            leerXlsx(archivo, importacion::fila);
+        } else if (nombre.endsWith(".csv") || nombre.endsWith(".txt")) {
+            try (InputStream entrada = archivo.getInputStream()) {
+                leerCsv(entrada, importacion::fila);
+            }
+        } else {
+            throw new IllegalArgumentException("Formato no soportado (use .csv o .xlsx): " + archivo.getOriginalFilename());
+        }
+        importacion.terminar();
+
+        ImportacionProductosDTO resultado = importacion.resultado;
+        if (!simulacion && resultado.getNuevos() + resultado.getActualizados() > 0) {
+            autocompletadoService.reconstruirDesdeBaseDeDatos();
+        }
+        long duracionMs = Math.max(1, (System.nanoTime() - inicio) / 1_000_000);
+        resultado.setDuracionMs(duracionMs);
+        resultado.setFilasPorSegundo(resultado.getFilasLeidas() * 1000L / duracionMs);
+        log.info("📦 Importación de productos{}: {} filas, {} nuevos, {} actualizados, {} con error en {} ms ({} filas/s)",
+                simulacion ? " (simulación)" : "", resultado.getFilasLeidas(), resultado.getNuevos(),
+                resultado.getActualizados(), resultado.getConError(), duracionMs, resultado.getFilasPorSegundo());
+        return resultado;
+    }
+
+    // ==================== LECTURA ====================
+
+    // RFC 4180 básico: comillas dobles, "" como comilla escapada y saltos de línea dentro de comillas
+    private void leerCsv(InputStream entrada, LectorFilas lector) throws IOException {
+        BufferedReader lineas = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8));
+        String linea = lineas.readLine();
+        if (linea == null) {
+            return;
+        }
+        if (linea.startsWith("\uFEFF")) {
+            linea = linea.substring(1);
+        }
+        // Excel en español exporta con punto y coma
+        char separador = linea.chars().filter(c -> c == ';').count() > linea.chars().filter(c -> c == ',').count() ? ';' : ',';
+
+        int numero = 0;
+        while (linea != null) {
+            numero++;
+            int inicioRegistro = numero;
+            List<String> valores = new ArrayList<>();
+            StringBuilder valor = new StringBuilder();
+            boolean enComillas = false;
+            while (true) {
+                for (int i = 0; i < linea.length(); i++) {
+                    char c = linea.charAt(i);
+                    if (enComillas) {
+                        if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                            valor.append('"');
+                            i++;
+                        } else if (c == '"') {
+                            enComillas = false;
+                        } else {
+                            valor.append(c);
+                        }
+                    } else if (c == '"') {
+                        enComillas = true;
+                    } else if (c == separador) {
+                        valores.add(valor.toString());
+                        valor.setLength(0);
+                    } else {
+                        valor.append(c);
+                    }
+                }
+                if (!enComillas) {
+                    break;
+                }
+                linea = lineas.readLine();
+                if (linea == null) {
+                    break;
+                }
+                numero++;
+                valor.append('\n');
+            }
+            valores.add(valor.toString());
+            lector.fila(inicioRegistro, valores);
+            linea = lineas.readLine();
+        }
+    }
+
+    // Primera hoja con el parser SAX de POI: no se carga el libro completo en memoria
+    private void leerXlsx(MultipartFile archivo, LectorFilas lector) throws IOException {
+        Path temporal = Files.createTempFile("lfarma-importacion-", ".xlsx");
+        try {
+            archivo.transferTo(temporal);
+            try (OPCPackage paquete = OPCPackage.open(temporal.toFile(), PackageAccess.READ)) {
+                XSSFReader libro = new XSSFReader(paquete);
+                ReadOnlySharedStringsTable textos = new ReadOnlySharedStringsTable(paquete);
+                XSSFReader.SheetIterator hojas = (XSSFReader.SheetIterator) libro.getSheetsData();
+                if (!hojas.hasNext()) {
+                    return;
+                }
+                XSSFSheetXMLHandler.SheetContentsHandler contenido = new XSSFSheetXMLHandler.SheetContentsHandler() {
+                    private List<String> valores;
+
+                    @Override
+                    public void startRow(int fila) {
+                        valores = new ArrayList<>();
+                    }
+
+                    @Override
+                    public void endRow(int fila) {
+                        lector.fila(fila + 1, valores);
+                    }
+
+                    @Override
+                    public void cell(String referencia, String valor, XSSFComment comentario) {
+                        // Las celdas vacías no llegan: se rellena hasta la columna
+                        int columna = new CellReference(referencia).getCol();
+                        while (valores.size() < columna) {
+                            valores.add("");
+                        }
+                        valores.add(valor);
+                    }
+                };
+                try (InputStream hoja = hojas.next()) {
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(new XSSFSheetXMLHandler(libro.getStylesTable(), null, textos,
+                            contenido, new ValoresXlsx(), false));
+                    parser.parse(new InputSource(hoja));
+                }
+            }
+        } catch (IllegalArgumentException | IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("No se pudo leer el archivo XLSX: " + e.getMessage(), e);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    // ==================== PROCESO POR LOTES ====================
+
+    private record FilaCruda(int numero, List<String> valores) {}
+
+    // Resultado de validar una fila: producto o error
+    private record FilaValidada(int numero, String codigo, Producto producto, String error) {}
+
+    private final class Importacion {
+
+        private final boolean simulacion;
+        private final boolean reemplazarStock;
+        private final ImportacionProductosDTO resultado = new ImportacionProductosDTO();
+        private Map<String, Integer> columnas;
+        private List<FilaCruda> pendientes = new ArrayList<>();
+        // Para detectar códigos repetidos entre lotes
+        private final Set<String> codigosVistos = new HashSet<>();
+
+        Importacion(boolean simulacion, boolean reemplazarStock) {
+            this.simulacion = simulacion;
+            this.reemplazarStock = reemplazarStock;
+            resultado.setSimulacion(simulacion);
+            resultado.setReemplazarStock(reemplazarStock);
+        }
+
+        void fila(int numero, List<String> valores) {
+            if (columnas == null) {
+                leerCabecera(valores);
+                return;
+            }
+            if (valores.stream().allMatch(valor -> valor == null || valor.isBlank())) {
+                return;
+            }
+            resultado.setFilasLeidas(resultado.getFilasLeidas() + 1);
+            pendientes.add(new FilaCruda(numero, valores));
+            if (pendientes.size() >= tamanoLote) {
+                procesarLote();
+            }
+        }
+
+        void terminar() {
+            if (columnas == null) {
+                throw new IllegalArgumentException("El archivo no tiene cabecera");
+            }
+            if (!pendientes.isEmpty()) {
+                procesarLote();
+            }
+        }
+
+        private void leerCabecera(List<String> cabecera) {
+            columnas = new LinkedHashMap<>();
+            for (int i = 0; i < cabecera.size(); i++) {
+                String campo = COLUMNAS.get(normalizarCabecera(cabecera.get(i)));
+                if (campo == null) {
+                    if (cabecera.get(i) != null && !cabecera.get(i).isBlank()) {
+                        resultado.getColumnasIgnoradas().add(cabecera.get(i).trim());
+                    }
+                } else {
+                    columnas.putIfAbsent(campo, i);
+                }
+            }
+            List<String> faltantes = OBLIGATORIAS.stream().filter(campo -> !columnas.containsKey(campo)).toList();
+            if (!faltantes.isEmpty()) {
+                throw new IllegalArgumentException("Faltan columnas obligatorias: " + String.join(", ", faltantes));
+            }
+        }
+
+        private void procesarLote() {
+            List<FilaCruda> lote = pendientes;
+            pendientes = new ArrayList<>(tamanoLote);
+
+            // La validación no toca la base: se reparte entre los núcleos
+            List<FilaValidada> validadas = lote.parallelStream().map(this::validar).toList();
+
+            Map<String, FilaValidada> porCodigo = new LinkedHashMap<>();
+            for (FilaValidada fila : validadas) {
+                if (fila.error() != null) {
+                    error(fila.numero(), fila.codigo(), fila.error());
+                } else if (!codigosVistos.add(fila.codigo())) {
+                    error(fila.numero(), fila.codigo(), "Código repetido en el archivo");
+                } else {
+                    porCodigo.put(fila.codigo(), fila);
+                }
+            }
+            if (porCodigo.isEmpty()) {
+                return;
+            }
+
+            // Una lectura por lote: qué códigos existen y los campos que alimentan los términos de búsqueda
+            Query existentesQuery = Query.query(Criteria.where("codigo").in(porCodigo.keySet()));
+            existentesQuery.fields().include("codigo", "descripcion", "principiosActivos");
+            Map<String, Producto> existentes = new HashMap<>();
+            for (Producto existente : mongoTemplate.find(existentesQuery, Producto.class)) {
+                existentes.put(existente.getCodigo(), existente);
+            }
+
+            List<FilaValidada> filas = new ArrayList<>(porCodigo.values());
+            for (FilaValidada fila : filas) {
+                Producto producto = fila.producto();
+                Producto existente = existentes.get(fila.codigo());
+                if (existente != null) {
+                    if (producto.getDescripcion() == null) {
+                        producto.setDescripcion(existente.getDescripcion());
+                    }
+                    if (producto.getPrincipiosActivos() == null) {
+                        producto.setPrincipiosActivos(existente.getPrincipiosActivos());
+                    }
+                }
+                producto.actualizarTerminosBusqueda();
+            }
+
+            if (simulacion) {
+                resultado.setActualizados(resultado.getActualizados() + existentes.size());
+                resultado.setNuevos(resultado.getNuevos() + filas.size() - existentes.size());
+                return;
+            }
+            escribir(filas);
+        }
+
+        private void escribir(List<FilaValidada> filas) {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Producto.class);
+            for (FilaValidada fila : filas) {
+                bulk.upsert(Query.query(Criteria.where("codigo").is(fila.codigo())), actualizacion(fila.producto()));
+            }
+
+            BulkWriteResult escritura;
+            Set<Integer> fallidas = new HashSet<>();
+            try {
+                escritura = bulk.execute();
+            } catch (BulkOperationException e) {
+                // Sin orden: las demás operaciones del lote sí se aplicaron
+                escritura = e.getResult();
+                for (BulkWriteError fallo : e.getErrors()) {
+                    FilaValidada fila = filas.get(fallo.getIndex());
+                    fallidas.add(fallo.getIndex());
+                    error(fila.numero(), fila.codigo(), "Error al guardar: " + fallo.getMessage());
+                }
+            }
+            List<String> codigos = new ArrayList<>(filas.size());
+            for (int i = 0; i < filas.size(); i++) {
+                if (fallidas.contains(i)) {
+                    continue;
+                }
+                codigos.add(filas.get(i).codigo());
+            }
+            // Un solo mensaje de invalidación para todo el lote
+            cacheLocal.invalidarCodigos(codigos);
+
+            resultado.setNuevos(resultado.getNuevos() + escritura.getUpserts().size());
+            resultado.setActualizados(resultado.getActualizados() + codigos.size() - escritura.getUpserts().size());
+        }
+
+        private FilaValidada validar(FilaCruda fila) {
+            String codigo = texto(fila, "codigo");
+            try {
+                if (codigo == null) {
+                    throw new IllegalArgumentException("El código del producto es obligatorio");
+                }
+                Producto producto = new Producto();
+                producto.setCodigo(codigo);
+                producto.setNombre(texto(fila, "nombre"));
+                if (producto.getNombre() == null) {
+                    throw new IllegalArgumentException("El nombre del producto es obligatorio");
+                }
+                Double precio = numero(fila, "precio");
+                if (precio == null || precio <= 0) {
+                    throw new IllegalArgumentException("El precio debe ser mayor a 0");
+                }
+                producto.setPrecio(precio);
+                Double cantidad = numero(fila, "cantidad");
+                if (cantidad == null || cantidad < 0 || cantidad != Math.rint(cantidad)) {
+                    throw new IllegalArgumentException("La cantidad debe ser un entero no negativo");
+                }
+                producto.setCantidad(cantidad.intValue());
+                producto.setCategoria(texto(fila, "categoria"));
+                if (producto.getCategoria() == null) {
+                    throw new IllegalArgumentException("La categoría es obligatoria");
+                }
+                Double costo = numero(fila, "costoCompra");
+                if (costo != null) {
+                    if (costo < 0) {
+                        throw new IllegalArgumentException("El costo de compra no puede ser negativo");
+                    }
+                    producto.setCostoCompra(costo);
+                }
+                producto.setDescripcion(texto(fila, "descripcion"));
+                producto.setPresentacion(texto(fila, "presentacion"));
+                producto.setConcentracion(texto(fila, "concentracion"));
+                producto.setLote(texto(fila, "lote"));
+                producto.setPrincipiosActivos(texto(fila, "principiosActivos"));
+                producto.setProveedorId(texto(fila, "proveedorId"));
+                producto.setFechaVencimiento(fecha(fila, "fechaVencimiento"));
+                return new FilaValidada(fila.numero(), codigo, producto, null);
+            } catch (IllegalArgumentException e) {
+                return new FilaValidada(fila.numero(), codigo, null, e.getMessage());
+            }
+        }
+
+        // $set solo de lo que trae la fila; costo y opcionales vacíos conservan el valor actual
+        private Update actualizacion(Producto producto) {
+            Update update = new Update()
+                    .set("nombre", producto.getNombre())
+                    .set("precio", producto.getPrecio())
+                    .set("categoria", producto.getCategoria())
+                    .set("terminosBusqueda", producto.getTerminosBusqueda())
+                    .currentDate("fechaActualizacion");
+            if (reemplazarStock) {
+                update.set("cantidad", producto.getCantidad());
+            } else {
+                // Stock inicial: en los existentes no se pisan las ventas hechas desde que se armó el archivo
+                update.setOnInsert("cantidad", producto.getCantidad());
+            }
+            if (producto.getCostoCompra() > 0) {
+                update.set("costoCompra", producto.getCostoCompra());
+            }
+            Map<String, Object> opcionales = new LinkedHashMap<>();
+            opcionales.put("descripcion", producto.getDescripcion());
+            opcionales.put("presentacion", producto.getPresentacion());
+            opcionales.put("concentracion", producto.getConcentracion());
+            opcionales.put("lote", producto.getLote());
+            opcionales.put("principiosActivos", producto.getPrincipiosActivos());
+            opcionales.put("proveedorId", producto.getProveedorId());
+            opcionales.put("fechaVencimiento", producto.getFechaVencimiento());
+            opcionales.forEach((campo, valor) -> {
+                if (valor != null) {
+                    update.set(campo, valor);
+                }
+            });
+            return update;
+        }
+
+        private void error(int fila, String codigo, String mensaje) {
+            resultado.setConError(resultado.getConError() + 1);
+            if (resultado.getErrores().size() < maxErrores) {
+                resultado.getErrores().add(new ErrorFila(fila, codigo, mensaje));
+            } else {
+                resultado.setErroresOmitidos(resultado.getErroresOmitidos() + 1);
+            }
+        }
+
+        private String texto(FilaCruda fila, String campo) {
+            Integer indice = columnas.get(campo);
+            if (indice == null || indice >= fila.valores().size() || fila.valores().get(indice) == null) {
+                return null;
+            }
+            String valor = fila.valores().get(indice).trim();
+            return valor.isEmpty() ? null : valor;
+        }
+
+        private Double numero(FilaCruda fila, String campo) {
+            String valor = texto(fila, campo);
+            if (valor == null) {
+                return null;
+            }
+            try {
+                return parsearNumero(valor);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(e.getMessage() + " en " + campo + ": '" + valor + "'");
+            }
+        }
+
+        private Date fecha(FilaCruda fila, String campo) {
+            String valor = texto(fila, campo);
+            if (valor == null) {
+                return null;
+            }
+            for (String formato : FORMATOS_FECHA) {
+                SimpleDateFormat parser = new SimpleDateFormat(formato);
+                parser.setLenient(false);
+                try {
+                    return parser.parse(valor);
+                } catch (ParseException ignored) {
+                    // se prueba el siguiente formato
+                }
+            }
+            throw new IllegalArgumentException("Fecha inválida en " + campo + " (use yyyy-MM-dd): '" + valor + "'");
+        }
+    }
+
+    /**
+     * Número con separadores de miles en cualquiera de los dos estilos: 1234.5, 1234,5,
+     * 1.234,50, 1,234.50, 1.234.567. Con los dos separadores el último es el decimal. Con uno
+     * solo seguido de exactamente tres dígitos y hasta tres delante ("1.000", "2,500") no se sabe
+     * si es de miles o decimal: se rechaza para que la fila no se importe con un valor equivocado.
+     */
+    static double parsearNumero(String valor) {
+        String limpio = valor.replace(" ", "").replace("\u00A0", "");
+        if (ENTERO.matcher(limpio).matches()) {
+            return Double.parseDouble(limpio);
+        }
+        if (UN_SEPARADOR.matcher(limpio).matches()) {
+            if (AMBIGUO.matcher(limpio).matches()) {
+                throw new IllegalArgumentException("Valor ambiguo (use 1000 o 1.000,00)");
+            }
+            return Double.parseDouble(limpio.replace(',', '.'));
+        }
+        if (MILES_CON_PUNTO.matcher(limpio).matches()) {
+            return Double.parseDouble(limpio.replace(".", "").replace(',', '.'));
+        }
+        if (MILES_CON_COMA.matcher(limpio).matches()) {
+            return Double.parseDouble(limpio.replace(",", ""));
+        }
+        throw new IllegalArgumentException("Valor numérico inválido");
+    }
+
+    // Celdas numéricas del XLSX: el valor guardado y no el texto con el formato de la celda
+    // ("1,000" con #,##0 sería ambiguo). Las fechas sí pasan por el formato.
+    private static final class ValoresXlsx extends DataFormatter {
+
+        ValoresXlsx() {
+            super(Locale.ROOT);
+        }
+
+        @Override
+        public String formatRawCellContents(double valor, int indiceFormato, String formato) {
+            if (DateUtil.isADateFormat(indiceFormato, formato)) {
+                return super.formatRawCellContents(valor, indiceFormato, formato);
+            }
+            String texto = BigDecimal.valueOf(valor).stripTrailingZeros().toPlainString();
+            // 12.125 se escribe 12.1250 para que parsearNumero no lo tome por separador de miles
+            return TRES_DECIMALES.matcher(texto).matches() ? texto + "0" : texto;
+        }
+    }
+
+    private static String normalizarCabecera(String cabecera) {
+        return TerminosBusqueda.normalizar(cabecera).replaceAll("[^a-z0-9]", "");
+    }
+}
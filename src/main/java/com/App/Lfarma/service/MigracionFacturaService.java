@@ -0,0 +1,233 @@
+package com.App.Lfarma.service;
+
+import com.App.Lfarma.entity.Cliente;
+import com.App.Lfarma.entity.Factura;
+import com.App.Lfarma.entity.Producto;
+import com.App.Lfarma.util.TerminosBusqueda;
+import com.mongodb.DBRef;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reescribe las facturas guardadas con el formato anterior (DBRef a clientes y productos)
+ * al formato embebido: resumen del cliente y copia del producto en cada detalle.
+ * También completa los terminosBusqueda de las facturas que aún no los tienen.
+ * Se ejecuta en segundo plano al iniciar la aplicación y procesa la colección por lotes.
+ */
+@Service
+public class MigracionFacturaService {
+
+    private static final Logger log = LoggerFactory.getLogger(MigracionFacturaService.class);
+
+    private static final int TAMANO_LOTE = 500;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${lfarma.facturas.migracion.habilitada:true}")
+    private boolean migracionHabilitada;
+
+    private final AtomicBoolean enEjecucion = new AtomicBoolean(false);
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciarMigracionEnSegundoPlano() {
+        if (!migracionHabilitada) {
+            log.info("ℹ️ Migración de facturas deshabilitada por configuración");
+            return;
+        }
+
+        Thread hilo = new Thread(() -> {
+            try {
+                migrarFacturas();
+            } catch (Exception e) {
+                log.error("❌ Error en la migración de facturas: {}", e.getMessage(), e);
+            }
+        }, "migracion-facturas");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    // Retorna la cantidad de facturas reescritas
+    public int migrarFacturas() {
+        if (!enEjecucion.compareAndSet(false, true)) {
+            log.info("ℹ️ La migración de facturas ya está en ejecución");
+            return 0;
+        }
+
+        long inicio = System.currentTimeMillis();
+        int migradas = 0;
+
+        try {
+            MongoCollection<Document> facturas = coleccion(Factura.class);
+            Bson pendientes = Filters.or(
+                    Filters.exists("cliente.$ref"),
+                    Filters.exists("detalles.producto.$ref"),
+                    Filters.exists("terminosBusqueda", false));
+
+            long total = facturas.countDocuments(pendientes);
+            if (total == 0) {
+                log.info("✅ No hay facturas en formato anterior para migrar");
+                return 0;
+            }
+            log.info("🚚 Migrando {} facturas al formato embebido...", total);
+
+            // Se avanza por _id: una factura que no se pueda reescribir (p. ej. un $ref que no es DBRef)
+            // sigue coincidiendo con el filtro y, leyendo siempre desde el inicio, volvería en cada lote
+            Object ultimo = null;
+            List<Document> lote;
+            do {
+                Bson filtro = ultimo == null ? pendientes : Filters.and(pendientes, Filters.gt("_id", ultimo));
+                lote = facturas.find(filtro).sort(Sorts.ascending("_id")).limit(TAMANO_LOTE).into(new ArrayList<>());
+                if (!lote.isEmpty()) {
+                    migradas += migrarLote(facturas, lote);
+                    ultimo = lote.get(lote.size() - 1).get("_id");
+                    log.info("📦 Facturas migradas: {}/{}", migradas, total);
+                }
+            } while (lote.size() == TAMANO_LOTE);
+
+            long sinMigrar = facturas.countDocuments(pendientes);
+            if (sinMigrar > 0) {
+                log.warn("⚠️ {} facturas siguen en formato anterior y no se pudieron migrar (referencias inválidas)", sinMigrar);
+            }
+            log.info("✅ Migración de facturas completada: {} facturas en {} ms",
+                    migradas, System.currentTimeMillis() - inicio);
+            return migradas;
+        } finally {
+            enEjecucion.set(false);
+        }
+    }
+
+    private int migrarLote(MongoCollection<Document> facturas, List<Document> lote) {
+        Set<Object> idsClientes = new HashSet<>();
+        Set<Object> idsProductos = new HashSet<>();
+
+        for (Document factura : lote) {
+            if (factura.get("cliente") instanceof DBRef ref) {
+                idsClientes.add(ref.getId());
+            }
+            for (Document detalle : detalles(factura)) {
+                if (detalle.get("producto") instanceof DBRef ref) {
+                    idsProductos.add(ref.getId());
+                }
+            }
+        }
+
+        Map<Object, Document> clientes = buscarPorIds(coleccion(Cliente.class), idsClientes,
+                "codigo", "nombre", "identificacion", "email", "telefono", "direccion");
+        Map<Object, Document> productos = buscarPorIds(coleccion(Producto.class), idsProductos,
+                "codigo", "nombre", "categoria", "imagen", "precio", "costoCompra");
+
+        List<WriteModel<Document>> escrituras = new ArrayList<>(lote.size());
+        for (Document factura : lote) {
+            List<Bson> cambios = new ArrayList<>();
+
+            Object cliente = factura.get("cliente");
+            if (cliente instanceof DBRef ref) {
+                cliente = resumenCliente(ref.getId(), clientes.get(ref.getId()));
+                cambios.add(Updates.set("cliente", cliente));
+            }
+            if (!factura.containsKey("terminosBusqueda")) {
+                cambios.add(Updates.set("terminosBusqueda", terminosBusqueda(factura.get("_id"), cliente)));
+            }
+
+            List<Document> detalles = detalles(factura);
+            boolean detallesCambiados = false;
+            for (Document detalle : detalles) {
+                if (detalle.get("producto") instanceof DBRef ref) {
+                    detalle.put("producto", copiaProducto(ref.getId(), productos.get(ref.getId()), detalle));
+                    detallesCambiados = true;
+                }
+            }
+            if (detallesCambiados) {
+                cambios.add(Updates.set("detalles", detalles));
+            }
+
+            if (!cambios.isEmpty()) {
+                escrituras.add(new UpdateOneModel<>(Filters.eq("_id", factura.get("_id")), Updates.combine(cambios)));
+            }
+        }
+
+        if (escrituras.isEmpty()) {
+            return 0;
+        }
+        return facturas.bulkWrite(escrituras, new BulkWriteOptions().ordered(false)).getModifiedCount();
+    }
+
+    private Document resumenCliente(Object id, Document cliente) {
+        Document resumen = new Document("_id", id);
+        if (cliente == null) {
+            log.warn("⚠️ Cliente {} ya no existe, se conserva solo su ID en la factura", id);
+            return resumen;
+        }
+        for (String campo : List.of("codigo", "nombre", "identificacion", "email", "telefono", "direccion")) {
+            resumen.append(campo, cliente.get(campo));
+        }
+        return resumen;
+    }
+
+    private List<String> terminosBusqueda(Object id, Object cliente) {
+        if (cliente instanceof Document resumen) {
+            return TerminosBusqueda.generar(String.valueOf(id), resumen.getString("codigo"),
+                    resumen.getString("identificacion"), resumen.getString("nombre"));
+        }
+        return TerminosBusqueda.generar(String.valueOf(id));
+    }
+
+    private Document copiaProducto(Object id, Document producto, Document detalle) {
+        Document copia = new Document("_id", id);
+        if (producto == null) {
+            // Producto eliminado: se usa el precio registrado en la línea como mejor aproximación
+            log.warn("⚠️ Producto {} ya no existe, se conserva solo el precio de la línea", id);
+            copia.append("precio", detalle.get("precioUnitario"));
+            return copia;
+        }
+        for (String campo : List.of("codigo", "nombre", "categoria", "imagen", "precio", "costoCompra")) {
+            copia.append(campo, producto.get(campo));
+        }
+        return copia;
+    }
+
+    private Map<Object, Document> buscarPorIds(MongoCollection<Document> coleccion, Set<Object> ids, String... campos) {
+        Map<Object, Document> resultado = new HashMap<>();
+        if (ids.isEmpty()) {
+            return resultado;
+        }
+        for (Document doc : coleccion.find(Filters.in("_id", ids)).projection(Projections.include(campos))) {
+            resultado.put(doc.get("_id"), doc);
+        }
+        return resultado;
+    }
+
+    private List<Document> detalles(Document factura) {
+        List<Document> detalles = factura.getList("detalles", Document.class);
+        return detalles != null ? detalles : List.of();
+    }
+
+    private MongoCollection<Document> coleccion(Class<?> entidad) {
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(entidad));
+    }
+}
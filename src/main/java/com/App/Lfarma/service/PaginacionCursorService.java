@@ -0,0 +1,147 @@
+package com.App.Lfarma.service;
+
+import com.App.Lfarma.DTO.PaginaCursorDTO;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Paginación por cursor (keyset) sobre Mongo. En lugar de skip(n), cada página continúa
+ * desde el último documento de la anterior: (campo, _id) &lt; (valor, id) en el orden pedido.
+ * Con un índice sobre (campo, _id) la página 1000 cuesta lo mismo que la primera.
+ * El token "after" es opaco para el cliente (Base64 del último valor y su id).
+ */
+@Service
+public class PaginacionCursorService {
+
+    private static final Logger log = LoggerFactory.getLogger(PaginacionCursorService.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Orden estable de la paginación: campo (opcional) y _id como desempate.
+     * Los valores del campo deben ser fechas, textos o números.
+     */
+    public record Orden<T>(String campo, Sort.Direction direccion, Function<T, Object> valor, Function<T, String> id) {
+
+        public static <T> Orden<T> porId(Function<T, String> id) {
+            return new Orden<>(null, Sort.Direction.ASC, null, id);
+        }
+
+        public static <T> Orden<T> recientesPrimero(String campo, Function<T, Object> valor, Function<T, String> id) {
+            return new Orden<>(campo, Sort.Direction.DESC, valor, id);
+        }
+
+        public Sort sort() {
+            Sort porId = Sort.by(direccion, "_id");
+            return campo == null ? porId : Sort.by(direccion, campo).and(porId);
+        }
+    }
+
+    private record Cursor(Object valor, Object id) {}
+
+    // Sin "after" (nulo o vacío) retorna la primera página; el total solo se cuenta si se pide
+    public <T> PaginaCursorDTO<T> buscar(Class<T> tipo, Query filtro, Orden<T> orden,
+                                         String after, int size, boolean conTotal) {
+        long inicio = System.nanoTime();
+        Document condicion = filtro.getQueryObject();
+        if (after != null && !after.isBlank()) {
+            Document continuacion = continuacion(orden, decodificar(orden, after));
+            condicion = condicion.isEmpty() ? continuacion : new Document("$and", List.of(condicion, continuacion));
+        }
+
+        // Se lee un documento extra para saber si hay más páginas sin contar
+        List<T> contenido = mongoTemplate.find(new BasicQuery(condicion).with(orden.sort()).limit(size + 1), tipo);
+        boolean hayMas = contenido.size() > size;
+        if (hayMas) {
+            contenido = contenido.subList(0, size);
+        }
+        String siguiente = hayMas ? cursorDe(orden, contenido.get(contenido.size() - 1)) : null;
+        Long total = conTotal ? mongoTemplate.count(new BasicQuery(filtro.getQueryObject()), tipo) : null;
+
+        log.debug("📄 Página por cursor de {}: {} elementos, hayMas={} en {} ms",
+                tipo.getSimpleName(), contenido.size(), hayMas, (System.nanoTime() - inicio) / 1_000_000);
+        return new PaginaCursorDTO<>(contenido, siguiente, hayMas, total, size);
+    }
+
+    // Token para continuar después de un elemento (p. ej. el último de una página por número)
+    public <T> String cursorDe(Orden<T> orden, T ultimo) {
+        String id = orden.id().apply(ultimo);
+        String token;
+        if (orden.campo() == null) {
+            token = "i|" + id;
+        } else {
+            Object valor = orden.valor().apply(ultimo);
+            if (valor == null) {
+                token = "-|" + id;
+            } else if (valor instanceof Date fecha) {
+                token = "d|" + id + "|" + fecha.getTime();
+            } else if (valor instanceof Number numero) {
+                token = "n|" + id + "|" + numero.doubleValue();
+            } else {
+                token = "s|" + id + "|" + valor;
+            }
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cursor decodificar(Orden<?> orden, String after) {
+        try {
+            String[] partes = new String(Base64.getUrlDecoder().decode(after.trim()), StandardCharsets.UTF_8).split("\\|", 3);
+            String tipo = partes[0];
+            if (partes.length < 2 || partes[1].isEmpty() || tipo.equals("i") != (orden.campo() == null)) {
+                throw new IllegalArgumentException("Cursor de paginación inválido");
+            }
+            Object id = ObjectId.isValid(partes[1]) ? new ObjectId(partes[1]) : partes[1];
+            Object valor = switch (tipo) {
+                case "i", "-" -> null;
+                case "d" -> new Date(Long.parseLong(partes[2]));
+                case "n" -> Double.parseDouble(partes[2]);
+                case "s" -> partes[2];
+                default -> throw new IllegalArgumentException("Cursor de paginación inválido");
+            };
+            return new Cursor(valor, id);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            // NumberFormatException es IllegalArgumentException: se unifica el mensaje
+            throw new IllegalArgumentException("Cursor de paginación inválido");
+        }
+    }
+
+    // Documentos posteriores al cursor; los nulos van al final en orden descendente y al inicio en ascendente
+    private static Document continuacion(Orden<?> orden, Cursor cursor) {
+        boolean descendente = orden.direccion() == Sort.Direction.DESC;
+        String despues = descendente ? "$lt" : "$gt";
+        Document porId = new Document("_id", new Document(despues, cursor.id()));
+        if (orden.campo() == null) {
+            return porId;
+        }
+
+        String campo = orden.campo();
+        if (cursor.valor() == null) {
+            Document mismosNulos = new Document(campo, null).append("_id", new Document(despues, cursor.id()));
+            return descendente
+                    ? mismosNulos
+                    : new Document("$or", List.of(new Document(campo, new Document("$ne", null)), mismosNulos));
+        }
+
+        Document mismoValor = new Document(campo, cursor.valor()).append("_id", new Document(despues, cursor.id()));
+        Document siguientesValores = new Document(campo, new Document(despues, cursor.valor()));
+        return descendente
+                ? new Document("$or", List.of(siguientesValores, mismoValor, new Document(campo, null)))
+                : new Document("$or", List.of(siguientesValores, mismoValor));
+    }
+}
@@ -4,6 +4,12 @@ import com.App.Lfarma.entity.PrediccionDemanda;
 import com.App.Lfarma.entity.Producto;
 import com.App.Lfarma.DTO.PrediccionDemandaDTO;
 import com.App.Lfarma.repository.PrediccionDemandaRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
@@ -12,26 +18,47 @@ import weka.classifiers.Classifier;
 import weka.classifiers.trees.J48;
 import weka.core.DenseInstance;
 import weka.core.Instances;
+import weka.core.Utils;
 import weka.core.converters.ConverterUtils;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 import jakarta.annotation.PostConstruct;
 
 @Service
 public class PrediccionDemandaService {
 
+    private static final Logger log = LoggerFactory.getLogger(PrediccionDemandaService.class);
+
+    private static final FiltroProductosDataset FILTRO_DATASET = new FiltroProductosDataset();
+
     @Autowired
     private ProductoService productoService;
 
     @Autowired
     private PrediccionDemandaRepository prediccionDemandaRepository;
 
-    private Classifier classifier;
-    private Instances dataStructure;
-    private boolean modeloTrained = false;
+    @Autowired
+    private RegistroModeloService registroModeloService;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    // Se reemplaza completo al cargar o entrenar; la clasificación nunca espera al entrenamiento
+    private final AtomicReference<RegistroModeloService.ModeloActivo> modelo = new AtomicReference<>();
+
+    // Instancia reutilizable por hilo, ligada al modelo con el que se creó
+    private final ThreadLocal<BufferClasificacion> buffers = new ThreadLocal<>();
+
+    private volatile boolean entrenando = false;
+
+    // Lock en lugar de synchronized: el entrenamiento lee el dataset y escribe el registro en Mongo,
+    // y un hilo virtual bloqueado dentro de un monitor deja fijado su hilo portador (Java 21)
+    private final ReentrantLock entrenamiento = new ReentrantLock();
 
     /**
      * ✅ CORREGIDO: Limpieza automática al iniciar la aplicación
@@ -39,129 +66,59 @@ public class PrediccionDemandaService {
     @PostConstruct
     public void init() {
         try {
-            System.out.println("🚀 Inicializando servicio de predicciones...");
+            log.info("🚀 Inicializando servicio de predicciones...");
             // ✅ CORRECCIÓN: Solo limpiar predicciones, no productos (para evitar eliminar datos reales)
             limpiarPrediccionesNoReales();
-            // Entrenar modelo al iniciar
-            entrenarModeloSimple();
-        } catch (Exception e) {
-            System.err.println("⚠️ Error en inicialización: " + e.getMessage());
-        }
-    }
-
-    /**
-     * ✅ CORREGIDO: Entrenar modelo de forma robusta
-     */
-    public synchronized void entrenarModelo() {
-        try {
-            System.out.println("🔧 Iniciando entrenamiento del modelo Weka...");
-
-            // Cargar desde classpath
-            ClassPathResource resource = new ClassPathResource("farmacia_ventas.arff");
-            InputStream inputStream = resource.getInputStream();
-
-            ConverterUtils.DataSource source = new ConverterUtils.DataSource(inputStream);
-            Instances data = source.getDataSet();
-
-            if (data == null || data.numInstances() == 0) {
-                System.err.println("❌ Dataset vacío o no válido");
-                throw new RuntimeException("Dataset vacío o no válido");
-            }
-
-            System.out.println("📊 Dataset cargado: " + data.numInstances() + " instancias");
-
-            // Configurar atributo clase (último)
-            if (data.classIndex() == -1) {
-                data.setClassIndex(data.numAttributes() - 1);
-            }
-            System.out.println("🎯 Atributo clase: " + data.classAttribute().name());
-
-            // Entrenar clasificador J48
-            classifier = new J48();
-
-            // ✅ CORRECCIÓN: Configurar opciones más seguras
-            String[] options = {"-C", "0.25", "-M", "2"}; // Opciones más conservadoras
-            ((J48) classifier).setOptions(options);
-
-            classifier.buildClassifier(data);
-
-            // Guardar estructura para nuevas instancias
-            this.dataStructure = new Instances(data, 0);
-            this.modeloTrained = true;
-
-            System.out.println("✅ Modelo entrenado exitosamente");
-            System.out.println("📋 Modelo: " + classifier.getClass().getSimpleName());
-
+            // El modelo se carga desde el registro en ModeloPrediccionConfig (sin entrenar dos veces)
         } catch (Exception e) {
-            System.err.println("❌ Error entrenando modelo: " + e.getMessage());
-            e.printStackTrace();
-            // No lanzar excepción, permitir predicción por defecto
+            log.warn("⚠️ Error en inicialización: {}", e.getMessage());
         }
     }
 
     /**
-     * ✅ CORREGIDO: Predecir demanda para un producto
+     * ✅ Clasificar un producto sin persistir; el lote de predicciones guarda los resultados
      */
-    public PrediccionDemanda predecirDemanda(Producto producto) {
+    @Timed("lfarma.modelo.clasificacion")
+    public PrediccionDemanda clasificar(Producto producto) {
         // ✅ VALIDACIÓN: Solo predecir para productos reales de la BD
         if (!esProductoReal(producto)) {
-            System.out.println("⚠️ Producto excluido (dataset entrenamiento): " + producto.getNombre());
             return null;
         }
 
         // ✅ CORRECCIÓN: Verificar datos del producto
         if (producto.getPrecio() <= 0 || producto.getCantidad() < 0) {
-            System.out.println("⚠️ Producto con datos inválidos: " + producto.getNombre());
+            log.debug("⚠️ Producto con datos inválidos: {}", producto.getNombre());
             return crearPrediccionPorDefecto(producto);
         }
 
-        if (!modeloTrained) {
-            try {
-                entrenarModelo();
-                // Si aún no está entrenado después del intento, usar predicción por defecto
-                if (!modeloTrained) {
-                    return crearPrediccionPorDefecto(producto);
-                }
-            } catch (Exception e) {
-                System.err.println("⚠️ Usando predicción por defecto por error en entrenamiento");
-                return crearPrediccionPorDefecto(producto);
-            }
+        // Mientras el modelo se carga o entrena se usan las reglas por defecto
+        RegistroModeloService.ModeloActivo actual = modelo.get();
+        if (actual == null) {
+            return crearPrediccionPorDefecto(producto);
         }
 
         try {
-            // ✅ CORRECCIÓN: Validar estructura de datos
-            if (dataStructure == null) {
-                System.err.println("❌ Estructura de datos no inicializada");
-                return crearPrediccionPorDefecto(producto);
-            }
-
-            // Crear nueva instancia para predicción
-            DenseInstance instance = new DenseInstance(dataStructure.numAttributes());
-            instance.setDataset(dataStructure);
-
-            // ✅ CORRECCIÓN: Manejar índices de forma segura
-            try {
-                instance.setValue(0, producto.getPrecio());        // precio
-                instance.setValue(1, producto.getCantidad());      // cantidad en stock
-                instance.setValue(2, producto.getPrecio());        // precio_unitario
-            } catch (Exception e) {
-                System.err.println("❌ Error estableciendo valores de instancia: " + e.getMessage());
-                return crearPrediccionPorDefecto(producto);
-            }
-
-            // Realizar predicción
-            double prediction = classifier.classifyInstance(instance);
-            String nivelDemanda = dataStructure.classAttribute().value((int) prediction);
-
-            // Calcular confianza
+            Classifier classifier = actual.getClassifier();
+            Instances estructura = actual.getEstructura();
+
+            // Se escriben los valores directamente en el arreglo que envuelve la instancia del hilo;
+            // DenseInstance.setValue copiaría el arreglo completo en cada llamada
+            BufferClasificacion buffer = bufferPara(actual);
+            double[] valores = buffer.valores;
+            valores[0] = producto.getPrecio();        // precio
+            valores[1] = producto.getCantidad();      // cantidad en stock
+            valores[2] = producto.getPrecio();        // precio_unitario
+            DenseInstance instance = buffer.instancia;
+
+            // Una sola pasada por el árbol: la clase es la de mayor probabilidad (igual que classifyInstance)
             double[] distribution = classifier.distributionForInstance(instance);
-            double confianza = distribution[(int) prediction] * 100;
+            int prediction = Utils.maxIndex(distribution);
+            String nivelDemanda = estructura.classAttribute().value(prediction);
 
-            System.out.println("🔮 " + producto.getNombre() + ": " + nivelDemanda +
-                    " (" + String.format("%.1f", confianza) + "%)");
+            // Calcular confianza
+            double confianza = distribution[prediction] * 100;
 
-            // Crear y guardar predicción
-            PrediccionDemanda prediccion = new PrediccionDemanda(
+            return new PrediccionDemanda(
                     producto.getId(),
                     producto.getCodigo(),
                     producto.getNombre(),
@@ -172,82 +129,63 @@ public class PrediccionDemandaService {
                     confianza
             );
 
-            return prediccionDemandaRepository.save(prediccion);
-
         } catch (Exception e) {
-            System.err.println("❌ Error en predicción para " + producto.getNombre() + ": " + e.getMessage());
+            log.error("❌ Error en predicción para {}: {}", producto.getNombre(), e.getMessage());
             return crearPrediccionPorDefecto(producto);
         }
     }
 
+    private BufferClasificacion bufferPara(RegistroModeloService.ModeloActivo actual) {
+        BufferClasificacion buffer = buffers.get();
+        if (buffer == null || buffer.modelo != actual) {
+            buffer = new BufferClasificacion(actual);
+            buffers.set(buffer);
+        }
+        return buffer;
+    }
+
+    private static final class BufferClasificacion {
+        private final RegistroModeloService.ModeloActivo modelo;
+        private final double[] valores;
+        private final DenseInstance instancia;
+
+        private BufferClasificacion(RegistroModeloService.ModeloActivo modelo) {
+            Instances estructura = modelo.getEstructura();
+            this.modelo = modelo;
+            this.valores = new double[estructura.numAttributes()];
+            this.valores[estructura.classIndex()] = Utils.missingValue();
+            // Este constructor conserva la referencia al arreglo (no lo copia)
+            this.instancia = new DenseInstance(1.0, valores);
+            this.instancia.setDataset(estructura);
+        }
+    }
+
+    public boolean isModeloEntrenado() {
+        return modelo.get() != null;
+    }
+
+    public boolean isEntrenando() {
+        return entrenando;
+    }
+
     /**
      * ✅ CORREGIDO Y MEJORADO: Validar si es un producto real de la BD (no del dataset)
      */
     public boolean esProductoReal(Producto producto) {
         if (producto == null) return false;
 
-        // Validaciones básicas de campos obligatorios
-        if (producto.getCodigo() == null || producto.getCodigo().trim().isEmpty()) {
-            return false;
-        }
-        if (producto.getNombre() == null || producto.getNombre().trim().isEmpty()) {
-            return false;
+        // El veredicto se guarda en el producto y se recalcula solo si cambia el nombre o el código
+        Boolean cacheado = producto.veredictoFiltro();
+        if (cacheado != null) {
+            return cacheado;
         }
 
-        // ✅ CORRECCIÓN: Excluir productos con IDs muy cortos o genéricos
-        if (producto.getCodigo().length() <= 3) {
-            return false;
-        }
-
-        // ✅ EXCLUSIÓN MEJORADA: Detectar productos del dataset ARFF
-        String nombreLower = producto.getNombre().toLowerCase().trim();
-        String codigoLower = producto.getCodigo().toLowerCase().trim();
-
-        // Patrones que indican que es del dataset de entrenamiento
-        boolean esDelDataset =
-                // Patrones comunes en datasets de ejemplo
-                nombreLower.contains("ejemplo") ||
-                        nombreLower.contains("test") ||
-                        nombreLower.contains("demo") ||
-                        nombreLower.contains("muestra") ||
-                        nombreLower.contains("sample") ||
-                        nombreLower.contains("dataset") ||
-                        nombreLower.contains("training") ||
-                        nombreLower.contains("entrenamiento") ||
-
-                        // Patrones en códigos
-                        codigoLower.contains("test") ||
-                        codigoLower.contains("demo") ||
-                        codigoLower.contains("ejemplo") ||
-                        codigoLower.contains("sample") ||
-                        codigoLower.contains("item") ||
-
-                        // ✅ CRÍTICO: Excluir productos con nombres genéricos del dataset
-                        nombreLower.matches(".*\\d+mg.*") || // Ej: "medicamento123 500mg"
-                        nombreLower.matches(".*\\d+\\.\\d+.*") || // Ej: "producto 12.5"
-                        nombreLower.matches(".*item\\s*\\d+.*") || // Ej: "item 123"
-                        codigoLower.matches(".*\\d{5,}.*") || // Códigos con muchos números
-                        nombreLower.equals("jggmom") || // Este aparece específicamente en tus logs
-                        nombreLower.contains("jggmom"); // Variaciones del mismo
-
-        // ✅ EXCLUSIÓN ESPECÍFICA: Productos que sabemos son del dataset
-        String[] productosDataset = {
-                "jggmom", // Este aparece en tus logs
-                "item", "producto", "medicamento", "farmacia", "venta", "arff"
-        };
-
-        for (String patron : productosDataset) {
-            if (nombreLower.contains(patron) || codigoLower.contains(patron)) {
-                esDelDataset = true;
-                break;
-            }
-        }
-
-        // Solo incluir productos que NO son del dataset
-        boolean esReal = !esDelDataset;
+        // ✅ EXCLUSIÓN MEJORADA: Detectar productos del dataset ARFF (patrones precompilados)
+        boolean esReal = FILTRO_DATASET.esReal(producto.getNombre(), producto.getCodigo());
+        producto.guardarVeredictoFiltro(esReal);
 
         if (!esReal) {
-            System.out.println("🚫 Producto excluido (dataset): " + producto.getNombre() + " - " + producto.getCodigo());
+            log.debug("🚫 Producto excluido (dataset): {} - {}", producto.getNombre(), producto.getCodigo());
         }
 
         return esReal;
@@ -287,7 +225,7 @@ public class PrediccionDemandaService {
             confianza = 60.0;
         }
 
-        PrediccionDemanda prediccion = new PrediccionDemanda(
+        return new PrediccionDemanda(
                 producto.getId(),
                 producto.getCodigo(),
                 producto.getNombre(),
@@ -297,71 +235,9 @@ public class PrediccionDemandaService {
                 nivelDemanda,
                 confianza
         );
-
-        // ✅ CORRECCIÓN: Solo guardar si es significativo
-        if (confianza > 50) {
-            try {
-                return prediccionDemandaRepository.save(prediccion);
-            } catch (Exception e) {
-                System.err.println("❌ Error guardando predicción por defecto: " + e.getMessage());
-                return prediccion; // Retornar sin guardar
-            }
-        }
-
-        return prediccion;
     }
 
-    /**
-     * ✅ CORREGIDO: Solo predecir para productos reales de la BD
-     */
-    public List<PrediccionDemandaDTO> predecirDemandaTodosProductos() {
-        try {
-            List<Producto> productos = productoService.obtenerTodos();
-            List<PrediccionDemandaDTO> resultados = new ArrayList<>();
-
-            System.out.println("📦 Procesando " + productos.size() + " productos...");
-
-            // ✅ FILTRAR: Solo productos reales de la BD
-            List<Producto> productosReales = productos.stream()
-                    .filter(this::esProductoReal)
-                    .collect(Collectors.toList());
-
-            System.out.println("✅ Productos reales filtrados: " + productosReales.size() +
-                    " (excluidos " + (productos.size() - productosReales.size()) + " del dataset)");
-
-            // ✅ CORRECCIÓN: Limitar número de productos para evitar timeout
-            int limite = Math.min(productosReales.size(), 100); // Máximo 100 productos
-            List<Producto> productosLimitados = productosReales.stream()
-                    .limit(limite)
-                    .collect(Collectors.toList());
-
-            for (Producto producto : productosLimitados) {
-                try {
-                    PrediccionDemanda prediccion = predecirDemanda(producto);
-                    if (prediccion != null) { // Solo agregar si no es null
-                        resultados.add(convertirADTO(prediccion));
-                    }
-                } catch (Exception e) {
-                    System.err.println("❌ Error con " + producto.getNombre() + ": " + e.getMessage());
-                    // Continuar con siguiente producto
-                }
-            }
-
-            // Ordenar por prioridad de demanda
-            resultados.sort((a, b) -> {
-                return Integer.compare(getPriority(b.getNivelDemanda()),
-                        getPriority(a.getNivelDemanda()));
-            });
-
-            return resultados;
-
-        } catch (Exception e) {
-            System.err.println("❌ Error general en predecirDemandaTodosProductos: " + e.getMessage());
-            return new ArrayList<>();
-        }
-    }
-
-    private int getPriority(String nivelDemanda) {
+    public int getPriority(String nivelDemanda) {
         if (nivelDemanda == null) return 0;
 
         switch (nivelDemanda.toLowerCase()) {
@@ -376,51 +252,6 @@ public class PrediccionDemandaService {
         }
     }
 
-    /**
-     * ✅ CORREGIDO: Obtener productos con demanda alta (solo productos reales)
-     */
-    public List<PrediccionDemandaDTO> obtenerProductosDemandaAlta() {
-        try {
-            List<PrediccionDemanda> predicciones = prediccionDemandaRepository.findByNivelDemandaOrderByConfianzaDesc("alta");
-
-            // ✅ FILTRAR: Solo predicciones de productos reales
-            return predicciones.stream()
-                    .filter(prediccion -> {
-                        // Verificar si el producto asociado existe y es real
-                        Optional<Producto> productoOpt = productoService.buscarPorId(prediccion.getProductoId());
-                        return productoOpt.isPresent() && esProductoReal(productoOpt.get());
-                    })
-                    .map(this::convertirADTO)
-                    .limit(20) // ✅ CORRECCIÓN: Limitar resultados
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            System.err.println("❌ Error obteniendo alertas: " + e.getMessage());
-            return new ArrayList<>();
-        }
-    }
-
-    /**
-     * ✅ CORREGIDO: Obtener predicciones recientes (solo productos reales)
-     */
-    public List<PrediccionDemandaDTO> obtenerPrediccionesRecientes() {
-        try {
-            List<PrediccionDemanda> predicciones = prediccionDemandaRepository.findTop10ByOrderByFechaPrediccionDesc();
-
-            // ✅ FILTRAR: Solo predicciones de productos reales
-            return predicciones.stream()
-                    .filter(prediccion -> {
-                        // Verificar si el producto asociado existe y es real
-                        Optional<Producto> productoOpt = productoService.buscarPorId(prediccion.getProductoId());
-                        return productoOpt.isPresent() && esProductoReal(productoOpt.get());
-                    })
-                    .map(this::convertirADTO)
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            System.err.println("❌ Error obteniendo predicciones recientes: " + e.getMessage());
-            return new ArrayList<>();
-        }
-    }
-
     /**
      * ✅ CORREGIDO: Convertir entidad a DTO
      */
@@ -458,17 +289,13 @@ public class PrediccionDemandaService {
      */
     public boolean reentrenarModelo() {
         try {
-            this.classifier = null;
-            this.modeloTrained = false;
-            this.dataStructure = null;
-
             // Limpiar predicciones antiguas antes de re-entrenar
             limpiarPrediccionesNoReales();
 
-            entrenarModeloSimple(); // Usar versión simple para evitar errores
-            return this.modeloTrained;
+            // El modelo actual sigue clasificando hasta que el nuevo lo reemplace
+            return entrenarModeloSimple();
         } catch (Exception e) {
-            System.err.println("❌ Error re-entrenando modelo: " + e.getMessage());
+            log.error("❌ Error re-entrenando modelo: {}", e.getMessage());
             return false;
         }
     }
@@ -478,10 +305,17 @@ public class PrediccionDemandaService {
      */
     public Map<String, Object> obtenerEstadoModelo() {
         Map<String, Object> estado = new HashMap<>();
-        estado.put("entrenado", modeloTrained);
-        estado.put("clasificador", classifier != null ? classifier.getClass().getSimpleName() : "No inicializado");
-        estado.put("atributos", dataStructure != null ? dataStructure.numAttributes() : 0);
-        estado.put("instancias", dataStructure != null ? dataStructure.numInstances() : 0);
+        RegistroModeloService.ModeloActivo actual = modelo.get();
+        estado.put("entrenado", actual != null);
+        estado.put("clasificador", actual != null ? actual.getClassifier().getClass().getSimpleName() : "No inicializado");
+        estado.put("atributos", actual != null ? actual.getEstructura().numAttributes() : 0);
+        estado.put("instancias", actual != null ? actual.getInstancias() : 0);
+        estado.put("version", actual != null ? actual.getVersion() : 0);
+        estado.put("hashDatos", actual != null ? actual.getHashDatos() : null);
+        estado.put("origen", actual != null ? actual.getOrigen() : null);
+        estado.put("fechaEntrenamiento", actual != null ? actual.getFechaEntrenamiento() : null);
+        estado.put("duracionEntrenamientoMs", actual != null ? actual.getDuracionEntrenamientoMs() : 0);
+        estado.put("tiempoCargaMs", actual != null ? actual.getCargaMs() : 0);
         estado.put("archivoCargado", true);
         estado.put("filtroProductosReales", "Activado");
         estado.put("timestamp", new Date());
@@ -489,46 +323,6 @@ public class PrediccionDemandaService {
         return estado;
     }
 
-    /**
-     * ✅ CORREGIDO: Obtener estadísticas solo de productos reales
-     */
-    public Map<String, Object> obtenerEstadisticas() {
-        try {
-            List<PrediccionDemandaDTO> todasPredicciones = predecirDemandaTodosProductos();
-
-            long totalProductos = todasPredicciones.size();
-            long demandaAlta = todasPredicciones.stream().filter(p -> "alta".equals(p.getNivelDemanda())).count();
-            long demandaMedia = todasPredicciones.stream().filter(p -> "media".equals(p.getNivelDemanda())).count();
-            long demandaBaja = todasPredicciones.stream().filter(p -> "baja".equals(p.getNivelDemanda())).count();
-            long totalAlertas = demandaAlta;
-
-            Map<String, Object> stats = new HashMap<>();
-            stats.put("totalProductos", totalProductos);
-            stats.put("demandaAlta", demandaAlta);
-            stats.put("demandaMedia", demandaMedia);
-            stats.put("demandaBaja", demandaBaja);
-            stats.put("totalAlertas", totalAlertas);
-            stats.put("porcentajeCritico", totalProductos > 0 ? (demandaAlta * 100.0) / totalProductos : 0);
-            stats.put("productosReales", true);
-            stats.put("fechaGeneracion", new Date());
-
-            return stats;
-        } catch (Exception e) {
-            System.err.println("❌ Error obteniendo estadísticas: " + e.getMessage());
-            // Retornar estadísticas por defecto en caso de error
-            Map<String, Object> stats = new HashMap<>();
-            stats.put("totalProductos", 0);
-            stats.put("demandaAlta", 0);
-            stats.put("demandaMedia", 0);
-            stats.put("demandaBaja", 0);
-            stats.put("totalAlertas", 0);
-            stats.put("porcentajeCritico", 0);
-            stats.put("productosReales", false);
-            stats.put("error", e.getMessage());
-            return stats;
-        }
-    }
-
     /**
      * ✅ CORREGIDO: Obtener solo productos reales para predicción
      */
@@ -539,7 +333,7 @@ public class PrediccionDemandaService {
                     .filter(this::esProductoReal)
                     .collect(Collectors.toList());
         } catch (Exception e) {
-            System.err.println("❌ Error obteniendo productos reales: " + e.getMessage());
+            log.error("❌ Error obteniendo productos reales: {}", e.getMessage());
             return new ArrayList<>();
         }
     }
@@ -561,12 +355,12 @@ public class PrediccionDemandaService {
 
             if (!prediccionesAEliminar.isEmpty()) {
                 prediccionDemandaRepository.deleteAll(prediccionesAEliminar);
-                System.out.println("🧹 Eliminadas " + prediccionesAEliminar.size() + " predicciones de productos no reales");
+                log.info("🧹 Eliminadas {} predicciones de productos no reales", prediccionesAEliminar.size());
             } else {
-                System.out.println("✅ No hay predicciones no reales para eliminar");
+                log.info("✅ No hay predicciones no reales para eliminar");
             }
         } catch (Exception e) {
-            System.err.println("❌ Error limpiando predicciones no reales: " + e.getMessage());
+            log.error("❌ Error limpiando predicciones no reales: {}", e.getMessage());
         }
     }
 
@@ -579,7 +373,7 @@ public class PrediccionDemandaService {
         List<String> productosEliminados = new ArrayList<>();
 
         try {
-            System.out.println("🧹 Iniciando limpieza SEGURA de productos del dataset...");
+            log.debug("🧹 Iniciando limpieza SEGURA de productos del dataset...");
 
             List<Producto> todosProductos = productoService.obtenerTodos();
 
@@ -591,10 +385,10 @@ public class PrediccionDemandaService {
                             productoService.eliminarPorId(producto.getId());
                             eliminados++;
                             productosEliminados.add(producto.getNombre() + " (" + producto.getCodigo() + ")");
-                            System.out.println("✅ Eliminado: " + producto.getNombre());
+                            log.debug("✅ Eliminado: {}", producto.getNombre());
                         }
                     } catch (Exception e) {
-                        System.err.println("❌ Error eliminando " + producto.getNombre() + ": " + e.getMessage());
+                        log.error("❌ Error eliminando {}: {}", producto.getNombre(), e.getMessage());
                     }
                 }
             }
@@ -608,7 +402,7 @@ public class PrediccionDemandaService {
             resultado.put("productosEliminados", productosEliminados);
 
         } catch (Exception e) {
-            System.err.println("❌ Error en limpieza segura: " + e.getMessage());
+            log.error("❌ Error en limpieza segura: {}", e.getMessage());
             resultado.put("success", false);
             resultado.put("error", e.getMessage());
         }
@@ -636,66 +430,129 @@ public class PrediccionDemandaService {
     }
 
     /**
-     * ✅ CORREGIDO: Entrenamiento simple del modelo
+     * ✅ Inicializar el modelo al arrancar: si el registro tiene un modelo entrenado con el
+     * mismo dataset se carga sin entrenar; si los datos cambiaron se sirve el último modelo
+     * disponible y se re-entrena en segundo plano.
      */
-    public void entrenarModeloSimple() {
+    public void inicializarModelo() {
+        byte[] datos = leerDataset();
+        if (datos == null) {
+            return;
+        }
+        String hash = RegistroModeloService.calcularHash(datos);
+
         try {
-            System.out.println("🔧 Iniciando entrenamiento SIMPLE del modelo Weka...");
+            Optional<RegistroModeloService.ModeloActivo> registrado = registroModeloService.cargar(hash);
+            if (registrado.isPresent()) {
+                RegistroModeloService.ModeloActivo cargado = registrado.get();
+                modelo.set(cargado);
+                log.info("⚡ Modelo v{} cargado desde el registro en {} ms (entrenarlo tomó {} ms)",
+                        cargado.getVersion(), cargado.getCargaMs(), cargado.getDuracionEntrenamientoMs());
+                return;
+            }
+            registroModeloService.cargarUltimo().ifPresent(anterior -> {
+                // Solo si nadie publicó un modelo entretanto
+                modelo.compareAndSet(null, anterior);
+                log.info("ℹ️ Dataset modificado: se usa el modelo v{} mientras se re-entrena", anterior.getVersion());
+            });
+        } catch (Exception e) {
+            log.error("⚠️ No se pudo leer el registro de modelos: {}", e.getMessage());
+        }
 
-            // Cargar el archivo ARFF desde resources
-            ClassPathResource resource = new ClassPathResource("farmacia_ventas.arff");
+        Thread hilo = new Thread(this::entrenarModeloSimple, "entrenamiento-modelo");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
 
-            // ✅ CORRECCIÓN: Manejar tanto File como InputStream
-            InputStream inputStream = null;
-            try {
-                if (resource.exists()) {
-                    inputStream = resource.getInputStream();
-                } else {
-                    System.err.println("❌ Archivo ARFF no encontrado en classpath: farmacia_ventas.arff");
-                    return;
-                }
+    /**
+     * ✅ CORREGIDO: Entrenamiento simple del modelo. El nuevo modelo se registra y reemplaza
+     * al actual de una sola vez.
+     * El tiempo se registra a mano: las dos llamadas (reentrenarModelo y el hilo de arranque)
+     * salen de esta misma clase y no pasan por el proxy de @Timed.
+     */
+    public boolean entrenarModeloSimple() {
+        Timer.Sample muestra = Timer.start();
+        try {
+            return entrenar();
+        } finally {
+            meterRegistry.ifAvailable(registry -> muestra.stop(Timer.builder("lfarma.modelo.entrenamiento")
+                    .description("Duración del entrenamiento del modelo de predicción")
+                    .register(registry)));
+        }
+    }
 
-                // Cargar datos
-                ConverterUtils.DataSource source = new ConverterUtils.DataSource(inputStream);
-                Instances data = source.getDataSet();
+    private boolean entrenar() {
+        entrenamiento.lock();
+        entrenando = true;
+        try {
+            log.debug("🔧 Iniciando entrenamiento SIMPLE del modelo Weka...");
 
-                if (data == null || data.numInstances() == 0) {
-                    System.err.println("❌ Dataset vacío o no válido");
-                    return;
-                }
+            byte[] datos = leerDataset();
+            if (datos == null) {
+                return false;
+            }
+            long inicio = System.currentTimeMillis();
 
-                // Establecer atributo clase
-                if (data.classIndex() == -1) {
-                    data.setClassIndex(data.numAttributes() - 1);
-                }
+            // Cargar datos
+            ConverterUtils.DataSource source = new ConverterUtils.DataSource(new ByteArrayInputStream(datos));
+            Instances data = source.getDataSet();
 
-                // Crear y entrenar clasificador SIN opciones complejas
-                classifier = new J48();
+            if (data == null || data.numInstances() == 0) {
+                log.error("❌ Dataset vacío o no válido");
+                return false;
+            }
 
-                // ✅ CORRECCIÓN: Configuración mínima y segura
-                classifier.buildClassifier(data);
+            // Establecer atributo clase
+            if (data.classIndex() == -1) {
+                data.setClassIndex(data.numAttributes() - 1);
+            }
 
-                // Guardar estructura de datos
-                this.dataStructure = new Instances(data, 0);
-                this.modeloTrained = true;
+            // Crear y entrenar clasificador SIN opciones complejas
+            Classifier classifier = new J48();
 
-                System.out.println("✅ Modelo entrenado exitosamente (versión simple)");
-                System.out.println("📊 Estructura: " + dataStructure.numAttributes() + " atributos");
+            // ✅ CORRECCIÓN: Configuración mínima y segura
+            classifier.buildClassifier(data);
 
-            } finally {
-                if (inputStream != null) {
-                    try {
-                        inputStream.close();
-                    } catch (Exception e) {
-                        System.err.println("❌ Error cerrando InputStream: " + e.getMessage());
-                    }
-                }
+            Instances estructura = new Instances(data, 0);
+            long duracion = System.currentTimeMillis() - inicio;
+            String hash = RegistroModeloService.calcularHash(datos);
+
+            RegistroModeloService.ModeloActivo nuevo;
+            try {
+                nuevo = registroModeloService.registrar(classifier, estructura, hash, data.numInstances(), duracion);
+            } catch (Exception e) {
+                // Sin registro el modelo sigue siendo válido para esta ejecución
+                log.error("⚠️ No se pudo registrar el modelo: {}", e.getMessage());
+                nuevo = new RegistroModeloService.ModeloActivo(classifier, estructura, 0, hash, "entrenado",
+                        data.numInstances(), new Date(), duracion, 0);
             }
+            modelo.set(nuevo);
+
+            log.info("✅ Modelo v{} entrenado en {} ms: {} instancias, {} atributos",
+                    nuevo.getVersion(), duracion, data.numInstances(), estructura.numAttributes());
+            return true;
 
         } catch (Exception e) {
-            System.err.println("❌ Error en entrenamiento simple: " + e.getMessage());
-            this.modeloTrained = false;
+            log.error("❌ Error en entrenamiento simple: {}", e.getMessage());
             // No lanzar excepción para permitir que la aplicación continúe
+            return false;
+        } finally {
+            entrenando = false;
+            entrenamiento.unlock();
+        }
+    }
+
+    private byte[] leerDataset() {
+        ClassPathResource resource = new ClassPathResource("farmacia_ventas.arff");
+        if (!resource.exists()) {
+            log.error("❌ Archivo ARFF no encontrado en classpath: farmacia_ventas.arff");
+            return null;
+        }
+        try (InputStream inputStream = resource.getInputStream()) {
+            return inputStream.readAllBytes();
+        } catch (Exception e) {
+            log.error("❌ Error leyendo el dataset: {}", e.getMessage());
+            return null;
         }
     }
 
@@ -703,7 +560,7 @@ public class PrediccionDemandaService {
      * ✅ IMPLEMENTACIÓN COMPLETA DE limpiarDatasetManual()
      */
     public Map<String, Object> limpiarDatasetManual() {
-        System.out.println("🧹 EJECUTANDO limpiarDatasetManual() - Limpieza COMPLETA del dataset");
+        log.debug("🧹 EJECUTANDO limpiarDatasetManual() - Limpieza COMPLETA del dataset");
 
         Map<String, Object> resultado = new HashMap<>();
         int productosEliminados = 0;
@@ -713,7 +570,7 @@ public class PrediccionDemandaService {
         try {
             // 1️⃣ Obtener todos los productos
             List<Producto> todosProductos = productoService.obtenerTodos();
-            System.out.println("📊 Total de productos encontrados: " + todosProductos.size());
+            log.debug("📊 Total de productos encontrados: {}", todosProductos.size());
 
             // 2️⃣ Identificar y eliminar productos del dataset
             for (Producto producto : todosProductos) {
@@ -725,10 +582,10 @@ public class PrediccionDemandaService {
                             productoService.eliminarPorId(producto.getId());
                             productosEliminados++;
                             detallesEliminados.add("PRODUCTO: " + producto.getNombre() + " (" + producto.getCodigo() + ")");
-                            System.out.println("🗑️ Eliminado producto del dataset: " + producto.getNombre());
+                            log.debug("🗑️ Eliminado producto del dataset: {}", producto.getNombre());
                         }
                     } catch (Exception e) {
-                        System.err.println("❌ Error eliminando producto " + producto.getNombre() + ": " + e.getMessage());
+                        log.error("❌ Error eliminando producto {}: {}", producto.getNombre(), e.getMessage());
                         detallesEliminados.add("ERROR eliminando: " + producto.getNombre() + " - " + e.getMessage());
                     }
                 }
@@ -748,7 +605,7 @@ public class PrediccionDemandaService {
             if (!prediccionesAEliminar.isEmpty()) {
                 prediccionDemandaRepository.deleteAll(prediccionesAEliminar);
                 prediccionesEliminadas = prediccionesAEliminar.size();
-                System.out.println("🗑️ Eliminadas " + prediccionesEliminadas + " predicciones de productos no reales");
+                log.info("🗑️ Eliminadas {} predicciones de productos no reales", prediccionesEliminadas);
             }
 
             // 4️⃣ Preparar resultado
@@ -761,12 +618,10 @@ public class PrediccionDemandaService {
             resultado.put("timestamp", new Date());
             resultado.put("filtroAplicado", "Solo productos del dataset de entrenamiento");
 
-            System.out.println("✅ LIMPIEZA COMPLETADA: " + productosEliminados + " productos y " +
-                    prediccionesEliminadas + " predicciones eliminadas");
+            log.info("✅ LIMPIEZA COMPLETADA: {} productos y {} predicciones eliminadas", productosEliminados, prediccionesEliminadas);
 
         } catch (Exception e) {
-            System.err.println("❌ ERROR CRÍTICO en limpiarDatasetManual: " + e.getMessage());
-            e.printStackTrace();
+            log.error("❌ ERROR CRÍTICO en limpiarDatasetManual: {}", e.getMessage(), e);
 
             resultado.put("success", false);
             resultado.put("error", "Error durante la limpieza: " + e.getMessage());
@@ -782,7 +637,7 @@ public class PrediccionDemandaService {
      * ✅ NUEVO MÉTODO: Limpieza segura (conservadora)
      */
     public Map<String, Object> limpiarDatasetSeguro() {
-        System.out.println("🛡️ EJECUTANDO limpiarDatasetSeguro() - Limpieza CONSERVADORA");
+        log.debug("🛡️ EJECUTANDO limpiarDatasetSeguro() - Limpieza CONSERVADORA");
 
         Map<String, Object> resultado = new HashMap<>();
         List<String> eliminados = new ArrayList<>();
@@ -807,10 +662,10 @@ public class PrediccionDemandaService {
                             productoService.eliminarPorId(producto.getId());
                             eliminados.add(producto.getNombre() + " (" + producto.getCodigo() + ")");
                             totalEliminados++;
-                            System.out.println("🛡️ Eliminado (seguro): " + producto.getNombre());
+                            log.debug("🛡️ Eliminado (seguro): {}", producto.getNombre());
                             break; // Solo eliminar una vez por producto
                         } catch (Exception e) {
-                            System.err.println("❌ Error eliminando " + producto.getNombre() + ": " + e.getMessage());
+                            log.error("❌ Error eliminando {}: {}", producto.getNombre(), e.getMessage());
                         }
                     }
                 }
@@ -826,7 +681,7 @@ public class PrediccionDemandaService {
             resultado.put("tipo", "conservadora");
 
         } catch (Exception e) {
-            System.err.println("❌ Error en limpieza segura: " + e.getMessage());
+            log.error("❌ Error en limpieza segura: {}", e.getMessage());
             resultado.put("success", false);
             resultado.put("error", e.getMessage());
         }
@@ -0,0 +1,308 @@
+package com.App.Lfarma.service;
+
+import com.App.Lfarma.DTO.PrediccionDemandaDTO;
+import com.App.Lfarma.entity.PrediccionDemanda;
+import com.App.Lfarma.entity.Producto;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Calcula las predicciones de demanda de todo el catálogo en un proceso programado.
+ * Los productos se leen por lotes, cada lote se clasifica en un hilo del pool y se
+ * guarda con un único bulk upsert por producto. Las vistas leen la última foto
+ * calculada (con su fecha de generación) en lugar de clasificar en cada petición.
+ */
+@Service
+public class PrediccionLoteService {
+
+    private static final Logger log = LoggerFactory.getLogger(PrediccionLoteService.class);
+
+    private static final int TAMANO_LOTE = 500;
+
+    @Autowired
+    private PrediccionDemandaService prediccionDemandaService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${lfarma.predicciones.lote.habilitado:true}")
+    private boolean loteHabilitado;
+
+    private final ExecutorService pool;
+
+    private final AtomicBoolean enEjecucion = new AtomicBoolean(false);
+
+    private volatile Snapshot snapshot = Snapshot.vacio();
+
+    public PrediccionLoteService(@Value("${lfarma.predicciones.lote.hilos:0}") int hilos) {
+        int tamano = hilos > 0 ? hilos : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        AtomicInteger contador = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(tamano, r -> {
+            Thread hilo = new Thread(r, "prediccion-lote-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    // Al arrancar se sirve la última foto persistida hasta que corra el primer lote
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarUltimaFoto() {
+        try {
+            // Las versiones anteriores guardaban un documento por consulta; se toma el más reciente por producto
+            Map<String, PrediccionDemanda> porProducto = new HashMap<>();
+            for (PrediccionDemanda prediccion : mongoTemplate.findAll(PrediccionDemanda.class)) {
+                porProducto.merge(prediccion.getProductoId(), prediccion, (a, b) ->
+                        b.getFechaPrediccion() != null && (a.getFechaPrediccion() == null
+                                || b.getFechaPrediccion().after(a.getFechaPrediccion())) ? b : a);
+            }
+            List<PrediccionDemanda> guardadas = new ArrayList<>(porProducto.values());
+            Date generado = guardadas.stream()
+                    .map(PrediccionDemanda::getFechaPrediccion)
+                    .filter(fecha -> fecha != null)
+                    .max(Comparator.naturalOrder())
+                    .orElse(null);
+            snapshot = construirSnapshot(guardadas, generado, 0);
+            log.info("✅ Predicciones persistidas cargadas: {} (generadas {})", guardadas.size(), generado);
+        } catch (Exception e) {
+            log.error("⚠️ No se pudieron cargar las predicciones persistidas: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${lfarma.predicciones.lote.retraso-inicial-ms:30000}",
+            fixedDelayString = "${lfarma.predicciones.lote.intervalo-ms:900000}")
+    public void ejecutarProgramado() {
+        if (!loteHabilitado) {
+            return;
+        }
+        try {
+            recalcular();
+        } catch (Exception e) {
+            log.error("❌ Error en el lote de predicciones: {}", e.getMessage(), e);
+        }
+    }
+
+    // Hilo propio: recalcular() espera a las tareas del pool y no debe ocupar uno de sus hilos
+    public void recalcularEnSegundoPlano() {
+        Thread hilo = new Thread(() -> {
+            try {
+                recalcular();
+            } catch (Exception e) {
+                log.error("❌ Error en el lote de predicciones: {}", e.getMessage(), e);
+            }
+        }, "prediccion-lote-manual");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    // Retorna la cantidad de productos clasificados, o -1 si ya había un lote en ejecución
+    @Timed("lfarma.modelo.lote")
+    public int recalcular() {
+        if (!enEjecucion.compareAndSet(false, true)) {
+            log.info("ℹ️ El lote de predicciones ya está en ejecución");
+            return -1;
+        }
+
+        long inicio = System.currentTimeMillis();
+        Date generado = new Date(inicio);
+        try {
+            // Sin modelo se usarían las reglas por defecto; si ya se está entrenando se espera a la próxima corrida
+            if (!prediccionDemandaService.isModeloEntrenado() && prediccionDemandaService.isEntrenando()) {
+                log.info("ℹ️ Modelo en entrenamiento; el lote de predicciones se pospone");
+                return 0;
+            }
+
+            Query query = new Query();
+            query.fields().include("codigo", "nombre", "precio", "cantidad");
+
+            List<CompletableFuture<List<PrediccionDemanda>>> tareas = new ArrayList<>();
+            List<Producto> lote = new ArrayList<>(TAMANO_LOTE);
+            try (Stream<Producto> productos = mongoTemplate.stream(query, Producto.class)) {
+                for (Producto producto : (Iterable<Producto>) productos::iterator) {
+                    lote.add(producto);
+                    if (lote.size() == TAMANO_LOTE) {
+                        tareas.add(enviarLote(lote, generado));
+                        lote = new ArrayList<>(TAMANO_LOTE);
+                    }
+                }
+            }
+            if (!lote.isEmpty()) {
+                tareas.add(enviarLote(lote, generado));
+            }
+
+            List<PrediccionDemanda> resultados = new ArrayList<>();
+            for (CompletableFuture<List<PrediccionDemanda>> tarea : tareas) {
+                resultados.addAll(tarea.join());
+            }
+
+            // Lo que no se actualizó en esta corrida pertenece a productos eliminados o excluidos
+            long obsoletas = mongoTemplate.remove(
+                    Query.query(Criteria.where("fechaPrediccion").lt(generado)), PrediccionDemanda.class)
+                    .getDeletedCount();
+
+            long duracion = System.currentTimeMillis() - inicio;
+            snapshot = construirSnapshot(resultados, generado, duracion);
+            log.info("✅ Lote de predicciones: {} productos en {} lotes, {} obsoletas eliminadas, {} ms",
+                    resultados.size(), tareas.size(), obsoletas, duracion);
+            return resultados.size();
+        } finally {
+            enEjecucion.set(false);
+        }
+    }
+
+    private CompletableFuture<List<PrediccionDemanda>> enviarLote(List<Producto> lote, Date generado) {
+        return CompletableFuture.supplyAsync(() -> clasificarYGuardar(lote, generado), pool);
+    }
+
+    private List<PrediccionDemanda> clasificarYGuardar(List<Producto> lote, Date generado) {
+        List<PrediccionDemanda> predicciones = new ArrayList<>(lote.size());
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PrediccionDemanda.class);
+
+        for (Producto producto : lote) {
+            PrediccionDemanda prediccion;
+            try {
+                prediccion = prediccionDemandaService.clasificar(producto);
+            } catch (Exception e) {
+                log.warn("⚠️ No se pudo clasificar {}: {}", producto.getCodigo(), e.getMessage());
+                continue;
+            }
+            if (prediccion == null) {
+                continue;
+            }
+            prediccion.setFechaPrediccion(generado);
+            predicciones.add(prediccion);
+
+            bulk.upsert(Query.query(Criteria.where("productoId").is(prediccion.getProductoId())), new Update()
+                    .set("codigoProducto", prediccion.getCodigoProducto())
+                    .set("nombreProducto", prediccion.getNombreProducto())
+                    .set("precio", prediccion.getPrecio())
+                    .set("cantidad", prediccion.getCantidad())
+                    .set("precioUnitario", prediccion.getPrecioUnitario())
+                    .set("nivelDemanda", prediccion.getNivelDemanda())
+                    .set("confianza", prediccion.getConfianza())
+                    .set("fechaPrediccion", generado));
+        }
+
+        if (!predicciones.isEmpty()) {
+            bulk.execute();
+        }
+        return predicciones;
+    }
+
+    private Snapshot construirSnapshot(List<PrediccionDemanda> predicciones, Date generado, long duracionMs) {
+        List<PrediccionDemandaDTO> dtos = predicciones.stream()
+                .map(prediccionDemandaService::convertirADTO)
+                .sorted(Comparator.comparingInt((PrediccionDemandaDTO p) -> prediccionDemandaService.getPriority(p.getNivelDemanda()))
+                        .reversed()
+                        .thenComparing(Comparator.comparingDouble(PrediccionDemandaDTO::getConfianza).reversed()))
+                .collect(Collectors.toList());
+        return new Snapshot(Collections.unmodifiableList(dtos), generado, duracionMs);
+    }
+
+    public List<PrediccionDemandaDTO> obtenerPredicciones() {
+        return snapshot.getPredicciones();
+    }
+
+    // Productos con demanda alta, de mayor a menor confianza
+    public List<PrediccionDemandaDTO> obtenerProductosDemandaAlta() {
+        return snapshot.getPredicciones().stream()
+                .filter(p -> "alta".equalsIgnoreCase(p.getNivelDemanda()))
+                .limit(20)
+                .collect(Collectors.toList());
+    }
+
+    // Las de la última corrida (todas comparten la fecha de generación), las más prioritarias primero
+    public List<PrediccionDemandaDTO> obtenerRecientes(int limite) {
+        return snapshot.getPredicciones().stream().limit(limite).collect(Collectors.toList());
+    }
+
+    public Date obtenerFechaGeneracion() {
+        return snapshot.getGenerado();
+    }
+
+    public Map<String, Object> obtenerEstadisticas() {
+        Snapshot actual = snapshot;
+        long totalProductos = actual.getPredicciones().size();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalProductos", totalProductos);
+        stats.put("demandaAlta", actual.getDemandaAlta());
+        stats.put("demandaMedia", actual.getDemandaMedia());
+        stats.put("demandaBaja", actual.getDemandaBaja());
+        stats.put("totalAlertas", actual.getDemandaAlta());
+        stats.put("porcentajeCritico", totalProductos > 0 ? (actual.getDemandaAlta() * 100.0) / totalProductos : 0);
+        stats.put("productosReales", true);
+        stats.put("fechaGeneracion", actual.getGenerado());
+        stats.put("antiguedadSegundos", actual.getGenerado() != null
+                ? (System.currentTimeMillis() - actual.getGenerado().getTime()) / 1000 : null);
+        stats.put("duracionLoteMs", actual.getDuracionMs());
+        stats.put("enEjecucion", enEjecucion.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void detener() {
+        pool.shutdownNow();
+    }
+
+    // Foto inmutable de la última corrida; se reemplaza completa al terminar cada lote
+    public static final class Snapshot {
+        private final List<PrediccionDemandaDTO> predicciones;
+        private final Date generado;
+        private final long duracionMs;
+        private final long demandaAlta;
+        private final long demandaMedia;
+        private final long demandaBaja;
+
+        Snapshot(List<PrediccionDemandaDTO> predicciones, Date generado, long duracionMs) {
+            this.predicciones = predicciones;
+            this.generado = generado;
+            this.duracionMs = duracionMs;
+            this.demandaAlta = contar(predicciones, "alta");
+            this.demandaMedia = contar(predicciones, "media");
+            this.demandaBaja = contar(predicciones, "baja");
+        }
+
+        static Snapshot vacio() {
+            return new Snapshot(Collections.emptyList(), null, 0);
+        }
+
+        private static long contar(List<PrediccionDemandaDTO> predicciones, String nivel) {
+            return predicciones.stream().filter(p -> nivel.equalsIgnoreCase(p.getNivelDemanda())).count();
+        }
+
+        public List<PrediccionDemandaDTO> getPredicciones() { return predicciones; }
+        public Date getGenerado() { return generado; }
+        public long getDuracionMs() { return duracionMs; }
+        public long getDemandaAlta() { return demandaAlta; }
+        public long getDemandaMedia() { return demandaMedia; }
+        public long getDemandaBaja() { return demandaBaja; }
+    }
+}
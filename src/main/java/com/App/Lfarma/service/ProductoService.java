@@ -1,16 +1,38 @@
 package com.App.Lfarma.service;
 
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import com.App.Lfarma.DTO.PaginaCursorDTO;
+import com.App.Lfarma.config.RedisConfig;
+import com.App.Lfarma.DTO.SugerenciaProductoDTO;
 import com.App.Lfarma.entity.Producto;
+import com.App.Lfarma.entity.Proveedor;
 import com.App.Lfarma.repository.ProductoRepository;
 
+import com.mongodb.client.result.UpdateResult;
+
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.NoSuchElementException;
 import org.slf4j.Logger;
@@ -24,6 +46,25 @@ public class ProductoService {
     @Autowired
     private ProductoRepository productoRepository;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private AutocompletadoProductoService autocompletadoService;
+
+    @Autowired
+    private BusquedaProductoService busquedaService;
+
+    @Autowired
+    private PaginacionCursorService paginacionCursor;
+
+    @Autowired
+    private CacheLocalProductoService cacheLocal;
+
+    // Opcional: sin registro de métricas (tests) los rechazos solo se registran en el log
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
     public List<Producto> listarProductos() {
         try {
             log.info("🔍 SERVICE - Obteniendo TODOS los productos sin paginación");
@@ -156,13 +197,40 @@ public class ProductoService {
         }
     }
 
+    // ✅ Paginación por cursor (orden de _id), opcionalmente filtrada por categoría
+    @Timed(value = "lfarma.busqueda", extraTags = {"entidad", "productos"})
+    public PaginaCursorDTO<Producto> listarProductosCursor(String categoria, String after, int size, boolean conTotal) {
+        Query filtro = new Query();
+        if (categoria != null && !categoria.trim().isEmpty() && !categoria.equals("todos")) {
+            filtro.addCriteria(Criteria.where("categoria").is(categoria.trim()));
+        }
+        return paginacionCursor.buscar(Producto.class, filtro,
+                PaginacionCursorService.Orden.porId(Producto::getId), after, size, conTotal);
+    }
+
     // ✅ MÉTODO ALTERNATIVO: Para mantener compatibilidad con código existente
     public Page<Producto> listarProductosPaginados(String categoria, Pageable pageable) {
         return listarProductosPaginadas(categoria, pageable);
     }
 
-    // ✅✅✅ CORRECCIÓN: Búsqueda de productos con manejo robusto de parámetros
     public Page<Producto> buscarProductos(String searchTerm, String categoria, Pageable pageable) {
+        return buscarProductosConFacetas(searchTerm, categoria, pageable).pagina();
+    }
+
+    // Con término usa la búsqueda indexada (relevancia y facetas) salvo lfarma.productos.busqueda.modo=regex
+    @Timed(value = "lfarma.busqueda", extraTags = {"entidad", "productos"})
+    public BusquedaProductoService.Resultado buscarProductosConFacetas(String searchTerm, String categoria, Pageable pageable) {
+        if (searchTerm != null && !searchTerm.trim().isEmpty() && !busquedaService.usaRegex()) {
+            return busquedaService.buscar(searchTerm, categoria, pageable);
+        }
+        if (pageable.getSort().isUnsorted()) {
+            pageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by("nombre"));
+        }
+        return new BusquedaProductoService.Resultado(buscarProductosRegex(searchTerm, categoria, pageable), Map.of(), false);
+    }
+
+    // ✅✅✅ CORRECCIÓN: Búsqueda de productos con manejo robusto de parámetros
+    private Page<Producto> buscarProductosRegex(String searchTerm, String categoria, Pageable pageable) {
         try {
             // Validar y limpiar parámetros
             String terminoBusqueda = (searchTerm != null) ? searchTerm.trim() : "";
@@ -230,7 +298,8 @@ public class ProductoService {
             String codigoLimpio = codigo.trim();
             log.info("🔍 SERVICE - Buscando producto por código: '{}'", codigoLimpio);
 
-            Optional<Producto> producto = productoRepository.findByCodigo(codigoLimpio);
+            Optional<Producto> producto = cacheLocal.buscarPorCodigo(codigoLimpio,
+                    () -> productoRepository.findByCodigo(codigoLimpio));
 
             if (producto.isPresent()) {
                 log.info("✅ SERVICE - Producto encontrado por código: {} - {}",
@@ -257,7 +326,8 @@ public class ProductoService {
             String idLimpio = id.trim();
             log.info("🔍 SERVICE - Buscando producto por ID: '{}'", idLimpio);
 
-            Optional<Producto> producto = productoRepository.findById(idLimpio);
+            Optional<Producto> producto = cacheLocal.buscarPorId(idLimpio,
+                    () -> productoRepository.findById(idLimpio));
 
             if (producto.isPresent()) {
                 log.info("✅ SERVICE - Producto encontrado por ID: {} - {}",
@@ -274,6 +344,7 @@ public class ProductoService {
     }
 
     // ✅ CORREGIDO: Guardar producto con validaciones completas
+    @CacheEvict(cacheNames = RedisConfig.CACHE_DASHBOARD, key = "'productos'")
     public Producto guardarProducto(Producto producto) {
         try {
             log.info("💾 SERVICE - Guardando producto: {}", producto.getNombre());
@@ -303,6 +374,8 @@ public class ProductoService {
             producto.setCodigo(producto.getCodigo().trim());
             producto.setNombre(producto.getNombre().trim());
             producto.setCategoria(producto.getCategoria().trim());
+            producto.actualizarTerminosBusqueda();
+            producto.setFechaActualizacion(new Date());
 
             // Validar código único para nuevos productos
             if (producto.getId() == null) {
@@ -313,6 +386,8 @@ public class ProductoService {
             }
 
             Producto productoGuardado = productoRepository.save(producto);
+            autocompletadoService.indexar(productoGuardado);
+            cacheLocal.invalidar(productoGuardado.getId(), productoGuardado.getCodigo());
             log.info("✅ SERVICE - Producto guardado exitosamente: {} - {} (ID: {})",
                     productoGuardado.getCodigo(), productoGuardado.getNombre(), productoGuardado.getId());
 
@@ -328,6 +403,7 @@ public class ProductoService {
     }
 
     // ✅ CORREGIDO: Eliminar producto con validaciones
+    @CacheEvict(cacheNames = RedisConfig.CACHE_DASHBOARD, key = "'productos'")
     public void eliminarPorId(String id) {
         try {
             if (id == null || id.trim().isEmpty()) {
@@ -342,6 +418,8 @@ public class ProductoService {
             }
 
             productoRepository.deleteById(idLimpio);
+            autocompletadoService.eliminar(idLimpio);
+            cacheLocal.invalidar(idLimpio, null);
             log.info("✅ SERVICE - Producto eliminado: {}", idLimpio);
 
         } catch (NoSuchElementException e) {
@@ -353,7 +431,10 @@ public class ProductoService {
         }
     }
 
-    // ✅ CORREGIDO: Descontar stock con validaciones robustas
+    // ✅ Descontar stock con un único $inc condicional en el servidor (cantidad >= solicitada).
+    // No hay lectura previa ni guardado del documento completo, así que dos ventas
+    // concurrentes no pueden pisarse ni dejar el stock en negativo.
+    @Timed(value = "lfarma.stock", extraTags = {"operacion", "descontar"})
     public void descontarStock(String codigo, int cantidad) {
         try {
             if (codigo == null || codigo.trim().isEmpty()) {
@@ -365,24 +446,12 @@ public class ProductoService {
             }
 
             String codigoLimpio = codigo.trim();
-            Optional<Producto> productoOpt = productoRepository.findByCodigo(codigoLimpio);
-
-            if (productoOpt.isPresent()) {
-                Producto producto = productoOpt.get();
-
-                if (producto.getCantidad() < cantidad) {
-                    throw new RuntimeException("Stock insuficiente para: " + producto.getNombre() +
-                            ". Stock disponible: " + producto.getCantidad() + ", solicitado: " + cantidad);
-                }
-
-                producto.setCantidad(producto.getCantidad() - cantidad);
-                productoRepository.save(producto);
-
-                log.info("📉 SERVICE - Stock descontado: {} - Cantidad: {}, Stock restante: {}",
-                        producto.getNombre(), cantidad, producto.getCantidad());
-            } else {
-                throw new NoSuchElementException("No se encontró producto con el código: " + codigoLimpio);
+            if (!descontarSiHayStock(codigoLimpio, cantidad)) {
+                throw errorDescuento(codigoLimpio, cantidad);
             }
+            cacheLocal.invalidar(null, codigoLimpio);
+
+            log.info("📉 SERVICE - Stock descontado: {} - Cantidad: {}", codigoLimpio, cantidad);
         } catch (IllegalArgumentException | NoSuchElementException e) {
             log.warn("⚠️ SERVICE - Error en descontarStock: {}", e.getMessage());
             throw e;
@@ -392,7 +461,63 @@ public class ProductoService {
         }
     }
 
-    // ✅ CORREGIDO: Aumentar stock con validaciones
+    // ✅ Descontar el stock de todas las líneas de una factura (código -> cantidad).
+    // Cada línea es un $inc condicional atómico; si alguna falla, las ya aplicadas
+    // se reponen con una sola escritura bulk y se lanza el error de la línea que falló.
+    @Timed(value = "lfarma.stock", extraTags = {"operacion", "descontarLote"})
+    public void descontarStockLote(Map<String, Integer> cantidadesPorCodigo) {
+        if (cantidadesPorCodigo == null || cantidadesPorCodigo.isEmpty()) {
+            throw new IllegalArgumentException("No hay productos para descontar stock");
+        }
+
+        Map<String, Integer> aplicados = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, Integer> linea : cantidadesPorCodigo.entrySet()) {
+                String codigo = linea.getKey();
+                int cantidad = linea.getValue();
+
+                if (codigo == null || codigo.trim().isEmpty()) {
+                    throw new IllegalArgumentException("Código de producto inválido");
+                }
+                if (cantidad <= 0) {
+                    throw new IllegalArgumentException("La cantidad a descontar debe ser mayor a 0");
+                }
+
+                if (!descontarSiHayStock(codigo.trim(), cantidad)) {
+                    throw errorDescuento(codigo.trim(), cantidad);
+                }
+                aplicados.put(codigo.trim(), cantidad);
+            }
+
+            cacheLocal.invalidarCodigos(aplicados.keySet());
+            log.info("📉 SERVICE - Stock descontado para {} productos", aplicados.size());
+        } catch (RuntimeException e) {
+            if (!aplicados.isEmpty()) {
+                log.warn("↩️ SERVICE - Revirtiendo stock de {} líneas ya aplicadas: {}", aplicados.size(), e.getMessage());
+                reponerStockLote(aplicados);
+            }
+            throw e;
+        }
+    }
+
+    // ✅ Reponer stock de varias líneas en una sola escritura bulk (rollback de una venta)
+    @Timed(value = "lfarma.stock", extraTags = {"operacion", "reponerLote"})
+    public void reponerStockLote(Map<String, Integer> cantidadesPorCodigo) {
+        if (cantidadesPorCodigo == null || cantidadesPorCodigo.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Producto.class);
+        cantidadesPorCodigo.forEach((codigo, cantidad) ->
+                bulk.updateOne(Query.query(Criteria.where("codigo").is(codigo)), new Update().inc("cantidad", cantidad).currentDate("fechaActualizacion")));
+        bulk.execute();
+        cacheLocal.invalidarCodigos(cantidadesPorCodigo.keySet());
+
+        log.info("📈 SERVICE - Stock repuesto para {} productos", cantidadesPorCodigo.size());
+    }
+
+    // ✅ Aumentar stock con un $inc atómico
+    @Timed(value = "lfarma.stock", extraTags = {"operacion", "aumentar"})
     public void aumentarStock(String codigo, int cantidad) {
         try {
             if (codigo == null || codigo.trim().isEmpty()) {
@@ -404,18 +529,17 @@ public class ProductoService {
             }
 
             String codigoLimpio = codigo.trim();
-            Optional<Producto> productoOpt = productoRepository.findByCodigo(codigoLimpio);
+            UpdateResult resultado = mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("codigo").is(codigoLimpio)),
+                    new Update().inc("cantidad", cantidad).currentDate("fechaActualizacion"),
+                    Producto.class);
 
-            if (productoOpt.isPresent()) {
-                Producto producto = productoOpt.get();
-                producto.setCantidad(producto.getCantidad() + cantidad);
-                productoRepository.save(producto);
-
-                log.info("📈 SERVICE - Stock aumentado: {} - Cantidad: {}, Stock total: {}",
-                        producto.getNombre(), cantidad, producto.getCantidad());
-            } else {
+            if (resultado.getMatchedCount() == 0) {
                 throw new NoSuchElementException("No se encontró producto con el código: " + codigoLimpio);
             }
+            cacheLocal.invalidar(null, codigoLimpio);
+
+            log.info("📈 SERVICE - Stock aumentado: {} - Cantidad: {}", codigoLimpio, cantidad);
         } catch (IllegalArgumentException | NoSuchElementException e) {
             log.warn("⚠️ SERVICE - Error en aumentarStock: {}", e.getMessage());
             throw e;
@@ -425,6 +549,70 @@ public class ProductoService {
         }
     }
 
+    // ✅ Datos de una compra al proveedor: solo $set de costo, precio y proveedor. El stock no se toca
+    // aquí (va con aumentarStock), así no se reescribe una cantidad leída antes de otra venta.
+    // Costo o precio <= 0 conservan el valor actual.
+    @CacheEvict(cacheNames = RedisConfig.CACHE_DASHBOARD, key = "'productos'")
+    public void actualizarDatosCompra(String id, double costoCompra, double precio, Proveedor proveedor) {
+        Update update = new Update().currentDate("fechaActualizacion");
+        if (costoCompra > 0) {
+            update.set("costoCompra", costoCompra);
+        }
+        if (precio > 0) {
+            update.set("precio", precio);
+        }
+        if (proveedor != null) {
+            update.set("proveedor", proveedor).set("proveedorId", proveedor.getId());
+        }
+        Producto actualizado = mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(id)), update,
+                FindAndModifyOptions.options().returnNew(true), Producto.class);
+        if (actualizado == null) {
+            throw new NoSuchElementException("No se encontró producto con el ID: " + id);
+        }
+        // El índice de autocompletado muestra el precio
+        autocompletadoService.indexar(actualizado);
+        cacheLocal.invalidar(id, actualizado.getCodigo());
+        log.debug("🚚 SERVICE - Datos de compra actualizados: {}", actualizado.getCodigo());
+    }
+
+    // ✅ Fijar solo el costo de compra ($set), sin reescribir el documento completo
+    // para no pisar el stock que otra venta pueda estar descontando al mismo tiempo
+    public void actualizarCostoCompra(String id, double costoCompra) {
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(id)),
+                new Update().set("costoCompra", costoCompra).currentDate("fechaActualizacion"),
+                Producto.class);
+        cacheLocal.invalidar(id, null);
+        log.debug("💰 SERVICE - Costo de compra actualizado: {} -> {}", id, costoCompra);
+    }
+
+    private boolean descontarSiHayStock(String codigo, int cantidad) {
+        UpdateResult resultado = mongoTemplate.updateFirst(
+                Query.query(Criteria.where("codigo").is(codigo).and("cantidad").gte(cantidad)),
+                new Update().inc("cantidad", -cantidad).currentDate("fechaActualizacion"),
+                Producto.class);
+        return resultado.getModifiedCount() == 1;
+    }
+
+    // Solo en el camino de error se lee el producto, para distinguir "no existe" de "sin stock"
+    private RuntimeException errorDescuento(String codigo, int cantidad) {
+        Optional<Producto> existente = productoRepository.findByCodigo(codigo);
+        contarRechazo(existente.isPresent() ? "sin_stock" : "no_existe");
+        Producto producto = existente
+                .orElseThrow(() -> new NoSuchElementException("No se encontró producto con el código: " + codigo));
+        return new RuntimeException("Stock insuficiente para: " + producto.getNombre() +
+                ". Stock disponible: " + producto.getCantidad() + ", solicitado: " + cantidad);
+    }
+
+    // Cambia con cada escritura de productos en cualquier nodo; no consulta la base
+    public long versionCatalogo() {
+        return cacheLocal.versionCatalogo();
+    }
+
+    public Map<String, Object> estadisticasCache() {
+        return cacheLocal.estadisticas();
+    }
+
     public List<Producto> obtenerTodos() {
         try {
             List<Producto> productos = productoRepository.findAll();
@@ -455,20 +643,28 @@ public class ProductoService {
         }
     }
 
-    // ✅ CORREGIDO: Búsqueda por nombre para autocompletado
+    // ✅ Búsqueda para autocompletado: el índice en memoria decide qué productos y en qué orden
+    // (nombre, código y principios activos) y solo esos se leen de Mongo para devolver el stock actual
     public List<Producto> buscarPorNombre(String nombre) {
         try {
             if (nombre == null || nombre.trim().isEmpty()) {
                 return List.of();
             }
 
-            String nombreBusqueda = nombre.trim().toLowerCase();
-            List<Producto> resultados = productoRepository.findAll().stream()
-                    .filter(producto -> producto.getNombre().toLowerCase().contains(nombreBusqueda))
-                    .limit(10)
+            List<String> ids = autocompletadoService.buscarIds(nombre, 10);
+            if (ids.isEmpty()) {
+                return List.of();
+            }
+
+            Map<String, Integer> posiciones = new HashMap<>();
+            for (int i = 0; i < ids.size(); i++) {
+                posiciones.put(ids.get(i), i);
+            }
+            List<Producto> resultados = productoRepository.findAllById(ids).stream()
+                    .sorted(Comparator.comparingInt(producto -> posiciones.get(producto.getId())))
                     .toList();
 
-            log.debug("🔍 SERVICE - Autocompletado por '{}': {} resultados", nombreBusqueda, resultados.size());
+            log.debug("🔍 SERVICE - Autocompletado por '{}': {} resultados", nombre.trim(), resultados.size());
             return resultados;
         } catch (Exception e) {
             log.error("❌ ERROR SERVICE - Error en búsqueda por nombre '{}': {}", nombre, e.getMessage());
@@ -476,6 +672,18 @@ public class ProductoService {
         }
     }
 
+    // ✅ Sugerencias servidas solo desde memoria, sin consultar Mongo
+    @Timed(value = "lfarma.busqueda", extraTags = {"entidad", "autocompletado"})
+    public List<SugerenciaProductoDTO> autocompletar(String termino, int limite) {
+        if (termino == null || termino.trim().isEmpty()) {
+            return List.of();
+        }
+        if (limite <= 0 || limite > AutocompletadoProductoService.LIMITE_MAXIMO) {
+            throw new IllegalArgumentException("El límite debe estar entre 1 y " + AutocompletadoProductoService.LIMITE_MAXIMO);
+        }
+        return autocompletadoService.buscar(termino, limite);
+    }
+
     // ✅ CORREGIDO: Verificar existencia por código
     public boolean existePorCodigo(String codigo) {
         try {
@@ -515,6 +723,10 @@ public class ProductoService {
         }
     }
 
+    private void contarRechazo(String motivo) {
+        meterRegistry.ifAvailable(registry -> registry.counter("lfarma.stock.rechazos", "motivo", motivo).increment());
+    }
+
     // ✅ CORREGIDO: Actualizar costos de compra
     public int actualizarCostosCompra(double porcentajePrecioVenta) {
         try {
@@ -529,7 +741,9 @@ public class ProductoService {
                 if (producto.getCostoCompra() <= 0 && producto.getPrecio() > 0) {
                     double nuevoCosto = producto.getPrecio() * porcentajePrecioVenta;
                     producto.setCostoCompra(Math.round(nuevoCosto * 100.0) / 100.0);
+                    producto.setFechaActualizacion(new Date());
                     productoRepository.save(producto);
+                    cacheLocal.invalidar(producto.getId(), producto.getCodigo());
                     actualizados++;
 
                     log.debug("💰 SERVICE - Costo actualizado: {} - Precio: ${}, Costo: ${}",
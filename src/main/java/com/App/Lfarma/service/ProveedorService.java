@@ -1,8 +1,11 @@
 package com.App.Lfarma.service;
 
+import com.App.Lfarma.config.RedisConfig;
 import com.App.Lfarma.entity.Proveedor;
 import com.App.Lfarma.repository.ProveedorRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -17,6 +20,8 @@ public class ProveedorService {
     @Autowired
     private ProveedorRepository proveedorRepository;
 
+    // Lista completa cacheada en Redis; se invalida al guardar o desactivar un proveedor
+    @Cacheable(cacheNames = RedisConfig.CACHE_PROVEEDORES, key = "'todos'")
     public List<Proveedor> listarProveedores() {
         return proveedorRepository.findAll();
     }
@@ -40,6 +45,7 @@ public class ProveedorService {
         return proveedorRepository.findById(id);
     }
 
+    @CacheEvict(cacheNames = RedisConfig.CACHE_PROVEEDORES, key = "'todos'")
     public Proveedor guardarProveedor(Proveedor proveedor) {
         // Validaciones
         if (proveedor.getCodigo() == null || proveedor.getCodigo().trim().isEmpty()) {
@@ -78,6 +84,7 @@ public class ProveedorService {
         return proveedorRepository.save(proveedor);
     }
 
+    @CacheEvict(cacheNames = RedisConfig.CACHE_PROVEEDORES, key = "'todos'")
     public void eliminarProveedor(String codigo) {
         Optional<Proveedor> proveedor = proveedorRepository.findByCodigo(codigo);
         if (proveedor.isPresent()) {
@@ -0,0 +1,140 @@
+package com.App.Lfarma.service;
+
+import com.App.Lfarma.entity.ModeloPrediccion;
+import com.App.Lfarma.repository.ModeloPrediccionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import weka.classifiers.Classifier;
+import weka.core.Instances;
+import weka.core.SerializationHelper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Registro de modelos entrenados. Cada versión guarda el clasificador serializado con la
+ * estructura del dataset y el hash de los datos de entrenamiento, para que al arrancar se
+ * cargue el modelo en lugar de volver a entrenarlo mientras los datos no cambien.
+ */
+@Service
+public class RegistroModeloService {
+
+    private static final Logger log = LoggerFactory.getLogger(RegistroModeloService.class);
+
+    // Cambiar si se modifican los atributos que usa la clasificación o el algoritmo
+    private static final String ESQUEMA = "J48|precio,cantidad,precioUnitario|v1";
+
+    private static final int VERSIONES_CONSERVADAS = 5;
+
+    @Autowired
+    private ModeloPrediccionRepository modeloPrediccionRepository;
+
+    public static String calcularHash(byte[] datos) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(ESQUEMA.getBytes(StandardCharsets.UTF_8));
+            digest.update(datos);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (Exception e) {
+            throw new IllegalStateException("No se pudo calcular el hash del dataset", e);
+        }
+    }
+
+    // Modelo entrenado con exactamente estos datos, si existe
+    public Optional<ModeloActivo> cargar(String hashDatos) {
+        return modeloPrediccionRepository.findTopByHashDatosOrderByVersionDesc(hashDatos).map(this::deserializar);
+    }
+
+    // Última versión registrada, aunque se haya entrenado con otros datos
+    public Optional<ModeloActivo> cargarUltimo() {
+        return modeloPrediccionRepository.findTopByOrderByVersionDesc().map(this::deserializar);
+    }
+
+    public ModeloActivo registrar(Classifier classifier, Instances estructura, String hashDatos,
+                                  int instancias, long duracionEntrenamientoMs) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SerializationHelper.writeAll(bytes, new Object[]{classifier, new Instances(estructura, 0)});
+
+        int version = modeloPrediccionRepository.findTopByOrderByVersionDesc()
+                .map(ModeloPrediccion::getVersion)
+                .orElse(0) + 1;
+
+        ModeloPrediccion registro = new ModeloPrediccion();
+        registro.setVersion(version);
+        registro.setHashDatos(hashDatos);
+        registro.setAlgoritmo(classifier.getClass().getSimpleName());
+        registro.setInstancias(instancias);
+        registro.setFechaEntrenamiento(new Date());
+        registro.setDuracionEntrenamientoMs(duracionEntrenamientoMs);
+        registro.setModelo(bytes.toByteArray());
+        modeloPrediccionRepository.save(registro);
+
+        long eliminadas = modeloPrediccionRepository.deleteByVersionLessThan(version - VERSIONES_CONSERVADAS + 1);
+        log.info("💾 Modelo v{} registrado ({} bytes, {} versiones antiguas eliminadas)",
+                version, registro.getModelo().length, eliminadas);
+
+        return new ModeloActivo(classifier, estructura, version, hashDatos, "entrenado", instancias,
+                registro.getFechaEntrenamiento(), duracionEntrenamientoMs, 0);
+    }
+
+    private ModeloActivo deserializar(ModeloPrediccion registro) {
+        long inicio = System.nanoTime();
+        try {
+            Object[] objetos = SerializationHelper.readAll(new ByteArrayInputStream(registro.getModelo()));
+            Classifier classifier = (Classifier) objetos[0];
+            Instances estructura = (Instances) objetos[1];
+            if (estructura.classIndex() == -1) {
+                estructura.setClassIndex(estructura.numAttributes() - 1);
+            }
+            long cargaMs = (System.nanoTime() - inicio) / 1_000_000;
+            return new ModeloActivo(classifier, estructura, registro.getVersion(), registro.getHashDatos(),
+                    "registro", registro.getInstancias(), registro.getFechaEntrenamiento(),
+                    registro.getDuracionEntrenamientoMs(), cargaMs);
+        } catch (Exception e) {
+            throw new IllegalStateException("Modelo v" + registro.getVersion() + " no se pudo deserializar", e);
+        }
+    }
+
+    // Modelo listo para clasificar; inmutable para poder reemplazarlo de una sola vez
+    public static final class ModeloActivo {
+        private final Classifier classifier;
+        private final Instances estructura;
+        private final int version;
+        private final String hashDatos;
+        private final String origen;
+        private final int instancias;
+        private final Date fechaEntrenamiento;
+        private final long duracionEntrenamientoMs;
+        private final long cargaMs;
+
+        ModeloActivo(Classifier classifier, Instances estructura, int version, String hashDatos, String origen,
+                     int instancias, Date fechaEntrenamiento, long duracionEntrenamientoMs, long cargaMs) {
+            this.classifier = classifier;
+            this.estructura = estructura;
+            this.version = version;
+            this.hashDatos = hashDatos;
+            this.origen = origen;
+            this.instancias = instancias;
+            this.fechaEntrenamiento = fechaEntrenamiento;
+            this.duracionEntrenamientoMs = duracionEntrenamientoMs;
+            this.cargaMs = cargaMs;
+        }
+
+        public Classifier getClassifier() { return classifier; }
+        public Instances getEstructura() { return estructura; }
+        public int getVersion() { return version; }
+        public String getHashDatos() { return hashDatos; }
+        public String getOrigen() { return origen; }
+        public int getInstancias() { return instancias; }
+        public Date getFechaEntrenamiento() { return fechaEntrenamiento; }
+        public long getDuracionEntrenamientoMs() { return duracionEntrenamientoMs; }
+        public long getCargaMs() { return cargaMs; }
+    }
+}
@@ -1,6 +1,8 @@
 // RegistroService.java
 package com.App.Lfarma.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Autowired;
 import com.App.Lfarma.DTO.RegistroDTO;
@@ -10,6 +12,8 @@ import com.App.Lfarma.entity.Cliente;
 @Service
 public class RegistroService {
 
+    private static final Logger log = LoggerFactory.getLogger(RegistroService.class);
+
     @Autowired
     private UsuarioService usuarioService;
 
@@ -49,7 +53,7 @@ public class RegistroService {
             try {
                 usuarioService.eliminarUsuario(savedUsuario.getId());
             } catch (Exception ex) {
-                ex.printStackTrace();
+                log.error("❌ No se pudo revertir el usuario {}: {}", savedUsuario.getUsername(), ex.getMessage(), ex);
             }
             throw new RuntimeException("Error creando cliente en Mongo. Usuario revertido. " + e.getMessage(), e);
         }
@@ -1,98 +1,263 @@
 package com.App.Lfarma.service;
 
+import com.App.Lfarma.DTO.ReporteAgrupadoDTO;
 import com.App.Lfarma.DTO.ReporteDTO;
+import com.App.Lfarma.DTO.ResumenReporteDTO;
 import com.App.Lfarma.entity.Factura;
-import com.App.Lfarma.repository.FacturaRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import io.micrometer.core.annotation.Timed;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
 
+// Los reportes se calculan con agregaciones en Mongo ($match por fecha, $unwind de
+// detalles, $group) y se leen con cursor, sin cargar las facturas en memoria.
 @Service
 public class ReporteService {
 
+    private static final Logger log = LoggerFactory.getLogger(ReporteService.class);
+
+    private static final int TAMANO_LOTE_CURSOR = 500;
+
+    private static final DateTimeFormatter FORMATO_FECHA_CSV = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    public enum Agrupacion { DIA, PRODUCTO, CATEGORIA, VENDEDOR }
+
+    public enum FormatoExportacion { CSV, NDJSON }
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
     @Autowired
-    private FacturaRepository facturaRepository;
+    private ObjectMapper objectMapper;
 
+    @Timed(value = "lfarma.reportes", extraTags = {"tipo", "detalle"})
     public List<ReporteDTO> generarReporte(Date desde, Date hasta) {
-        List<Factura> facturas = facturaRepository.findByFechaBetween(desde, hasta);
         List<ReporteDTO> reportes = new ArrayList<>();
+        recorrerReporte(desde, hasta, reportes::add);
+        return reportes;
+    }
 
-        for (Factura f : facturas) {
-            if (f.getDetalles() != null) {
-                f.getDetalles().forEach(detalle -> {
-            // Usar el precio unitario guardado en el detalle (precio al momento de la venta)
-            double totalVenta = detalle.getCantidad() * detalle.getPrecioUnitario();
-            double ganancia = detalle.getCantidad() *
-                (detalle.getPrecioUnitario() - detalle.getProducto().getCostoCompra());
-
-                    reportes.add(new ReporteDTO(
-                            f.getFecha(),
-                            detalle.getProducto().getNombre(),
-                            detalle.getCantidad(),
-                            totalVenta,
-                            ganancia
-                    ));
-                });
+    // Entrega una línea vendida a la vez al consumidor, leyendo del cursor por lotes
+    public void recorrerReporte(Date desde, Date hasta, Consumer<ReporteDTO> consumidor) {
+        List<Document> pipeline = List.of(
+                filtroFechas(desde, hasta),
+                new Document("$sort", new Document("fecha", 1)),
+                new Document("$unwind", "$detalles"),
+                new Document("$project", new Document("_id", 0)
+                        .append("fecha", 1)
+                        .append("nombreProducto", "$detalles.producto.nombre")
+                        .append("cantidad", "$detalles.cantidad")
+                        .append("totalVenta", ventaLinea("$detalles"))
+                        .append("ganancia", gananciaLinea("$detalles"))));
+
+        try (MongoCursor<Document> cursor = facturas().aggregate(pipeline)
+                .allowDiskUse(true)
+                .batchSize(TAMANO_LOTE_CURSOR)
+                .cursor()) {
+            while (cursor.hasNext()) {
+                Document linea = cursor.next();
+                consumidor.accept(new ReporteDTO(
+                        linea.getDate("fecha"),
+                        linea.getString("nombreProducto"),
+                        (int) numero(linea, "cantidad"),
+                        numero(linea, "totalVenta"),
+                        numero(linea, "ganancia")));
             }
         }
+    }
 
-        return reportes;
+    // Escribe el reporte fila por fila mientras se lee el cursor; la memoria usada no
+    // depende del rango. Se vacía el buffer tras la primera fila para que el cliente
+    // reciba datos de inmediato. Devuelve la cantidad de filas escritas.
+    @Timed(value = "lfarma.reportes", extraTags = {"tipo", "exportacion"})
+    public long exportarReporte(Date desde, Date hasta, FormatoExportacion formato, Writer salida) throws IOException {
+        long inicio = System.currentTimeMillis();
+        long[] filas = {0};
+
+        if (formato == FormatoExportacion.CSV) {
+            salida.write("fecha,producto,cantidad,totalVenta,ganancia\n");
+            salida.flush();
+        }
+
+        try {
+            recorrerReporte(desde, hasta, fila -> {
+                try {
+                    salida.write(formato == FormatoExportacion.CSV ? lineaCsv(fila) : objectMapper.writeValueAsString(fila));
+                    salida.write('\n');
+                    if (++filas[0] == 1) {
+                        salida.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // Normalmente el cliente cerró la conexión; el cursor ya quedó cerrado
+            throw e.getCause();
+        }
+        salida.flush();
+
+        log.info("📤 Reporte {} exportado: {} filas en {} ms", formato, filas[0], System.currentTimeMillis() - inicio);
+        return filas[0];
     }
 
-    public com.App.Lfarma.DTO.ResumenReporteDTO generarResumen(Date desde, Date hasta) {
+    // Totales por día, producto, categoría o vendedor en el rango
+    @Timed(value = "lfarma.reportes", extraTags = {"tipo", "agrupado"})
+    public List<ReporteAgrupadoDTO> generarReporteAgrupado(Date desde, Date hasta, Agrupacion agrupacion) {
+        List<Document> pipeline = List.of(
+                filtroFechas(desde, hasta),
+                new Document("$unwind", "$detalles"),
+                new Document("$group", new Document("_id", claveAgrupacion(agrupacion))
+                        .append("cantidad", new Document("$sum", "$detalles.cantidad"))
+                        .append("totalVenta", new Document("$sum", ventaLinea("$detalles")))
+                        .append("ganancia", new Document("$sum", gananciaLinea("$detalles")))),
+                new Document("$sort", new Document("_id", 1)));
+
+        List<ReporteAgrupadoDTO> grupos = new ArrayList<>();
+        for (Document grupo : facturas().aggregate(pipeline).allowDiskUse(true)) {
+            grupos.add(new ReporteAgrupadoDTO(
+                    String.valueOf(grupo.get("_id")),
+                    (long) numero(grupo, "cantidad"),
+                    redondear(numero(grupo, "totalVenta")),
+                    redondear(numero(grupo, "ganancia"))));
+        }
+        log.debug("📊 Reporte agrupado por {}: {} grupos", agrupacion, grupos.size());
+        return grupos;
+    }
+
+    @Timed(value = "lfarma.reportes", extraTags = {"tipo", "resumen"})
+    public ResumenReporteDTO generarResumen(Date desde, Date hasta) {
         // Si no se proporcionan fechas, calcular para el mes actual
         if (desde == null || hasta == null) {
-            java.util.Calendar cal = java.util.Calendar.getInstance();
-            cal.set(java.util.Calendar.DAY_OF_MONTH, 1);
-            cal.set(java.util.Calendar.HOUR_OF_DAY, 0);
-            cal.set(java.util.Calendar.MINUTE, 0);
-            cal.set(java.util.Calendar.SECOND, 0);
-            cal.set(java.util.Calendar.MILLISECOND, 0);
+            Calendar cal = Calendar.getInstance();
+            cal.set(Calendar.DAY_OF_MONTH, 1);
+            cal.set(Calendar.HOUR_OF_DAY, 0);
+            cal.set(Calendar.MINUTE, 0);
+            cal.set(Calendar.SECOND, 0);
+            cal.set(Calendar.MILLISECOND, 0);
             desde = cal.getTime();
-            
-            cal.add(java.util.Calendar.MONTH, 1);
-            cal.add(java.util.Calendar.MILLISECOND, -1);
+
+            cal.add(Calendar.MONTH, 1);
+            cal.add(Calendar.MILLISECOND, -1);
             hasta = cal.getTime();
         }
 
-        List<Factura> facturas = facturaRepository.findByFechaBetween(desde, hasta);
-        System.out.println("[ReporteService] Generando resumen desde " + desde + " hasta " + hasta);
-        System.out.println("[ReporteService] Facturas encontradas: " + facturas.size());
-
-        double totalVentas = 0;
-        double totalGanancia = 0;
-        long productosVendidos = 0;
-        long facturasEmitidas = facturas.size();
-
-        for (Factura f : facturas) {
-            System.out.println("[ReporteService] Procesando factura ID: " + f.getId() + " - Fecha: " + f.getFecha());
-            if (f.getDetalles() != null) {
-                for (var detalle : f.getDetalles()) {
-                    double venta = detalle.getCantidad() * detalle.getPrecioUnitario();
-                    double ganancia = detalle.getCantidad() * (detalle.getPrecioUnitario() - detalle.getProducto().getCostoCompra());
-                    
-                    System.out.println("[ReporteService] Detalle - Producto: " + detalle.getProducto().getNombre() + 
-                                     " | Cantidad: " + detalle.getCantidad() + 
-                                     " | Precio Unitario: " + detalle.getPrecioUnitario() + 
-                                     " | Costo Compra: " + detalle.getProducto().getCostoCompra() +
-                                     " | Venta: " + venta +
-                                     " | Ganancia: " + ganancia);
-                    
-                    totalVentas += venta;
-                    totalGanancia += ganancia;
-                    productosVendidos += detalle.getCantidad();
-                }
-            }
+        // Primero se resume cada factura con $map sobre sus detalles y luego se suman todas,
+        // así el resultado es un solo documento sin importar el tamaño del rango
+        List<Document> pipeline = List.of(
+                filtroFechas(desde, hasta),
+                new Document("$project", new Document()
+                        .append("venta", sumaDetalles(ventaLinea("$$d")))
+                        .append("ganancia", sumaDetalles(gananciaLinea("$$d")))
+                        .append("unidades", sumaDetalles("$$d.cantidad"))),
+                new Document("$group", new Document("_id", null)
+                        .append("totalVentas", new Document("$sum", "$venta"))
+                        .append("totalGanancia", new Document("$sum", "$ganancia"))
+                        .append("productosVendidos", new Document("$sum", "$unidades"))
+                        .append("facturasEmitidas", new Document("$sum", 1))));
+
+        Document total = facturas().aggregate(pipeline).first();
+        if (total == null) {
+            log.debug("📊 Resumen {} - {}: sin facturas", desde, hasta);
+            return new ResumenReporteDTO(0, 0, 0, 0);
+        }
+
+        ResumenReporteDTO resumen = new ResumenReporteDTO(
+                numero(total, "totalVentas"),
+                numero(total, "totalGanancia"),
+                (long) numero(total, "productosVendidos"),
+                (long) numero(total, "facturasEmitidas"));
+
+        log.debug("📊 Resumen {} - {}: ventas {}, ganancia {}, productos {}, facturas {}",
+                desde, hasta, resumen.getTotalVentas(), resumen.getTotalGanancia(),
+                resumen.getProductosVendidos(), resumen.getFacturasEmitidas());
+        return resumen;
+    }
+
+    private Document filtroFechas(Date desde, Date hasta) {
+        return new Document("$match", new Document("fecha", new Document("$gte", desde).append("$lte", hasta)));
+    }
+
+    // cantidad * precioUnitario de una línea (detalle desenrollado o variable de $map)
+    private Document ventaLinea(String detalle) {
+        return new Document("$multiply", List.of(detalle + ".cantidad", detalle + ".precioUnitario"));
+    }
+
+    // cantidad * (precioUnitario - costoCompra al momento de la venta)
+    private Document gananciaLinea(String detalle) {
+        Document costo = new Document("$ifNull", List.of(detalle + ".producto.costoCompra", 0));
+        return new Document("$multiply", List.of(detalle + ".cantidad",
+                new Document("$subtract", List.of(detalle + ".precioUnitario", costo))));
+    }
+
+    private Document sumaDetalles(Object expresionPorDetalle) {
+        return new Document("$sum", new Document("$map", new Document()
+                .append("input", new Document("$ifNull", List.of("$detalles", List.of())))
+                .append("as", "d")
+                .append("in", expresionPorDetalle)));
+    }
+
+    private Object claveAgrupacion(Agrupacion agrupacion) {
+        return switch (agrupacion) {
+            case DIA -> new Document("$dateToString", new Document("format", "%Y-%m-%d")
+                    .append("date", "$fecha")
+                    .append("timezone", ZoneId.systemDefault().getId()));
+            case PRODUCTO -> new Document("$ifNull", List.of("$detalles.producto.nombre", "Sin nombre"));
+            case CATEGORIA -> new Document("$ifNull", List.of("$detalles.producto.categoria", "Sin categoría"));
+            case VENDEDOR -> new Document("$ifNull", List.of("$vendedor", "Sin vendedor"));
+        };
+    }
+
+    private String lineaCsv(ReporteDTO fila) {
+        String fecha = fila.getFecha() != null
+                ? FORMATO_FECHA_CSV.format(fila.getFecha().toInstant().atZone(ZoneId.systemDefault()))
+                : "";
+        return fecha + ','
+                + campoCsv(fila.getNombreProducto()) + ','
+                + fila.getCantidad() + ','
+                + String.format(Locale.ROOT, "%.2f", fila.getTotalVenta()) + ','
+                + String.format(Locale.ROOT, "%.2f", fila.getGanancia());
+    }
+
+    // Comillas solo cuando el valor contiene separadores, comillas o saltos de línea
+    private String campoCsv(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        if (valor.indexOf(',') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0 && valor.indexOf('\r') < 0) {
+            return valor;
         }
+        return '"' + valor.replace("\"", "\"\"") + '"';
+    }
 
-        System.out.println("[ReporteService] Resumen Final - Total Ventas: " + totalVentas + 
-                          " | Total Ganancia: " + totalGanancia +
-                          " | Productos Vendidos: " + productosVendidos +
-                          " | Facturas Emitidas: " + facturasEmitidas);
+    private MongoCollection<Document> facturas() {
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Factura.class));
+    }
+
+    private double numero(Document documento, String campo) {
+        Object valor = documento.get(campo);
+        return valor instanceof Number n ? n.doubleValue() : 0;
+    }
 
-        return new com.App.Lfarma.DTO.ResumenReporteDTO(totalVentas, totalGanancia, productosVendidos, facturasEmitidas);
+    private double redondear(double valor) {
+        return Math.round(valor * 100.0) / 100.0;
     }
 }
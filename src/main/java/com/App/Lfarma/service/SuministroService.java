@@ -1,10 +1,12 @@
 package com.App.Lfarma.service;
 
+import com.App.Lfarma.DTO.PaginaCursorDTO;
 import com.App.Lfarma.entity.*;
 import com.App.Lfarma.repository.SuministroRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,6 +23,13 @@ public class SuministroService {
     @Autowired
     private ProductoService productoService;
 
+    @Autowired
+    private PaginacionCursorService paginacionCursor;
+
+    // Más recientes primero; el mismo orden sirve para la paginación por número y por cursor
+    public static final PaginacionCursorService.Orden<Suministro> ORDEN_LISTADO =
+            PaginacionCursorService.Orden.recientesPrimero("fechaSuministro", Suministro::getFechaSuministro, Suministro::getId);
+
     @Transactional
     public Suministro registrarSuministro(Suministro suministro) {
         // Validaciones
@@ -36,31 +45,25 @@ public class SuministroService {
         suministro.setFechaSuministro(new Date());
         suministro.setEstado("RECIBIDO");
 
+        for (DetalleSuministro detalle : suministro.getDetalles()) {
+            if (detalle.getCantidad() < 0) {
+                throw new IllegalArgumentException("La cantidad suministrada no puede ser negativa");
+            }
+        }
+
         // Procesar cada detalle y ACTUALIZAR STOCK
         for (DetalleSuministro detalle : suministro.getDetalles()) {
             Producto producto = detalle.getProducto();
 
-            // ✅ ACTUALIZAR STOCK AUTOMÁTICAMENTE
-            producto.setCantidad(producto.getCantidad() + detalle.getCantidad());
-
-            // ✅ ACTUALIZAR COSTO DE COMPRA si es mayor a 0
-            if (detalle.getPrecioCompra() > 0) {
-                producto.setCostoCompra(detalle.getPrecioCompra());
+            // ✅ ACTUALIZAR STOCK con $inc: no se reescribe la cantidad leída al armar el formulario,
+            // que pisaría las ventas hechas mientras tanto
+            if (detalle.getCantidad() > 0) {
+                productoService.aumentarStock(producto.getCodigo(), detalle.getCantidad());
             }
 
-            // ✅ ACTUALIZAR PRECIO si se sugiere uno nuevo y es mayor a 0
-            if (detalle.getPrecioVentaSugerido() > 0) {
-                producto.setPrecio(detalle.getPrecioVentaSugerido());
-            }
-
-            // ✅ ACTUALIZAR PROVEEDOR del producto
-            producto.setProveedor(suministro.getProveedor());
-
-            // ✅ ACTUALIZAR proveedorId también para compatibilidad
-            producto.setProveedorId(suministro.getProveedor().getId());
-
-            // Guardar producto actualizado
-            productoService.guardarProducto(producto);
+            // ✅ COSTO DE COMPRA, PRECIO sugerido (si son mayores a 0) y PROVEEDOR, solo esos campos
+            productoService.actualizarDatosCompra(producto.getId(), detalle.getPrecioCompra(),
+                    detalle.getPrecioVentaSugerido(), suministro.getProveedor());
         }
 
         return suministroRepository.save(suministro);
@@ -74,6 +77,14 @@ public class SuministroService {
         return suministroRepository.findAll(pageable);
     }
 
+    public PaginaCursorDTO<Suministro> listarSuministrosCursor(String after, int size, boolean conTotal) {
+        return paginacionCursor.buscar(Suministro.class, new Query(), ORDEN_LISTADO, after, size, conTotal);
+    }
+
+    public String cursorDespuesDe(Suministro suministro) {
+        return paginacionCursor.cursorDe(ORDEN_LISTADO, suministro);
+    }
+
     public Page<Suministro> buscarSuministrosPorProveedor(String codigoProveedor, Pageable pageable) {
         return suministroRepository.findByProveedorCodigo(codigoProveedor, pageable);
     }
@@ -1,60 +1,43 @@
 package com.App.Lfarma.service;
 
-import com.App.Lfarma.entity.Usuario;
 import com.App.Lfarma.repository.UsuarioRepository;
+import com.App.Lfarma.service.CacheUsuarioService.UsuarioCacheado;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.Collections;
-
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
 
+    private static final Logger log = LoggerFactory.getLogger(UserDetailsServiceImpl.class);
+
     @Autowired
     private UsuarioRepository usuarioRepository;
 
     @Autowired
-    private RedisTemplate<String, Usuario> redisTemplate;
-
-    private static final String PREFIX = "usuario:";
+    private CacheUsuarioService cacheUsuarios;
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        System.out.println("🔍 Buscando usuario: " + username);
-
-        String redisKey = PREFIX + username;
-        Usuario usuario = redisTemplate.opsForValue().get(redisKey);
-
-        if (usuario == null) {
-            System.out.println("📦 Usuario no encontrado en Redis, buscando en BD...");
-            usuario = usuarioRepository.findByUsername(username)
-                    .orElseThrow(() -> {
-                        System.out.println("❌ Usuario no encontrado en BD: " + username);
-                        return new UsernameNotFoundException("Usuario no encontrado: " + username);
-                    });
-            redisTemplate.opsForValue().set(redisKey, usuario);
-            System.out.println("✅ Usuario encontrado en BD y guardado en Redis");
-        } else {
-            System.out.println("✅ Usuario encontrado en Redis");
-        }
-
-        // Log del rol encontrado
-        System.out.println("🎭 Rol encontrado en BD/Redis: '" + usuario.getRol() + "'");
+        UsuarioCacheado usuario = cacheUsuarios.buscar(username, () -> usuarioRepository.findByUsername(username))
+                .orElseThrow(() -> {
+                    log.debug("❌ Usuario no encontrado: {}", username);
+                    return new UsernameNotFoundException("Usuario no encontrado: " + username);
+                });
 
+        // Se arma un User nuevo en cada llamada: Spring Security borra la contraseña del que recibe
         UserDetails userDetails = User.builder()
-                .username(usuario.getUsername())
-                .password(usuario.getPassword())
-                .roles(usuario.getRol().toUpperCase()) // Esto crea ROLE_ADMIN, ROLE_EMPLEADO, etc.
+                .username(usuario.username())
+                .password(usuario.password())
+                .roles(usuario.rol().toUpperCase()) // Esto crea ROLE_ADMIN, ROLE_EMPLEADO, etc.
                 .build();
 
-        System.out.println("🏷️  Authorities finales: " + userDetails.getAuthorities());
-
+        log.debug("🏷️ Usuario {} con authorities {}", username, userDetails.getAuthorities());
         return userDetails;
     }
-}
\ No newline at end of file
+}
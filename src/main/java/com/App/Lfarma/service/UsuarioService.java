@@ -13,12 +13,15 @@ public class UsuarioService {
 
     private final UsuarioRepository usuarioRepository;
     private final PasswordEncoder passwordEncoder;
+    private final CacheUsuarioService cacheUsuarios;
 
     // ✅ CORRECCIÓN: Usar @Autowired en lugar de constructor para evitar conflictos
     @org.springframework.beans.factory.annotation.Autowired
-    public UsuarioService(UsuarioRepository usuarioRepository, PasswordEncoder passwordEncoder) {
+    public UsuarioService(UsuarioRepository usuarioRepository, PasswordEncoder passwordEncoder,
+                          CacheUsuarioService cacheUsuarios) {
         this.usuarioRepository = usuarioRepository;
         this.passwordEncoder = passwordEncoder;
+        this.cacheUsuarios = cacheUsuarios;
     }
 
     public Usuario autenticar(String username, String password) {
@@ -38,14 +41,16 @@ public class UsuarioService {
 
     public Usuario registrar(Usuario usuario) {
         usuario.setPassword(passwordEncoder.encode(usuario.getPassword()));
-        return usuarioRepository.save(usuario);
+        Usuario guardado = usuarioRepository.save(usuario);
+        cacheUsuarios.invalidar(guardado.getUsername());
+        return guardado;
     }
 
     public void eliminarUsuario(Long id) {
-        if (!usuarioRepository.existsById(id)) {
-            throw new RuntimeException("Usuario no encontrado con id: " + id);
-        }
-        usuarioRepository.deleteById(id);
+        Usuario usuario = usuarioRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Usuario no encontrado con id: " + id));
+        usuarioRepository.delete(usuario);
+        cacheUsuarios.invalidar(usuario.getUsername());
     }
 
     public Optional<Usuario> findByUsername(String username) {
@@ -0,0 +1,133 @@
+package com.App.Lfarma.service;
+
+import com.App.Lfarma.entity.DetalleFactura;
+import com.App.Lfarma.entity.Factura;
+import com.App.Lfarma.entity.VentaDiaria;
+import com.App.Lfarma.repository.VentaDiariaRepository;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+@Service
+public class VentaDiariaService {
+
+    private static final Logger log = LoggerFactory.getLogger(VentaDiariaService.class);
+
+    @Autowired
+    private VentaDiariaRepository ventaDiariaRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    // ✅ Sumar una factura al acumulado de su día con un único upsert $inc (atómico)
+    public void registrarVenta(Factura factura) {
+        double costo = 0;
+        long unidades = 0;
+        if (factura.getDetalles() != null) {
+            for (DetalleFactura detalle : factura.getDetalles()) {
+                unidades += detalle.getCantidad();
+                if (detalle.getProducto() != null) {
+                    costo += detalle.getCantidad() * detalle.getProducto().getCostoCompra();
+                }
+            }
+        }
+
+        Update update = new Update()
+                .inc("facturas", 1)
+                .inc("ingresos", factura.getTotal())
+                .inc("ganancia", factura.getGananciaNeta())
+                .inc("costo", costo)
+                .inc("unidades", unidades)
+                .currentDate("actualizado");
+
+        String dia = claveDia(factura.getFecha());
+        mongoTemplate.upsert(Query.query(Criteria.where("_id").is(dia)), update, VentaDiaria.class);
+        log.debug("📊 Venta diaria {} actualizada con factura {}", dia, factura.getId());
+    }
+
+    // ✅ Acumulado del día: una lectura por ID; si no hubo ventas se devuelve en ceros
+    public VentaDiaria obtenerDia(LocalDate dia) {
+        String clave = dia.toString();
+        return ventaDiariaRepository.findById(clave).orElseGet(() -> new VentaDiaria(clave));
+    }
+
+    public VentaDiaria obtenerHoy() {
+        return obtenerDia(LocalDate.now(zona()));
+    }
+
+    // ✅ Reconstruir los acumulados de los días cerrados desde las facturas históricas.
+    // La agregación corre en Mongo y reemplaza día por día con $merge solo hasta el inicio de
+    // hoy: el día en curso lo siguen acumulando las ventas con $inc y no se pisa. Los días que
+    // ya no tienen facturas (no tocados por el $merge) se eliminan.
+    public long reconstruir() {
+        long inicio = System.currentTimeMillis();
+        String zona = zona().getId();
+        LocalDate hoy = LocalDate.now(zona());
+        Date corte = Date.from(hoy.atStartOfDay(zona()).toInstant());
+        Date marca = new Date(inicio);
+        String coleccion = mongoTemplate.getCollectionName(VentaDiaria.class);
+
+        Document detalles = new Document("$ifNull", List.of("$detalles", List.of()));
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document("fecha", new Document("$type", "date").append("$lt", corte))),
+                new Document("$project", new Document()
+                        .append("dia", new Document("$dateToString", new Document("format", "%Y-%m-%d")
+                                .append("date", "$fecha")
+                                .append("timezone", zona)))
+                        .append("total", 1)
+                        .append("gananciaNeta", 1)
+                        .append("costo", new Document("$sum", new Document("$map", new Document("input", detalles)
+                                .append("as", "d")
+                                .append("in", new Document("$multiply", List.of("$$d.cantidad",
+                                        new Document("$ifNull", List.of("$$d.producto.costoCompra", 0))))))))
+                        .append("unidades", new Document("$sum", new Document("$map", new Document("input", detalles)
+                                .append("as", "d")
+                                .append("in", "$$d.cantidad"))))),
+                new Document("$group", new Document("_id", "$dia")
+                        .append("facturas", new Document("$sum", 1))
+                        .append("ingresos", new Document("$sum", "$total"))
+                        .append("ganancia", new Document("$sum", "$gananciaNeta"))
+                        .append("costo", new Document("$sum", "$costo"))
+                        .append("unidades", new Document("$sum", "$unidades"))),
+                new Document("$set", new Document("actualizado", marca)),
+                new Document("$merge", new Document("into", coleccion)
+                        .append("on", "_id")
+                        .append("whenMatched", "replace")
+                        .append("whenNotMatched", "insert")));
+
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Factura.class))
+                .aggregate(pipeline)
+                .allowDiskUse(true)
+                .toCollection();
+
+        // Días cerrados sin facturas: el $merge no los reescribió
+        long huerfanos = mongoTemplate.remove(Query.query(Criteria.where("_id").lt(hoy.toString())
+                .and("actualizado").lt(marca)), VentaDiaria.class).getDeletedCount();
+
+        long dias = mongoTemplate.count(Query.query(Criteria.where("_id").lt(hoy.toString())), VentaDiaria.class);
+        log.info("✅ Ventas diarias reconstruidas hasta {}: {} días ({} sin facturas eliminados) en {} ms",
+                hoy, dias, huerfanos, System.currentTimeMillis() - inicio);
+        return dias;
+    }
+
+    private String claveDia(Date fecha) {
+        Date base = fecha != null ? fecha : new Date();
+        return base.toInstant().atZone(zona()).toLocalDate().toString();
+    }
+
+    // Misma zona que usa el dashboard para definir "hoy"
+    private ZoneId zona() {
+        return ZoneId.systemDefault();
+    }
+}
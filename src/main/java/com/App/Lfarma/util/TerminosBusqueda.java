@@ -0,0 +1,44 @@
+package com.App.Lfarma.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+// Normalización compartida por los términos de búsqueda de facturas y productos,
+// la búsqueda indexada y el autocompletado (las consultas se normalizan igual que los datos)
+public final class TerminosBusqueda {
+
+    private TerminosBusqueda() {
+    }
+
+    // Cada valor se guarda completo y también palabra por palabra, así la búsqueda
+    // por prefijo encuentra "perez" dentro de "Juan Pérez"
+    public static List<String> generar(String... valores) {
+        Set<String> terminos = new LinkedHashSet<>();
+        for (String valor : valores) {
+            String normalizado = normalizar(valor);
+            if (normalizado.isEmpty()) {
+                continue;
+            }
+            terminos.add(normalizado);
+            for (String palabra : normalizado.split(" ")) {
+                if (!palabra.isEmpty()) {
+                    terminos.add(palabra);
+                }
+            }
+        }
+        return new ArrayList<>(terminos);
+    }
+
+    // Minúsculas, sin tildes y con espacios simples
+    public static String normalizar(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        String sinTildes = Normalizer.normalize(valor, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return sinTildes.toLowerCase(Locale.ROOT).trim().replaceAll("\\s+", " ");
+    }
+}
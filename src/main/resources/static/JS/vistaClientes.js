@@ -266,7 +266,8 @@ function obtenerRutaImagen(producto) {
         // Si ya es una URL completa o ruta absoluta
         if (imagen.startsWith('http') || imagen.startsWith('/')) {
             console.log(`🖼️ Imagen real encontrada para ${producto.nombre}: ${imagen}`);
-            return imagen;
+            // Las imágenes subidas tienen miniatura: la tarjeta no necesita la foto completa
+            return imagen.startsWith('/productos/images/') ? `${imagen}?ancho=200` : imagen;
         }
 
         // Si es un nombre de archivo, construir ruta
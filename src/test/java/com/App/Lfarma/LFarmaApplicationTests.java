@@ -3,7 +3,7 @@ package com.App.Lfarma;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "lfarma.jwt.permitir-clave-temporal=true")
 class LFarmaApplicationTests {
 
 	@Test
@@ -0,0 +1,115 @@
+package com.App.Lfarma.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ráfaga de 2000 usuarios concurrentes contra el modelo de hilos del servidor. Cada petición
+ * hace las idas y vueltas secuenciales de guardarFacturaDesdeCarrito (12 esperas de I/O de 2 ms
+ * a Mongo/MySQL/Redis, simuladas) con un poco de CPU entre ellas:
+ * - plataforma: pool de 200 hilos, como el máximo por defecto de Tomcat.
+ * - virtual: un hilo virtual por petición (spring.threads.virtual.enabled=true).
+ * - virtualFijado: igual, pero la I/O ocurre dentro de un synchronized, como pasaba en
+ *   entrenarModeloSimple; el hilo virtual fija su portador y se pierde la ventaja.
+ * La métrica es el tiempo para atender la ráfaga completa (menor es mejor).
+ *
+ * Los modos virtuales requieren Java 21 (en Java 17 fallan en el setup). Ejecutar con un JDK 21:
+ * mvn test-compile y luego
+ * java -cp target/test-classes:target/classes:<classpath de test> com.App.Lfarma.config.HilosVirtualesBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HilosVirtualesBenchmark {
+
+    private static final int USUARIOS = 2000;
+    private static final int IDAS_Y_VUELTAS = 12;
+    private static final long ESPERA_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final int HILOS_TOMCAT = 200;
+
+    @Param({"plataforma", "virtual", "virtualFijado"})
+    private String modo;
+
+    private ExecutorService executor;
+
+    // Un monitor por petición (en un campo para que el JIT no elimine el lock): no hay contención
+    private final Object[] monitores = new Object[USUARIOS];
+
+    @Setup
+    public void preparar() throws Exception {
+        for (int i = 0; i < USUARIOS; i++) {
+            monitores[i] = new Object();
+        }
+        executor = modo.equals("plataforma")
+                ? Executors.newFixedThreadPool(HILOS_TOMCAT)
+                // Por reflexión: el proyecto compila con Java 17
+                : (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    }
+
+    @TearDown
+    public void cerrar() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public long rafaga() throws InterruptedException {
+        CountDownLatch atendidas = new CountDownLatch(USUARIOS);
+        boolean fijado = modo.equals("virtualFijado");
+        for (int i = 0; i < USUARIOS; i++) {
+            Object monitor = monitores[i];
+            executor.execute(() -> {
+                if (fijado) {
+                    synchronized (monitor) {
+                        peticion();
+                    }
+                } else {
+                    peticion();
+                }
+                atendidas.countDown();
+            });
+        }
+        atendidas.await();
+        return atendidas.getCount();
+    }
+
+    private static void peticion() {
+        long acumulado = 0;
+        for (int i = 0; i < IDAS_Y_VUELTAS; i++) {
+            LockSupport.parkNanos(ESPERA_NANOS);
+            for (int j = 0; j < 2_000; j++) {
+                acumulado += j ^ i;
+            }
+        }
+        if (acumulado == 42) {
+            System.out.print("");
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(HilosVirtualesBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
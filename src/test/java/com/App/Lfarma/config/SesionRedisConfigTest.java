@@ -0,0 +1,76 @@
+package com.App.Lfarma.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.web.servlet.FlashMap;
+import org.springframework.web.servlet.support.SessionFlashMapManager;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SesionRedisConfigTest {
+
+    @Test
+    void redirectConFlashSobreviveAGuardarYLeerLaSesion() {
+        SesionRedisConfig config = new SesionRedisConfig();
+        config.setBeanClassLoader(getClass().getClassLoader());
+        RedisSerializer<Object> serializador = config.springSessionDefaultRedisSerializer();
+        SessionFlashMapManager flashMaps = new SessionFlashMapManager();
+
+        // Petición que guarda un producto y redirige con mensaje, con un usuario logueado
+        MockHttpServletRequest guardar = new MockHttpServletRequest("POST", "/productos/registrar-productos");
+        MockHttpSession original = new MockHttpSession();
+        guardar.setSession(original);
+        UserDetails admin = User.withUsername("admin").password("{noop}x").roles("ADMIN").build();
+        Authentication autenticacion = UsernamePasswordAuthenticationToken.authenticated(admin, null, admin.getAuthorities());
+        original.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY,
+                new SecurityContextImpl(autenticacion));
+
+        FlashMap flash = new FlashMap();
+        flash.put("success", "Producto registrado correctamente");
+        flash.setTargetRequestPath("/productos");
+        flash.addTargetRequestParam("pagina", "2");
+        flashMaps.saveOutputFlashMap(flash, guardar, new MockHttpServletResponse());
+
+        // Lo que hace Spring Session con Redis: cada atributo se escribe y se vuelve a leer por separado
+        MockHttpSession leida = new MockHttpSession();
+        for (String nombre : Collections.list(original.getAttributeNames())) {
+            byte[] bytes = serializador.serialize(original.getAttribute(nombre));
+            leida.setAttribute(nombre, serializador.deserialize(bytes));
+        }
+
+        // Una petición a otra ruta no consume el mensaje
+        MockHttpServletRequest otra = new MockHttpServletRequest("GET", "/facturas");
+        otra.setSession(leida);
+        assertNull(flashMaps.retrieveAndUpdate(otra, new MockHttpServletResponse()));
+
+        // El redirect llega a otro nodo con la sesión leída de Redis
+        MockHttpServletRequest redirect = new MockHttpServletRequest("GET", "/productos");
+        redirect.setQueryString("pagina=2");
+        redirect.addParameter("pagina", "2");
+        redirect.setSession(leida);
+
+        FlashMap recuperado = flashMaps.retrieveAndUpdate(redirect, new MockHttpServletResponse());
+        assertNotNull(recuperado);
+        assertEquals("Producto registrado correctamente", recuperado.get("success"));
+
+        SecurityContext contexto = (SecurityContext) leida.getAttribute(
+                HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY);
+        assertEquals("admin", contexto.getAuthentication().getName());
+        assertTrue(contexto.getAuthentication().isAuthenticated());
+    }
+}
@@ -0,0 +1,112 @@
+package com.App.Lfarma.entity;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Factura.calcularTotal y la serialización JSON de una factura (lo que responde /facturas/api)
+ * con 3, 12 y 40 líneas. Los datos imitan una venta de mostrador: productos del catálogo con
+ * precios y costos variados y cantidades pequeñas.
+ *
+ * Ejecutar: mvn test-compile y luego
+ * java -cp target/test-classes:target/classes:<classpath de test> com.App.Lfarma.entity.FacturaBenchmark
+ * o con el perfil de benchmarks: mvn -P benchmarks verify -Djmh.incluir=FacturaBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FacturaBenchmark {
+
+    private static final String[] NOMBRES = {"Acetaminofen 500 mg", "Ibuprofeno 400 mg Tabletas",
+            "Loratadina 10 mg Genfar", "Omeprazol 20 mg Capsulas", "Amoxicilina 500 mg Suspension",
+            "Suero Oral Fresa", "Vitamina C 1 g Efervescente", "Crema Dental Menta 100 ml"};
+    private static final String[] CATEGORIAS = {"Medicamento", "Higiene", "Cosmético", "Suplemento", "Otros"};
+
+    @Param({"3", "12", "40"})
+    private int lineas;
+
+    private Factura factura;
+    private ObjectMapper mapper;
+
+    @Setup
+    public void preparar() {
+        factura = new Factura();
+        factura.setId("6650f0c2a1b2c3d4e5f60718");
+        factura.setFecha(new Date());
+        factura.setVendedor("empleado1");
+
+        ClienteResumen cliente = new ClienteResumen();
+        cliente.setId("6650f0c2a1b2c3d4e5f60001");
+        cliente.setCodigo("CLI-0042");
+        cliente.setNombre("María Fernanda Gómez");
+        cliente.setIdentificacion("1032456789");
+        cliente.setEmail("maria.gomez@example.com");
+        cliente.setTelefono("3001234567");
+        cliente.setDireccion("Calle 45 # 12-34, Bogotá");
+        factura.setCliente(cliente);
+
+        List<DetalleFactura> detalles = new ArrayList<>();
+        for (int i = 0; i < lineas; i++) {
+            ProductoFacturado producto = new ProductoFacturado();
+            producto.setId("6650f0c2a1b2c3d4e5f6" + String.format("%04d", i));
+            producto.setCodigo("MED-" + (100 + i));
+            producto.setNombre(NOMBRES[i % NOMBRES.length]);
+            producto.setCategoria(CATEGORIAS[i % CATEGORIAS.length]);
+            producto.setImagen("/productos/images/producto_" + i + ".jpg");
+            producto.setPrecio(1500 + (i * 3779) % 48000);
+            producto.setCostoCompra(Math.round(producto.getPrecio() * 0.62 * 100.0) / 100.0);
+
+            DetalleFactura detalle = new DetalleFactura();
+            detalle.setProducto(producto);
+            detalle.setCantidad(1 + i % 4);
+            detalle.setPrecioUnitario(producto.getPrecio());
+            detalles.add(detalle);
+        }
+        factura.setDetalles(detalles);
+        factura.calcularTotal();
+
+        // Misma configuración relevante que el ObjectMapper de Spring Boot (spring.jackson.time-zone)
+        mapper = Jackson2ObjectMapperBuilder.json().timeZone(TimeZone.getTimeZone("America/Lima")).build();
+    }
+
+    @Benchmark
+    public double calcularTotal() {
+        factura.calcularTotal();
+        return factura.getTotal();
+    }
+
+    @Benchmark
+    public byte[] serializarJson() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(factura);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FacturaBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,104 @@
+package com.App.Lfarma.service;
+
+import com.App.Lfarma.DTO.SugerenciaProductoDTO;
+import com.App.Lfarma.entity.Producto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencia del autocompletado con 100.000 productos. SampleTime reporta los percentiles
+ * (p0.99 es el p99) mezclando consultas de 1-2 letras, palabras, códigos y varias palabras,
+ * como las que llegan mientras se escribe en el formulario de facturas.
+ *
+ * Ejecutar: mvn test-compile y luego
+ * java -cp target/test-classes:target/classes:<classpath de test> com.App.Lfarma.service.AutocompletadoProductoBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AutocompletadoProductoBenchmark {
+
+    private static final int PRODUCTOS = 100_000;
+
+    private static final String[] PRINCIPIOS = {
+            "Acetaminofén", "Ibuprofeno", "Loratadina", "Omeprazol", "Amoxicilina", "Naproxeno",
+            "Diclofenaco", "Cetirizina", "Metformina", "Losartán", "Atorvastatina", "Azitromicina",
+            "Ciprofloxacina", "Salbutamol", "Ranitidina", "Clonazepam", "Enalapril", "Fluconazol",
+            "Dexametasona", "Ácido Fólico", "Vitamina C", "Sulfato Ferroso", "Hidrocortisona", "Ketoconazol"
+    };
+    private static final String[] FORMAS = {"Tabletas", "Jarabe", "Cápsulas", "Suspensión", "Crema", "Gotas", "Inyectable"};
+    private static final String[] LABORATORIOS = {"Genfar", "MK", "La Santé", "Bayer", "Pfizer", "Tecnoquímicas", "Procaps"};
+
+    private static final String[] CONSULTAS = {
+            "a", "ib", "ace", "acet", "acetam", "lora", "loratadina gen", "omepra", "amox susp",
+            "med-0123", "med-09999", "vitamina c", "sulfato fe", "jarabe", "crema hidro", "xyz", "cetiri mk"
+    };
+
+    private final AutocompletadoProductoService service = new AutocompletadoProductoService();
+
+    @Setup
+    public void preparar() {
+        List<Producto> productos = new ArrayList<>(PRODUCTOS);
+        for (int i = 0; i < PRODUCTOS; i++) {
+            productos.add(producto(i));
+        }
+        service.reconstruir(productos);
+    }
+
+    private static Producto producto(int i) {
+        String principio = PRINCIPIOS[i % PRINCIPIOS.length];
+        Producto producto = new Producto();
+        producto.setId("p" + i);
+        producto.setCodigo(String.format("MED-%06d", i));
+        producto.setNombre(principio + " " + FORMAS[(i / PRINCIPIOS.length) % FORMAS.length] + " "
+                + (5 * (1 + i % 97)) + " " + LABORATORIOS[(i / 7) % LABORATORIOS.length]);
+        producto.setPrincipiosActivos(principio);
+        producto.setCategoria("Medicamentos");
+        producto.setPrecio(1000 + (i * 37) % 45000);
+        return producto;
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int siguiente;
+    }
+
+    @Benchmark
+    public List<SugerenciaProductoDTO> autocompletar(Cursor cursor) {
+        String consulta = CONSULTAS[cursor.siguiente++ % CONSULTAS.length];
+        return service.buscar(consulta, 10);
+    }
+
+    // Costo de mantener el índice al guardar un producto (cambia el nombre)
+    @Benchmark
+    public void indexarCambio(Cursor cursor) {
+        int i = cursor.siguiente++ % PRODUCTOS;
+        Producto producto = producto(i);
+        producto.setNombre(producto.getNombre() + (cursor.siguiente % 2 == 0 ? " Forte" : ""));
+        service.indexar(producto);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AutocompletadoProductoBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,129 @@
+package com.App.Lfarma.service;
+
+import com.App.Lfarma.entity.Producto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AutocompletadoProductoServiceTest {
+
+    private AutocompletadoProductoService servicio;
+
+    @BeforeEach
+    void cargar() {
+        servicio = new AutocompletadoProductoService();
+        servicio.reconstruir(List.of(
+                producto("1", "PAR500", "Paracetamol 500 mg", "paracetamol"),
+                producto("2", "IBU400", "Ibuprofeno 400 mg", "ibuprofeno"),
+                producto("3", "ANT10", "Antigripal con paracetamol", "paracetamol, fenilefrina"),
+                producto("4", "PAR", "Parche térmico", null),
+                producto("5", "VIT-C", "Vitamina C", "ácido ascórbico"),
+                producto("6", "JAR01", "Jarabe infantil", "paracetamol")));
+    }
+
+    @Test
+    void ordenaPorNivelDeCoincidenciaYLuegoPorNombre() {
+        // Código exacto, prefijo de código, prefijo de nombre, palabra del nombre, principio activo
+        assertEquals(List.of("4", "1", "3", "6"), servicio.buscarIds("par", 10));
+        // Dentro del mismo nivel: nombre más corto primero
+        assertEquals(List.of("1", "3", "6"), servicio.buscarIds("paracetamol", 10));
+    }
+
+    @Test
+    void respetaElLimite() {
+        assertEquals(List.of("4", "1"), servicio.buscarIds("par", 2));
+        assertEquals(List.of(), servicio.buscarIds("par", 0));
+    }
+
+    @Test
+    void variasPalabrasIntersectan() {
+        assertEquals(List.of("1"), servicio.buscarIds("paracetamol 500", 10));
+        assertEquals(List.of("3"), servicio.buscarIds("antigripal paracetamol", 10));
+        assertEquals(List.of(), servicio.buscarIds("ibuprofeno paracetamol", 10));
+    }
+
+    @Test
+    void prefijosDeUnoYDosCaracteres() {
+        assertEquals(List.of("5"), servicio.buscarIds("v", 10));
+        assertEquals(List.of("2"), servicio.buscarIds("ib", 10));
+        // Término corto junto a uno largo: se comprueba sobre los candidatos del largo
+        assertEquals(List.of("5"), servicio.buscarIds("vitamina c", 10));
+    }
+
+    @Test
+    void ignoraTildesYMayusculas() {
+        assertEquals(List.of("4"), servicio.buscarIds("TERMICO", 10));
+        assertEquals(List.of("5"), servicio.buscarIds("ascorbico", 10));
+    }
+
+    @Test
+    void indexarYEliminarSeVenEnLaSiguienteBusqueda() {
+        servicio.indexar(producto("7", "AMX500", "Amoxicilina 500 mg", "amoxicilina"));
+        assertEquals(List.of("7"), servicio.buscarIds("amox", 10));
+        assertEquals(7, servicio.totalIndexados());
+
+        // Reindexar con otro nombre quita los términos anteriores
+        servicio.indexar(producto("7", "AMX500", "Amoxil suspensión", "amoxicilina"));
+        assertEquals(List.of(), servicio.buscarIds("500 mg amox", 10));
+        assertEquals(List.of("7"), servicio.buscarIds("suspension", 10));
+
+        servicio.eliminar("7");
+        assertEquals(List.of(), servicio.buscarIds("amox", 10));
+        servicio.eliminar("1");
+        assertEquals(List.of("3", "6"), servicio.buscarIds("paracetamol", 10));
+        assertEquals(5, servicio.totalIndexados());
+    }
+
+    @Test
+    void cambiosDuranteLaReconstruccionNoSePierden() {
+        List<Producto> baseDeDatos = List.of(
+                producto("1", "PAR500", "Paracetamol 500 mg", "paracetamol"),
+                producto("2", "IBU400", "Ibuprofeno 400 mg", "ibuprofeno"));
+
+        // Mientras se lee la "base de datos", otro hilo guarda un producto y elimina otro
+        Iterable<Producto> lectura = () -> new Iterator<>() {
+            private final Iterator<Producto> resto = baseDeDatos.iterator();
+            private boolean cambiosHechos;
+
+            @Override
+            public boolean hasNext() {
+                if (!cambiosHechos) {
+                    cambiosHechos = true;
+                    CompletableFuture.runAsync(() -> {
+                        servicio.indexar(producto("9", "LOR10", "Loratadina 10 mg", "loratadina"));
+                        servicio.eliminar("2");
+                    }).join();
+                }
+                return resto.hasNext();
+            }
+
+            @Override
+            public Producto next() {
+                return resto.next();
+            }
+        };
+
+        assertTrue(servicio.reconstruir(lectura));
+        assertEquals(List.of("9"), servicio.buscarIds("lorat", 10));
+        assertEquals(List.of(), servicio.buscarIds("ibuprofeno", 10));
+        assertEquals(List.of("1"), servicio.buscarIds("paracetamol", 10));
+        assertEquals(2, servicio.totalIndexados());
+    }
+
+    private static Producto producto(String id, String codigo, String nombre, String principios) {
+        Producto producto = new Producto();
+        producto.setId(id);
+        producto.setCodigo(codigo);
+        producto.setNombre(nombre);
+        producto.setPrincipiosActivos(principios);
+        producto.setCategoria("Medicamento");
+        producto.setPrecio(1.0);
+        return producto;
+    }
+}
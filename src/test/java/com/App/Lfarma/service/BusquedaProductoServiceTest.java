@@ -0,0 +1,72 @@
+package com.App.Lfarma.service;
+
+import com.App.Lfarma.config.MongoIndicesConfig;
+import com.App.Lfarma.entity.Producto;
+import com.App.Lfarma.repository.ProductoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataMongoTest
+@Testcontainers(disabledWithoutDocker = true)
+@Import({BusquedaProductoService.class, MongoIndicesConfig.class})
+class BusquedaProductoServiceTest {
+
+    @Container
+    @ServiceConnection
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:5");
+
+    @Autowired
+    private BusquedaProductoService busquedaProductoService;
+
+    @Autowired
+    private MongoIndicesConfig mongoIndicesConfig;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @BeforeEach
+    void preparar() {
+        productoRepository.deleteAll();
+        mongoIndicesConfig.crearIndices();
+    }
+
+    @Test
+    void laPalabraCompletaOrdenaSinOcultarLosQueSoloCoincidenPorPrefijo() {
+        productoRepository.save(producto("P1", "Salbutamol inhalador", "Respiratorio"));
+        productoRepository.save(producto("P2", "Sal de frutas", "Digestivo"));
+        productoRepository.save(producto("P3", "Paracetamol", "Analgésico"));
+
+        BusquedaProductoService.Resultado resultado = busquedaProductoService.buscar("sal", null, PageRequest.of(0, 10));
+
+        assertTrue(resultado.porRelevancia());
+        assertEquals(List.of("Sal de frutas", "Salbutamol inhalador"),
+                resultado.pagina().getContent().stream().map(Producto::getNombre).toList());
+        assertEquals(2, resultado.pagina().getTotalElements());
+        assertEquals(Map.of("Digestivo", 1L, "Respiratorio", 1L), resultado.facetas());
+    }
+
+    private Producto producto(String codigo, String nombre, String categoria) {
+        Producto producto = new Producto();
+        producto.setCodigo(codigo);
+        producto.setNombre(nombre);
+        producto.setCategoria(categoria);
+        producto.setPrecio(10);
+        producto.setCantidad(5);
+        producto.actualizarTerminosBusqueda();
+        return producto;
+    }
+}
@@ -0,0 +1,104 @@
+package com.App.Lfarma.service;
+
+import com.App.Lfarma.entity.Producto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class CacheLocalProductoServiceTest {
+
+    private CacheLocalProductoService cache;
+
+    @BeforeEach
+    void preparar() {
+        cache = new CacheLocalProductoService();
+        ObjectProvider<?> sinRedis = mock(ObjectProvider.class);
+        ReflectionTestUtils.setField(cache, "redisTemplate", sinRedis);
+        ReflectionTestUtils.setField(cache, "listenerContainer", sinRedis);
+        ReflectionTestUtils.setField(cache, "meterRegistry", sinRedis);
+        ReflectionTestUtils.setField(cache, "mongoTemplate", mock(MongoTemplate.class));
+        ReflectionTestUtils.setField(cache, "maximo", 10L);
+        ReflectionTestUtils.setField(cache, "ttlSegundos", 60L);
+        ReflectionTestUtils.setField(cache, "canal", "productos");
+        cache.iniciar();
+    }
+
+    @Test
+    void lecturaRepetidaSeSirveDeLaCache() {
+        AtomicInteger cargas = new AtomicInteger();
+        Supplier<Optional<Producto>> baseDeDatos = () -> {
+            cargas.incrementAndGet();
+            return Optional.of(producto(10));
+        };
+
+        cache.buscarPorId("1", baseDeDatos);
+        cache.buscarPorCodigo("P1", baseDeDatos);
+
+        assertEquals(1, cargas.get());
+    }
+
+    @Test
+    void invalidacionDuranteLaCargaNoDejaLaCopiaVieja() {
+        // La lectura de Mongo ve cantidad 10; mientras tanto una venta la deja en 7 e invalida
+        cache.buscarPorId("1", () -> {
+            Optional<Producto> leido = Optional.of(producto(10));
+            cache.invalidar("1", "P1");
+            return leido;
+        });
+
+        assertEquals(7, cache.buscarPorId("1", () -> Optional.of(producto(7))).orElseThrow().getCantidad());
+    }
+
+    @Test
+    void invalidacionJustoAntesDeGuardarNoDejaLaCopiaVieja() {
+        // La invalidación llega cuando la lectura ya terminó, mientras se copia el producto para guardarlo
+        Producto leido = new Producto() {
+            private boolean invalidado;
+
+            @Override
+            public int getCantidad() {
+                if (!invalidado) {
+                    invalidado = true;
+                    cache.invalidar("1", "P1");
+                }
+                return 10;
+            }
+        };
+        leido.setId("1");
+        leido.setCodigo("P1");
+        cache.buscarPorId("1", () -> Optional.of(leido));
+
+        assertEquals(7, cache.buscarPorId("1", () -> Optional.of(producto(7))).orElseThrow().getCantidad());
+    }
+
+    @Test
+    void invalidacionPorCodigoDuranteLaCargaNoDejaLaCopiaVieja() {
+        cache.buscarPorCodigo("P1", () -> {
+            Optional<Producto> leido = Optional.of(producto(10));
+            cache.invalidarCodigos(List.of("P1"));
+            return leido;
+        });
+
+        assertEquals(7, cache.buscarPorCodigo("P1", () -> Optional.of(producto(7))).orElseThrow().getCantidad());
+        assertEquals(7, cache.buscarPorId("1", () -> Optional.of(producto(3))).orElseThrow().getCantidad());
+    }
+
+    private static Producto producto(int cantidad) {
+        Producto producto = new Producto();
+        producto.setId("1");
+        producto.setCodigo("P1");
+        producto.setNombre("Paracetamol");
+        producto.setCantidad(cantidad);
+        return producto;
+    }
+}
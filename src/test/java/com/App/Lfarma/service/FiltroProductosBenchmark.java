@@ -0,0 +1,129 @@
+package com.App.Lfarma.service;
+
+import com.App.Lfarma.entity.Producto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el filtro anterior de esProductoReal (String.matches y contains sobre copias en
+ * minúsculas) con FiltroProductosDataset, con y sin el veredicto guardado en el producto.
+ * Cada operación evalúa el catálogo completo de prueba.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FiltroProductosBenchmark {
+
+    private static final String[] NOMBRES = {
+            "Acetaminofen Jarabe", "Ibuprofeno 400mg", "Loratadina Genfar", "Producto Demo",
+            "Omeprazol Capsulas", "Item 12", "Suero Oral 2.5", "Amoxicilina Suspension",
+            "Vitamina C Efervescente", "Muestra Medica Crema"
+    };
+    private static final String[] CODIGOS = {"MED-001", "IBU-400", "LOR-10", "TEST-9", "OME-20",
+            "X1", "SUE-25", "AMX-123456", "VIT-C", "MUE-01"};
+
+    private final FiltroProductosDataset filtro = new FiltroProductosDataset();
+    private Producto[] productos;
+
+    @Setup
+    public void preparar() {
+        productos = new Producto[1000];
+        for (int i = 0; i < productos.length; i++) {
+            Producto producto = new Producto();
+            producto.setNombre(NOMBRES[i % NOMBRES.length] + " " + (i / NOMBRES.length));
+            producto.setCodigo(CODIGOS[i % CODIGOS.length]);
+            productos[i] = producto;
+        }
+    }
+
+    @Benchmark
+    public void legado(Blackhole bh) {
+        for (Producto producto : productos) {
+            bh.consume(esProductoRealLegado(producto));
+        }
+    }
+
+    @Benchmark
+    public void automata(Blackhole bh) {
+        for (Producto producto : productos) {
+            bh.consume(filtro.esReal(producto.getNombre(), producto.getCodigo()));
+        }
+    }
+
+    // Segunda y siguientes evaluaciones del mismo producto dentro de una petición
+    @Benchmark
+    public void automataConVeredicto(Blackhole bh) {
+        for (Producto producto : productos) {
+            Boolean veredicto = producto.veredictoFiltro();
+            if (veredicto == null) {
+                veredicto = filtro.esReal(producto.getNombre(), producto.getCodigo());
+                producto.guardarVeredictoFiltro(veredicto);
+            }
+            bh.consume(veredicto.booleanValue());
+        }
+    }
+
+    // Lógica anterior de PrediccionDemandaService.esProductoReal, sin el log
+    static boolean esProductoRealLegado(Producto producto) {
+        if (producto == null) return false;
+        if (producto.getCodigo() == null || producto.getCodigo().trim().isEmpty()) return false;
+        if (producto.getNombre() == null || producto.getNombre().trim().isEmpty()) return false;
+        if (producto.getCodigo().length() <= 3) return false;
+
+        String nombreLower = producto.getNombre().toLowerCase().trim();
+        String codigoLower = producto.getCodigo().toLowerCase().trim();
+
+        boolean esDelDataset =
+                nombreLower.contains("ejemplo") ||
+                        nombreLower.contains("test") ||
+                        nombreLower.contains("demo") ||
+                        nombreLower.contains("muestra") ||
+                        nombreLower.contains("sample") ||
+                        nombreLower.contains("dataset") ||
+                        nombreLower.contains("training") ||
+                        nombreLower.contains("entrenamiento") ||
+                        codigoLower.contains("test") ||
+                        codigoLower.contains("demo") ||
+                        codigoLower.contains("ejemplo") ||
+                        codigoLower.contains("sample") ||
+                        codigoLower.contains("item") ||
+                        nombreLower.matches(".*\\d+mg.*") ||
+                        nombreLower.matches(".*\\d+\\.\\d+.*") ||
+                        nombreLower.matches(".*item\\s*\\d+.*") ||
+                        codigoLower.matches(".*\\d{5,}.*") ||
+                        nombreLower.equals("jggmom") ||
+                        nombreLower.contains("jggmom");
+
+        String[] productosDataset = {"jggmom", "item", "producto", "medicamento", "farmacia", "venta", "arff"};
+        for (String patron : productosDataset) {
+            if (nombreLower.contains(patron) || codigoLower.contains(patron)) {
+                esDelDataset = true;
+                break;
+            }
+        }
+        return !esDelDataset;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FiltroProductosBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,208 @@
+package com.App.Lfarma.service;
+
+import com.App.Lfarma.DTO.ImportacionProductosDTO;
+import com.App.Lfarma.entity.Producto;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.bson.BsonObjectId;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ImportacionProductoServiceTest {
+
+    private ImportacionProductoService servicio;
+    private MongoTemplate mongoTemplate;
+    private BulkOperations bulk;
+    private CacheLocalProductoService cacheLocal;
+    private AutocompletadoProductoService autocompletado;
+
+    @BeforeEach
+    void preparar() {
+        servicio = new ImportacionProductoService();
+        mongoTemplate = mock(MongoTemplate.class);
+        bulk = mock(BulkOperations.class);
+        cacheLocal = mock(CacheLocalProductoService.class);
+        autocompletado = mock(AutocompletadoProductoService.class);
+
+        // P1 ya existe en la base
+        Producto existente = new Producto();
+        existente.setId("abc");
+        existente.setCodigo("P1");
+        existente.setDescripcion("Descripción anterior");
+        when(mongoTemplate.find(any(Query.class), eq(Producto.class))).thenReturn(List.of(existente));
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(Producto.class))).thenReturn(bulk);
+
+        ReflectionTestUtils.setField(servicio, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(servicio, "autocompletadoService", autocompletado);
+        ReflectionTestUtils.setField(servicio, "cacheLocal", cacheLocal);
+        ReflectionTestUtils.setField(servicio, "tamanoLote", 1000);
+        ReflectionTestUtils.setField(servicio, "maxErrores", 200);
+    }
+
+    @Test
+    void numerosConSeparadoresDeMilesEnAmbosEstilos() {
+        assertEquals(1234.5, ImportacionProductoService.parsearNumero("1.234,50"));
+        assertEquals(1234.5, ImportacionProductoService.parsearNumero("1,234.50"));
+        assertEquals(1234567, ImportacionProductoService.parsearNumero("1.234.567"));
+        assertEquals(1234567, ImportacionProductoService.parsearNumero("1,234,567"));
+        assertEquals(2.5, ImportacionProductoService.parsearNumero("2,5"));
+        assertEquals(1234.5, ImportacionProductoService.parsearNumero("1234.5"));
+        assertEquals(1234.567, ImportacionProductoService.parsearNumero("1234,567"));
+        assertEquals(0.125, ImportacionProductoService.parsearNumero("0,125"));
+        assertEquals(1000, ImportacionProductoService.parsearNumero("1 000"));
+        assertEquals(-3, ImportacionProductoService.parsearNumero("-3"));
+    }
+
+    @Test
+    void unSoloSeparadorConTresDecimalesEsAmbiguo() {
+        assertThrows(IllegalArgumentException.class, () -> ImportacionProductoService.parsearNumero("1.000"));
+        assertThrows(IllegalArgumentException.class, () -> ImportacionProductoService.parsearNumero("2,500"));
+        assertThrows(IllegalArgumentException.class, () -> ImportacionProductoService.parsearNumero("1,2.3"));
+        assertThrows(IllegalArgumentException.class, () -> ImportacionProductoService.parsearNumero("12abc"));
+    }
+
+    @Test
+    void csvConErroresPorFilaYUpsertDeLasValidas() throws IOException {
+        when(bulk.execute()).thenReturn(BulkWriteResult.acknowledged(0, 0, 0, 1,
+                List.of(new BulkWriteUpsert(1, new BsonObjectId(new ObjectId()))), List.of()));
+
+        String csv = "\uFEFFCódigo;Nombre;Precio;Stock;Categoría;Descripción;Fecha vencimiento;Extra\n"
+                + "P1;Paracetamol;1.234,50;10;Medicamento;;2026-01-31;x\n"
+                + "P2;\"Ibu; \"\"forte\"\"\";3.5;5;Medicamento;\"línea 1\nlínea 2\";;\n"
+                + "P3;Precio ambiguo;1.000;5;Medicamento;;;\n"
+                + "P4;Precio negativo;-1;5;Medicamento;;;\n"
+                + "P1;Repetido;1;1;Medicamento;;;\n"
+                + ";;;;;;;\n";
+
+        ImportacionProductosDTO resultado = servicio.importar(archivo("catalogo.csv", csv), false, false);
+
+        assertEquals(5, resultado.getFilasLeidas());
+        assertEquals(1, resultado.getNuevos());
+        assertEquals(1, resultado.getActualizados());
+        assertEquals(3, resultado.getConError());
+        assertEquals(List.of("Extra"), resultado.getColumnasIgnoradas());
+        assertEquals(List.of("P3", "P4", "P1"), resultado.getErrores().stream()
+                .map(ImportacionProductosDTO.ErrorFila::codigo).toList());
+        assertTrue(resultado.getErrores().get(0).error().contains("ambiguo"));
+        // La fila de P2 ocupa dos líneas: P3 está en la línea 5
+        assertEquals(5, resultado.getErrores().get(0).fila());
+
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulk, times(2)).upsert(any(Query.class), updates.capture());
+        Document p1 = updates.getAllValues().get(0).getUpdateObject();
+        Document set = (Document) p1.get("$set");
+        assertEquals(1234.5, set.get("precio"));
+        assertEquals("Paracetamol", set.get("nombre"));
+        // Sin reemplazarStock la cantidad solo se escribe al crear el producto
+        assertFalse(set.containsKey("cantidad"));
+        assertEquals(10, ((Document) p1.get("$setOnInsert")).get("cantidad"));
+        verify(cacheLocal).invalidarCodigos(List.of("P1", "P2"));
+
+        // Un solo recorrido de la base para el autocompletado, no uno por producto
+        verify(autocompletado).reconstruirDesdeBaseDeDatos();
+        verify(autocompletado, never()).indexar(any());
+    }
+
+    @Test
+    void xlsxUsaElValorDeLaCeldaYNoSuFormato() throws IOException {
+        try (XSSFWorkbook libro = new XSSFWorkbook()) {
+            Sheet hoja = libro.createSheet();
+            CellStyle miles = libro.createCellStyle();
+            miles.setDataFormat(libro.createDataFormat().getFormat("#,##0"));
+
+            Row cabecera = hoja.createRow(0);
+            String[] columnas = {"codigo", "nombre", "precio", "cantidad", "categoria"};
+            for (int i = 0; i < columnas.length; i++) {
+                cabecera.createCell(i).setCellValue(columnas[i]);
+            }
+            Row fila = hoja.createRow(1);
+            fila.createCell(0).setCellValue("P1");
+            fila.createCell(1).setCellValue("Alcohol");
+            fila.createCell(2).setCellValue(12.125);
+            fila.createCell(3).setCellValue(1000);
+            fila.getCell(3).setCellStyle(miles);
+            fila.createCell(4).setCellValue("Higiene");
+            Row sinPrecio = hoja.createRow(2);
+            sinPrecio.createCell(0).setCellValue("X9");
+            sinPrecio.createCell(1).setCellValue("Sin precio");
+            sinPrecio.createCell(3).setCellValue(3);
+            sinPrecio.createCell(4).setCellValue("Higiene");
+
+            ByteArrayOutputStream salida = new ByteArrayOutputStream();
+            libro.write(salida);
+            when(bulk.execute()).thenReturn(BulkWriteResult.acknowledged(0, 1, 0, 1, List.of(), List.of()));
+
+            ImportacionProductosDTO resultado = servicio.importar(
+                    new MockMultipartFile("file", "catalogo.xlsx", null, salida.toByteArray()), false, true);
+
+            assertEquals(2, resultado.getFilasLeidas());
+            assertEquals(1, resultado.getActualizados());
+            assertEquals(1, resultado.getConError());
+            assertEquals(3, resultado.getErrores().get(0).fila());
+
+            ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+            verify(bulk).upsert(any(Query.class), update.capture());
+            Document set = (Document) update.getValue().getUpdateObject().get("$set");
+            assertEquals(12.125, set.get("precio"));
+            // reemplazarStock: la cantidad va en $set; con el formato #,##0 la celda se ve "1,000"
+            assertEquals(1000, set.get("cantidad"));
+        }
+    }
+
+    @Test
+    void simulacionNoEscribe() throws IOException {
+        String csv = "codigo,nombre,precio,cantidad,categoria\n"
+                + "P1,Paracetamol,2.5,10,Medicamento\n"
+                + "P2,Ibuprofeno,3,5,Medicamento\n";
+
+        ImportacionProductosDTO resultado = servicio.importar(archivo("catalogo.csv", csv), true, false);
+
+        assertTrue(resultado.isSimulacion());
+        assertEquals(1, resultado.getNuevos());
+        assertEquals(1, resultado.getActualizados());
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(Producto.class));
+        verify(cacheLocal, never()).invalidarCodigos(any());
+        verify(autocompletado, never()).reconstruirDesdeBaseDeDatos();
+    }
+
+    @Test
+    void faltanColumnasObligatorias() {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> servicio.importar(archivo("catalogo.csv", "codigo,nombre\nP1,Paracetamol\n"), true, false));
+        assertTrue(error.getMessage().contains("precio"));
+    }
+
+    private static MockMultipartFile archivo(String nombre, String contenido) {
+        return new MockMultipartFile("file", nombre, "text/csv", contenido.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,122 @@
+package com.App.Lfarma.service;
+
+import com.App.Lfarma.DTO.PaginaCursorDTO;
+import com.App.Lfarma.entity.Factura;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.MongoDBContainer;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Página 1 vs página 1000 (20 facturas por página) con skip/limit y con cursor, sobre el
+ * orden del listado de facturas (fecha desc, _id desc). Con skip el costo crece con la
+ * página; con cursor la página 1000 cuesta lo mismo que la 1. Requiere Docker (Testcontainers).
+ *
+ * Ejecutar: mvn test-compile y luego
+ * java -cp target/test-classes:target/classes:<classpath de test> com.App.Lfarma.service.PaginacionCursorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaginacionCursorBenchmark {
+
+    private static final int FACTURAS = 50_000;
+    private static final int TAMANO = 20;
+
+    @Param({"1", "1000"})
+    private int pagina;
+
+    private MongoDBContainer mongo;
+    private MongoClient cliente;
+    private MongoTemplate mongoTemplate;
+    private final PaginacionCursorService paginacion = new PaginacionCursorService();
+    private String after;
+
+    @Setup
+    public void preparar() {
+        mongo = new MongoDBContainer("mongo:5");
+        mongo.start();
+        cliente = MongoClients.create(mongo.getReplicaSetUrl());
+        mongoTemplate = new MongoTemplate(cliente, "lfarma_benchmark");
+        ReflectionTestUtils.setField(paginacion, "mongoTemplate", mongoTemplate);
+
+        mongoTemplate.indexOps(Factura.class).createIndex(new Index()
+                .on("fecha", Sort.Direction.DESC).on("_id", Sort.Direction.DESC).named("factura_fecha_id"));
+
+        // Varias facturas por segundo para que el desempate por _id también se ejercite
+        long inicio = System.currentTimeMillis() - FACTURAS * 250L;
+        List<Factura> lote = new ArrayList<>();
+        for (int i = 0; i < FACTURAS; i++) {
+            Factura factura = new Factura();
+            factura.setFecha(new Date(inicio + (i / 4) * 1000L));
+            factura.setVendedor("vendedor" + (i % 5));
+            factura.setTotal(1000 + i % 50_000);
+            lote.add(factura);
+            if (lote.size() == 5000) {
+                mongoTemplate.insertAll(lote);
+                lote = new ArrayList<>();
+            }
+        }
+        mongoTemplate.insertAll(lote);
+
+        // Cursor al final de la página anterior, como lo entregaría la navegación
+        after = null;
+        if (pagina > 1) {
+            Factura ultimaAnterior = mongoTemplate.findOne(new Query()
+                    .with(FacturaService.ORDEN_LISTADO.sort())
+                    .skip((long) (pagina - 1) * TAMANO - 1), Factura.class);
+            after = paginacion.cursorDe(FacturaService.ORDEN_LISTADO, ultimaAnterior);
+        }
+    }
+
+    @TearDown
+    public void cerrar() {
+        cliente.close();
+        mongo.stop();
+    }
+
+    @Benchmark
+    public List<Factura> skip() {
+        return mongoTemplate.find(new Query().with(
+                PageRequest.of(pagina - 1, TAMANO, FacturaService.ORDEN_LISTADO.sort())), Factura.class);
+    }
+
+    @Benchmark
+    public PaginaCursorDTO<Factura> cursor() {
+        return paginacion.buscar(Factura.class, new Query(), FacturaService.ORDEN_LISTADO, after, TAMANO, false);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PaginacionCursorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,114 @@
+package com.App.Lfarma.service;
+
+import com.App.Lfarma.entity.PrediccionDemanda;
+import com.App.Lfarma.entity.Producto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+import weka.classifiers.trees.J48;
+import weka.core.Instances;
+import weka.core.converters.ConverterUtils;
+
+import java.io.InputStream;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Throughput de la clasificación de PrediccionDemandaService con 1, 4 y 16 hilos.
+ * Se mide clasificar(), lo que hace el lote de predicciones por cada producto (sin el bulk a Mongo).
+ *
+ * Ejecutar: mvn test-compile y luego
+ * java -cp target/test-classes:target/classes:<classpath de test> com.App.Lfarma.service.PrediccionDemandaBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrediccionDemandaBenchmark {
+
+    private static final int PRODUCTOS = 1024;
+
+    private PrediccionDemandaService service;
+    private Producto[] productos;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void preparar() throws Exception {
+        Instances data;
+        try (InputStream datos = new ClassPathResource("farmacia_ventas.arff").getInputStream()) {
+            data = new ConverterUtils.DataSource(datos).getDataSet();
+        }
+        data.setClassIndex(data.numAttributes() - 1);
+        J48 j48 = new J48();
+        j48.buildClassifier(data);
+
+        service = new PrediccionDemandaService();
+        AtomicReference<RegistroModeloService.ModeloActivo> modelo =
+                (AtomicReference<RegistroModeloService.ModeloActivo>) ReflectionTestUtils.getField(service, "modelo");
+        modelo.set(new RegistroModeloService.ModeloActivo(j48, new Instances(data, 0), 1, "benchmark",
+                "entrenado", data.numInstances(), new Date(), 0, 0));
+
+        String[] nombres = {"Acetaminofen Jarabe", "Ibuprofeno Tabletas", "Loratadina Genfar",
+                "Omeprazol Capsulas", "Amoxicilina Suspension", "Suero Oral Fresa"};
+        productos = new Producto[PRODUCTOS];
+        for (int i = 0; i < PRODUCTOS; i++) {
+            Producto producto = new Producto();
+            producto.setId("p" + i);
+            producto.setCodigo("MED-" + (i % 1000));
+            producto.setNombre(nombres[i % nombres.length]);
+            producto.setPrecio(1000 + (i * 37) % 45000);
+            producto.setCantidad((i * 13) % 200);
+            productos[i] = producto;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int siguiente;
+    }
+
+    private PrediccionDemanda clasificarSiguiente(Cursor cursor) {
+        Producto producto = productos[cursor.siguiente++ & (PRODUCTOS - 1)];
+        return service.clasificar(producto);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public PrediccionDemanda clasificar1Hilo(Cursor cursor) {
+        return clasificarSiguiente(cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public PrediccionDemanda clasificar4Hilos(Cursor cursor) {
+        return clasificarSiguiente(cursor);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public PrediccionDemanda clasificar16Hilos(Cursor cursor) {
+        return clasificarSiguiente(cursor);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PrediccionDemandaBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
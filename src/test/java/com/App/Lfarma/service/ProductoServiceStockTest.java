@@ -0,0 +1,141 @@
+package com.App.Lfarma.service;
+
+import com.App.Lfarma.entity.DetalleSuministro;
+import com.App.Lfarma.entity.Producto;
+import com.App.Lfarma.entity.Proveedor;
+import com.App.Lfarma.entity.Suministro;
+import com.App.Lfarma.repository.ProductoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataMongoTest
+@Testcontainers(disabledWithoutDocker = true)
+@Import({ProductoService.class, AutocompletadoProductoService.class, BusquedaProductoService.class,
+        PaginacionCursorService.class, CacheLocalProductoService.class, SuministroService.class})
+class ProductoServiceStockTest {
+
+    @Container
+    @ServiceConnection
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:5");
+
+    @Autowired
+    private ProductoService productoService;
+
+    @Autowired
+    private SuministroService suministroService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @BeforeEach
+    void limpiar() {
+        productoRepository.deleteAll();
+    }
+
+    @Test
+    void descontarStockConcurrenteNoSobrevende() throws Exception {
+        int stockInicial = 50;
+        int hilos = 200;
+        productoRepository.save(producto("SKU-1", stockInicial));
+
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch salida = new CountDownLatch(1);
+        AtomicInteger exitosas = new AtomicInteger();
+        AtomicInteger rechazadas = new AtomicInteger();
+
+        for (int i = 0; i < hilos; i++) {
+            executor.submit(() -> {
+                salida.await();
+                try {
+                    productoService.descontarStock("SKU-1", 1);
+                    exitosas.incrementAndGet();
+                } catch (RuntimeException e) {
+                    rechazadas.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        salida.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+
+        assertEquals(stockInicial, exitosas.get());
+        assertEquals(hilos - stockInicial, rechazadas.get());
+        assertEquals(0, productoRepository.findByCodigo("SKU-1").orElseThrow().getCantidad());
+    }
+
+    @Test
+    void descontarStockLoteRevierteLineasAplicadas() {
+        productoRepository.save(producto("SKU-A", 10));
+        productoRepository.save(producto("SKU-B", 10));
+        productoRepository.save(producto("SKU-C", 1));
+
+        Map<String, Integer> lineas = new LinkedHashMap<>();
+        lineas.put("SKU-A", 3);
+        lineas.put("SKU-B", 4);
+        lineas.put("SKU-C", 2);
+
+        assertThrows(RuntimeException.class, () -> productoService.descontarStockLote(lineas));
+
+        assertEquals(10, productoRepository.findByCodigo("SKU-A").orElseThrow().getCantidad());
+        assertEquals(10, productoRepository.findByCodigo("SKU-B").orElseThrow().getCantidad());
+        assertEquals(1, productoRepository.findByCodigo("SKU-C").orElseThrow().getCantidad());
+    }
+
+    @Test
+    void suministroNoPisaLasVentasHechasDespuesDeLeerElProducto() {
+        productoRepository.save(producto("SKU-S", 10));
+        // Copia leída al armar el formulario de suministro
+        Producto leido = productoRepository.findByCodigo("SKU-S").orElseThrow();
+
+        productoService.descontarStock("SKU-S", 3);
+
+        Proveedor proveedor = new Proveedor();
+        proveedor.setId("prov-1");
+        DetalleSuministro detalle = new DetalleSuministro();
+        detalle.setProducto(leido);
+        detalle.setCantidad(5);
+        detalle.setPrecioCompra(6);
+        detalle.setPrecioVentaSugerido(12);
+        Suministro suministro = new Suministro();
+        suministro.setProveedor(proveedor);
+        suministro.setDetalles(List.of(detalle));
+        suministroService.registrarSuministro(suministro);
+
+        Producto actualizado = productoRepository.findByCodigo("SKU-S").orElseThrow();
+        assertEquals(12, actualizado.getCantidad());
+        assertEquals(6, actualizado.getCostoCompra());
+        assertEquals(12, actualizado.getPrecio());
+        assertEquals("prov-1", actualizado.getProveedorId());
+    }
+
+    private Producto producto(String codigo, int cantidad) {
+        Producto producto = new Producto();
+        producto.setCodigo(codigo);
+        producto.setNombre("Producto " + codigo);
+        producto.setCategoria("General");
+        producto.setPrecio(10);
+        producto.setCantidad(cantidad);
+        return producto;
+    }
+}
@@ -0,0 +1,78 @@
+package com.App.Lfarma.service;
+
+import com.App.Lfarma.entity.ItemCarrito;
+import com.App.Lfarma.entity.Producto;
+import com.App.Lfarma.entity.ShoppingCart;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ShoppingCartService.calculateTotal con carritos de 3, 15 y 60 ítems (el total se recalcula
+ * en cada vista del carrito y del checkout). No usa el repositorio ni ProductoService.
+ *
+ * Ejecutar: mvn test-compile y luego
+ * java -cp target/test-classes:target/classes:<classpath de test> com.App.Lfarma.service.ShoppingCartBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShoppingCartBenchmark {
+
+    @Param({"3", "15", "60"})
+    private int items;
+
+    private ShoppingCartService service;
+    private ShoppingCart carrito;
+
+    @Setup
+    public void preparar() {
+        service = new ShoppingCartService(null, null);
+
+        List<ItemCarrito> lista = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            Producto producto = new Producto();
+            producto.setId("p" + i);
+            producto.setCodigo("MED-" + (100 + i));
+            producto.setNombre("Producto " + i);
+            producto.setPrecio(1500 + (i * 3779) % 48000);
+
+            ItemCarrito item = new ItemCarrito();
+            item.setProducto(producto);
+            item.setCantidad(1 + i % 5);
+            item.setPrecioUnitario(producto.getPrecio());
+            lista.add(item);
+        }
+        carrito = new ShoppingCart();
+        carrito.setItems(lista);
+    }
+
+    @Benchmark
+    public double calculateTotal() {
+        return service.calculateTotal(carrito);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ShoppingCartBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}